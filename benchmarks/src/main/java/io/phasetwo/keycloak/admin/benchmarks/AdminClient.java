@@ -0,0 +1,74 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import org.keycloak.admin.client.resource.RealmResource;
+
+/**
+ * The part of the admin client API that the comparison benchmarks use, implemented by this library
+ * and by the upstream RESTEasy-based client. Both expose the same resource interfaces, so the calls
+ * are identical and only the client behind them differs.
+ */
+interface AdminClient extends AutoCloseable {
+
+  RealmResource realm(String realm);
+
+  @Override
+  void close();
+
+  enum Implementation {
+    /** {@link io.phasetwo.keycloak.admin.Keycloak}, on Apache HttpClient and Jackson. */
+    PHASETWO {
+      @Override
+      AdminClient create(String serverUrl) {
+        io.phasetwo.keycloak.admin.Keycloak keycloak =
+            io.phasetwo.keycloak.admin.KeycloakBuilder.builder()
+                .serverUrl(serverUrl)
+                .realm(StubServer.REALM)
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("bench")
+                .clientSecret("secret")
+                .build();
+        return new AdminClient() {
+          @Override
+          public RealmResource realm(String realm) {
+            return keycloak.realm(realm);
+          }
+
+          @Override
+          public void close() {
+            keycloak.close();
+          }
+        };
+      }
+    },
+
+    /** {@link org.keycloak.admin.client.Keycloak}, on the RESTEasy JAX-RS client. */
+    UPSTREAM {
+      @Override
+      AdminClient create(String serverUrl) {
+        org.keycloak.admin.client.Keycloak keycloak =
+            org.keycloak.admin.client.KeycloakBuilder.builder()
+                .serverUrl(serverUrl)
+                .realm(StubServer.REALM)
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("bench")
+                .clientSecret("secret")
+                .build();
+        return new AdminClient() {
+          @Override
+          public RealmResource realm(String realm) {
+            return keycloak.realm(realm);
+          }
+
+          @Override
+          public void close() {
+            keycloak.close();
+          }
+        };
+      }
+    };
+
+    abstract AdminClient create(String serverUrl);
+  }
+}
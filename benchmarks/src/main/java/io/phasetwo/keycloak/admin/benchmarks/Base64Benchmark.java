@@ -0,0 +1,47 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import io.phasetwo.keycloak.admin.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The bundled {@link Base64} encoder against the JDK's, on basic-auth and certificate sizes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class Base64Benchmark {
+
+  @Param({"32", "1024", "16384"})
+  public int size;
+
+  private byte[] bytes;
+
+  @Setup
+  public void setUp() {
+    bytes = new byte[size];
+    ThreadLocalRandom.current().nextBytes(bytes);
+  }
+
+  @Benchmark
+  public String bundled() {
+    return Base64.encodeBytes(bytes);
+  }
+
+  @Benchmark
+  public String jdk() {
+    return java.util.Base64.getEncoder().encodeToString(bytes);
+  }
+}
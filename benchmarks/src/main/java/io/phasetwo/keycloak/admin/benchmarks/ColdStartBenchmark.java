@@ -0,0 +1,72 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Startup cost of each client in a fresh JVM: {@link #startup()} builds the client, {@link
+ * #firstCall()} builds it and makes one call, which includes the token request and class loading
+ * for the call path. Every fork measures a single invocation, so the JIT and class caches are cold.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class ColdStartBenchmark {
+
+  @Param({"PHASETWO", "UPSTREAM"})
+  public AdminClient.Implementation client;
+
+  private StubServer server;
+  private AdminClient admin;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    server = new StubServer(1);
+  }
+
+  @TearDown(Level.Iteration)
+  public void closeClient() {
+    if (admin != null) {
+      admin.close();
+      admin = null;
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    server.close();
+  }
+
+  @Benchmark
+  public AdminClient startup() {
+    admin = client.create(server.url());
+    return admin;
+  }
+
+  @Benchmark
+  public UserRepresentation firstCall() {
+    admin = client.create(server.url());
+    return admin
+        .realm(StubServer.REALM)
+        .users()
+        .get("5b6c2a10-0000-4c1e-9d7a-3f2e1b0c0000")
+        .toRepresentation();
+  }
+}
@@ -0,0 +1,66 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Steady-state throughput of this client against the upstream RESTEasy client, making the same
+ * calls to the same stub. Run with {@code -prof gc} to also get the allocation rate per call
+ * ({@code gc.alloc.rate.norm}, in bytes per operation).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(4)
+@Fork(1)
+public class ComparisonBenchmark {
+
+  @Param({"PHASETWO", "UPSTREAM"})
+  public AdminClient.Implementation client;
+
+  private StubServer server;
+  private AdminClient admin;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new StubServer(20);
+    admin = client.create(server.url());
+  }
+
+  @TearDown
+  public void tearDown() {
+    admin.close();
+    server.close();
+  }
+
+  @Benchmark
+  public UserRepresentation getUser() {
+    return admin
+        .realm(StubServer.REALM)
+        .users()
+        .get("5b6c2a10-0000-4c1e-9d7a-3f2e1b0c0000")
+        .toRepresentation();
+  }
+
+  @Benchmark
+  public List<UserRepresentation> searchUsers() {
+    return admin.realm(StubServer.REALM).users().search("user", 0, 20);
+  }
+}
@@ -0,0 +1,80 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link JsonSerialization} on a realm export with 200 clients of 15 protocol mappers each, and on
+ * the client list alone, with plain reflective bean access and with Blackbird. JMH runs every
+ * {@code mode} in its own fork, so the modes do not share the mapper's (de)serializer caches.
+ * {@code readUncached} is the same read through {@code ObjectMapper.readValue}, which resolves the
+ * type and builds a reader on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonAccelerationBenchmark {
+
+  private static final TypeReference<List<ClientRepresentation>> CLIENTS = new TypeReference<>() {};
+
+  @Param({"reflection", "blackbird"})
+  public String mode;
+
+  private RealmRepresentation realm;
+  private byte[] realmJson;
+  private byte[] clientsJson;
+
+  @Setup
+  public void setUp() throws IOException {
+    if ("blackbird".equals(mode) && !JsonSerialization.enableBlackbird()) {
+      throw new IllegalStateException("jackson-module-blackbird is not on the class path");
+    }
+    realm = Realms.realm(200, 15, 500, 100);
+    realmJson = JsonSerialization.writeValueAsBytes(realm);
+    clientsJson = JsonSerialization.writeValueAsBytes(realm.getClients());
+  }
+
+  @Benchmark
+  public RealmRepresentation readRealm() throws IOException {
+    return JsonSerialization.readValue(realmJson, RealmRepresentation.class);
+  }
+
+  @Benchmark
+  public RealmRepresentation readRealmUncached() throws IOException {
+    return JsonSerialization.mapper.readValue(realmJson, RealmRepresentation.class);
+  }
+
+  @Benchmark
+  public byte[] writeRealm() throws IOException {
+    return JsonSerialization.writeValueAsBytes(realm);
+  }
+
+  @Benchmark
+  public List<ClientRepresentation> readClients() throws IOException {
+    return JsonSerialization.readValue(clientsJson, CLIENTS);
+  }
+
+  @Benchmark
+  public List<ClientRepresentation> readClientsUncached() throws IOException {
+    return JsonSerialization.mapper.readValue(clientsJson, CLIENTS);
+  }
+}
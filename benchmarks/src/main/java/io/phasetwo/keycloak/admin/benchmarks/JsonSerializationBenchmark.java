@@ -0,0 +1,53 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** {@link JsonSerialization} on user lists of the sizes returned by paged searches and exports. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  private static final TypeReference<List<UserRepresentation>> USERS = new TypeReference<>() {};
+
+  @Param({"100", "1000", "10000"})
+  public int users;
+
+  private List<UserRepresentation> list;
+  private byte[] json;
+
+  @Setup
+  public void setUp() throws IOException {
+    list = Users.list(users);
+    json = JsonSerialization.writeValueAsBytes(list);
+  }
+
+  @Benchmark
+  public byte[] write() throws IOException {
+    return JsonSerialization.writeValueAsBytes(list);
+  }
+
+  @Benchmark
+  public List<UserRepresentation> read() throws IOException {
+    return JsonSerialization.readValue(json, USERS);
+  }
+}
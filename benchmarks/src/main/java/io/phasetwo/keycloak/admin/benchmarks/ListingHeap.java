@@ -0,0 +1,79 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import io.phasetwo.keycloak.admin.LazyRepresentation;
+import io.phasetwo.keycloak.admin.StringTable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/**
+ * Measures the heap retained by user listings held in memory, read as they are by default, with
+ * their string values shared through a {@link StringTable}, and as {@link LazyRepresentation}s. Not
+ * a JMH benchmark, since retained size is a single number per run:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar io.phasetwo.keycloak.admin.benchmarks.ListingHeap
+ * </pre>
+ */
+public final class ListingHeap {
+
+  private static final int PAGES = 200;
+  private static final int PAGE_SIZE = 500;
+
+  private ListingHeap() {}
+
+  public static void main(String[] args) throws Exception {
+    byte[] page = JsonSerialization.writeValueAsBytes(Users.list(PAGE_SIZE));
+    TypeReference<List<UserRepresentation>> type = new TypeReference<>() {};
+    TypeReference<List<LazyRepresentation<UserRepresentation>>> lazyType = new TypeReference<>() {};
+    StringTable strings = StringTable.create(64 * 1024);
+    ObjectReader plainReader = JsonSerialization.reader(type.getType());
+    ObjectReader sharingReader = JsonSerialization.reader(type.getType(), strings);
+    ObjectReader lazyReader = JsonSerialization.reader(lazyType.getType());
+    // load the classes on every path first, so that only the listings are counted
+    plainReader.readValue(page);
+    sharingReader.readValue(page);
+    lazyReader.readValue(page);
+    long hits = strings.getHits();
+    long misses = strings.getMisses();
+
+    long plain = retained(page, plainReader);
+    long shared = retained(page, sharingReader);
+    long lazy = retained(page, lazyReader);
+    int users = PAGES * PAGE_SIZE;
+    System.out.printf("default: %,d bytes retained per user%n", plain / users);
+    System.out.printf(
+        "StringTable: %,d bytes retained per user (%,d hits, %,d misses)%n",
+        shared / users, strings.getHits() - hits, strings.getMisses() - misses);
+    System.out.printf("LazyRepresentation: %,d bytes retained per user%n", lazy / users);
+  }
+
+  private static long retained(byte[] page, ObjectReader reader) throws Exception {
+    long before = usedHeap();
+    List<List<?>> listings = new ArrayList<>(PAGES);
+    for (int i = 0; i < PAGES; i++) {
+      listings.add(reader.readValue(page));
+    }
+    long after = usedHeap();
+    if (listings.size() != PAGES) {
+      throw new IllegalStateException();
+    }
+    return after - before;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(100);
+      used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+    }
+    return used;
+  }
+}
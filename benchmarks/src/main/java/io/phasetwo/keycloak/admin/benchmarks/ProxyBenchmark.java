@@ -0,0 +1,78 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.Keycloak;
+import io.phasetwo.keycloak.admin.KeycloakBuilder;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Proxy dispatch through {@code ResourceProxyFactory}. {@link #nestedProxy()} only builds
+ * sub-resource proxies, which covers path template expansion and joining; the other benchmarks make
+ * a full call against the loopback stub, which adds parameter extraction, the HTTP exchange and
+ * decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProxyBenchmark {
+
+  private StubServer server;
+  private Keycloak keycloak;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new StubServer(20);
+    keycloak =
+        KeycloakBuilder.builder()
+            .serverUrl(server.url())
+            .realm(StubServer.REALM)
+            .grantType(CLIENT_CREDENTIALS)
+            .clientId("bench")
+            .clientSecret("secret")
+            .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    keycloak.close();
+    server.close();
+  }
+
+  @Benchmark
+  public UserResource nestedProxy() {
+    return keycloak.realm(StubServer.REALM).users().get("5b6c2a10-0000-4c1e-9d7a-3f2e1b0c0000");
+  }
+
+  @Benchmark
+  public UserRepresentation getUser() {
+    return keycloak
+        .realm(StubServer.REALM)
+        .users()
+        .get("5b6c2a10-0000-4c1e-9d7a-3f2e1b0c0000")
+        .toRepresentation();
+  }
+
+  @Benchmark
+  public List<UserRepresentation> searchUsers() {
+    return keycloak.realm(StubServer.REALM).users().search("user", 0, 20);
+  }
+}
@@ -0,0 +1,121 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.ProtocolMapperRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.RolesRepresentation;
+
+/** Builds realm exports shaped like those of a mid-sized production realm. */
+final class Realms {
+
+  private Realms() {}
+
+  static RealmRepresentation realm(int clients, int mappersPerClient, int roles, int groups) {
+    RealmRepresentation realm = new RealmRepresentation();
+    realm.setId("a3f1c2d4-0000-4b6e-8c1a-9e2d3f4a5b6c");
+    realm.setRealm("bench");
+    realm.setDisplayName("Benchmark realm");
+    realm.setEnabled(true);
+    realm.setSslRequired("external");
+    realm.setAccessTokenLifespan(300);
+    realm.setSsoSessionIdleTimeout(1800);
+    realm.setSsoSessionMaxLifespan(36000);
+    realm.setRegistrationAllowed(false);
+    realm.setLoginWithEmailAllowed(true);
+    realm.setBruteForceProtected(true);
+    realm.setDefaultSignatureAlgorithm("RS256");
+    realm.setAttributes(
+        Map.of("frontendUrl", "https://auth.example.com", "userProfileEnabled", "true"));
+    realm.setSmtpServer(
+        Map.of("host", "smtp.example.com", "port", "587", "from", "noreply@example.com"));
+
+    List<RoleRepresentation> realmRoles = new ArrayList<>(roles);
+    for (int i = 0; i < roles; i++) {
+      realmRoles.add(role(i));
+    }
+    RolesRepresentation rolesRepresentation = new RolesRepresentation();
+    rolesRepresentation.setRealm(realmRoles);
+    Map<String, List<RoleRepresentation>> clientRoles = new HashMap<>();
+
+    List<ClientRepresentation> clientList = new ArrayList<>(clients);
+    for (int i = 0; i < clients; i++) {
+      ClientRepresentation client = client(i, mappersPerClient);
+      clientList.add(client);
+      clientRoles.put(client.getClientId(), List.of(role(i * 3), role(i * 3 + 1), role(i * 3 + 2)));
+    }
+    rolesRepresentation.setClient(clientRoles);
+    realm.setRoles(rolesRepresentation);
+    realm.setClients(clientList);
+
+    List<GroupRepresentation> groupList = new ArrayList<>(groups);
+    for (int i = 0; i < groups; i++) {
+      GroupRepresentation group = new GroupRepresentation();
+      group.setId(String.format("9c8b7a60-%04x-4d3e-8f2a-1b0c9d8e%04x", i, i));
+      group.setName("group-" + i);
+      group.setPath("/group-" + i);
+      group.setAttributes(Map.of("costCenter", List.of("cc-" + i)));
+      group.setRealmRoles(List.of("role-" + i % Math.max(1, roles)));
+      groupList.add(group);
+    }
+    realm.setGroups(groupList);
+    return realm;
+  }
+
+  static ClientRepresentation client(int i, int mappers) {
+    ClientRepresentation client = new ClientRepresentation();
+    client.setId(String.format("c1d2e3f4-%04x-4a5b-9c6d-7e8f9a0b%04x", i, i));
+    client.setClientId("app-" + i);
+    client.setName("Application " + i);
+    client.setEnabled(true);
+    client.setProtocol("openid-connect");
+    client.setPublicClient(i % 4 == 0);
+    client.setStandardFlowEnabled(true);
+    client.setServiceAccountsEnabled(i % 4 != 0);
+    client.setRootUrl("https://app-" + i + ".example.com");
+    client.setRedirectUris(List.of("https://app-" + i + ".example.com/*"));
+    client.setWebOrigins(List.of("+"));
+    client.setDefaultClientScopes(List.of("web-origins", "profile", "roles", "email"));
+    client.setOptionalClientScopes(List.of("address", "phone", "offline_access"));
+    client.setAttributes(
+        Map.of(
+            "pkce.code.challenge.method", "S256",
+            "post.logout.redirect.uris", "+",
+            "backchannel.logout.session.required", "true",
+            "access.token.lifespan", "600"));
+    List<ProtocolMapperRepresentation> list = new ArrayList<>(mappers);
+    for (int m = 0; m < mappers; m++) {
+      ProtocolMapperRepresentation mapper = new ProtocolMapperRepresentation();
+      mapper.setId(String.format("e5f6a7b8-%04x-4c9d-8e0f-%04x%08x", m, i, m));
+      mapper.setName("mapper-" + m);
+      mapper.setProtocol("openid-connect");
+      mapper.setProtocolMapper("oidc-usermodel-attribute-mapper");
+      mapper.setConfig(
+          Map.of(
+              "user.attribute", "attribute-" + m,
+              "claim.name", "claim_" + m,
+              "jsonType.label", "String",
+              "id.token.claim", "true",
+              "access.token.claim", "true",
+              "userinfo.token.claim", "true"));
+      list.add(mapper);
+    }
+    client.setProtocolMappers(list);
+    return client;
+  }
+
+  private static RoleRepresentation role(int i) {
+    RoleRepresentation role = new RoleRepresentation();
+    role.setId(String.format("7d6c5b4a-%04x-4e3f-9a2b-1c0d9e8f%04x", i & 0xffff, i & 0xffff));
+    role.setName("role-" + i);
+    role.setDescription("Grants access to feature " + i);
+    role.setComposite(false);
+    role.setClientRole(false);
+    return role;
+  }
+}
@@ -0,0 +1,66 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.Http;
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.keycloak.representations.idm.UserRepresentation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Reading and decoding a response body in {@link Http.Response}, without any network I/O. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseBenchmark {
+
+  private static final TypeReference<List<UserRepresentation>> USERS = new TypeReference<>() {};
+
+  @Param({"1", "100", "1000"})
+  public int users;
+
+  private byte[] body;
+
+  @Setup
+  public void setUp() throws IOException {
+    body = JsonSerialization.writeValueAsBytes(Users.list(users));
+  }
+
+  private Http.Response response() {
+    BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    response.setEntity(new ByteArrayEntity(body, ContentType.APPLICATION_JSON));
+    return new Http.Response(response);
+  }
+
+  @Benchmark
+  public String readString() throws IOException {
+    try (Http.Response response = response()) {
+      return response.asString();
+    }
+  }
+
+  @Benchmark
+  public List<UserRepresentation> readUsers() throws IOException {
+    try (Http.Response response = response()) {
+      return response.asJson(USERS);
+    }
+  }
+}
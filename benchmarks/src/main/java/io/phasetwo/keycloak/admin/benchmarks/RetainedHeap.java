@@ -0,0 +1,71 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained by each client after it has made one call: the connection pool, token,
+ * proxies and any caches. Not a JMH benchmark, since retained size is a single number per run. Run
+ * each implementation in its own JVM so that one does not see the other's classes:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar io.phasetwo.keycloak.admin.benchmarks.RetainedHeap PHASETWO
+ * java -cp target/benchmarks.jar io.phasetwo.keycloak.admin.benchmarks.RetainedHeap UPSTREAM
+ * </pre>
+ */
+public final class RetainedHeap {
+
+  private static final int CLIENTS = 50;
+
+  private RetainedHeap() {}
+
+  public static void main(String[] args) throws Exception {
+    AdminClient.Implementation implementation = AdminClient.Implementation.valueOf(args[0]);
+    try (StubServer server = new StubServer(1)) {
+      // load the classes on both paths first, so that only per-client state is counted
+      warmUp(implementation, server);
+      long before = usedHeap();
+      List<AdminClient> clients = new ArrayList<>(CLIENTS);
+      for (int i = 0; i < CLIENTS; i++) {
+        AdminClient client = implementation.create(server.url());
+        call(client);
+        clients.add(client);
+      }
+      long after = usedHeap();
+      System.out.printf(
+          "%s: %,d bytes retained per client (%d clients)%n",
+          implementation, (after - before) / CLIENTS, clients.size());
+      clients.forEach(AdminClient::close);
+    }
+  }
+
+  private static void warmUp(AdminClient.Implementation implementation, StubServer server) {
+    for (int i = 0; i < 5; i++) {
+      try (AdminClient client = implementation.create(server.url())) {
+        call(client);
+      }
+    }
+  }
+
+  private static void call(AdminClient client) {
+    client
+        .realm(StubServer.REALM)
+        .users()
+        .get("5b6c2a10-0000-4c1e-9d7a-3f2e1b0c0000")
+        .toRepresentation();
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long used = Long.MAX_VALUE;
+    // collect until the figure settles, as a single System.gc() may leave garbage behind
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      Thread.sleep(100);
+      used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+    }
+    return used;
+  }
+}
@@ -0,0 +1,71 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.TokenManager;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.keycloak.admin.client.Config;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link TokenManager#getAccessTokenString()} with a valid token, i.e. the check every proxied call
+ * makes before it is sent. Run with {@code -t} to vary the number of contending threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class TokenManagerBenchmark {
+
+  private StubServer server;
+  private CloseableHttpClient client;
+  private TokenManager tokenManager;
+
+  @Setup
+  public void setUp() throws IOException {
+    server = new StubServer(1);
+    client = HttpClients.createDefault();
+    Config config =
+        new Config(
+            server.url(),
+            StubServer.REALM,
+            null,
+            null,
+            "bench",
+            "secret",
+            CLIENT_CREDENTIALS,
+            null);
+    Duration timeout = Duration.ofSeconds(10);
+    tokenManager = new TokenManager(config, client, timeout, timeout, timeout);
+    tokenManager.getAccessToken();
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public String getAccessTokenString() {
+    return tokenManager.getAccessTokenString();
+  }
+}
@@ -0,0 +1,46 @@
+package io.phasetwo.keycloak.admin.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/** Builds user representations shaped like those of a typical realm. */
+final class Users {
+
+  private Users() {}
+
+  static UserRepresentation user(int i) {
+    UserRepresentation user = new UserRepresentation();
+    user.setId(String.format("5b6c2a10-%04x-4c1e-9d7a-3f2e1b0c%04x", i & 0xffff, i & 0xffff));
+    user.setUsername("user" + i);
+    user.setEmail("user" + i + "@example.com");
+    user.setFirstName("First" + i);
+    user.setLastName("Last" + i);
+    user.setEnabled(true);
+    user.setEmailVerified(i % 2 == 0);
+    user.setCreatedTimestamp(1_700_000_000_000L + i);
+    user.setAttributes(
+        Map.of(
+            "locale", List.of("en"),
+            "department", List.of("engineering"),
+            "phone", List.of("+1 555 0100")));
+    user.setRequiredActions(List.of());
+    user.setAccess(
+        Map.of(
+            "manageGroupMembership", true,
+            "view", true,
+            "mapRoles", true,
+            "impersonate", false,
+            "manage", true));
+    return user;
+  }
+
+  static List<UserRepresentation> list(int size) {
+    List<UserRepresentation> users = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      users.add(user(i));
+    }
+    return users;
+  }
+}
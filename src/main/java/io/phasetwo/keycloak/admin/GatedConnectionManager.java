@@ -0,0 +1,174 @@
+package io.phasetwo.keycloak.admin;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * The connection pool of a client that creates its own {@code HttpClient}, made safe for virtual
+ * threads. HttpClient 4.5 leases a connection inside a {@code synchronized} block. It may block
+ * there in two ways: waiting for a connection when the pool is exhausted, and reading from an idle
+ * connection to check that the server has not closed it. Either pins a virtual thread's carrier.
+ *
+ * <p>This pool moves both out of the monitor. A request first takes a permit for its route and one
+ * for the pool from semaphores sized to the pool's limits, so the pool always has a connection to
+ * hand out and never waits itself. A connection that was idle for {@link #STALE_CHECK_AFTER_NANOS}
+ * or longer is checked once it has been leased, and closed if the server closed it, in which case
+ * the client connects it again.
+ */
+final class GatedConnectionManager extends PoolingHttpClientConnectionManager {
+
+  /** The idle time after which HttpClient checks a pooled connection by default, 2 seconds. */
+  static final long STALE_CHECK_AFTER_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+  private static final String RELEASED = GatedConnectionManager.class.getName() + ".released";
+
+  private final Semaphore total;
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Map<HttpRoute, Gate> routes = new ConcurrentHashMap<>();
+  private final Map<HttpClientConnection, Gate> leased = new ConcurrentHashMap<>();
+
+  GatedConnectionManager(int maxPerRoute, int maxTotal) {
+    setDefaultMaxPerRoute(maxPerRoute);
+    setMaxTotal(maxTotal);
+    // done after the lease instead, see closeIfStale()
+    setValidateAfterInactivity(0);
+    this.total = new Semaphore(maxTotal, true);
+  }
+
+  /** Requests waiting for a permit, which the pool's own stats do not count. */
+  int getPending() {
+    return pending.get();
+  }
+
+  int getPending(HttpRoute route) {
+    Gate gate = routes.get(route);
+    return gate != null ? gate.pending.get() : 0;
+  }
+
+  @Override
+  public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+    ConnectionRequest request = super.requestConnection(route, state);
+    Gate gate = routes.computeIfAbsent(route, r -> new Gate(getMaxPerRoute(r)));
+    return new ConnectionRequest() {
+      @Override
+      public HttpClientConnection get(long timeout, TimeUnit unit)
+          throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+        return lease(request, gate, timeout, unit);
+      }
+
+      @Override
+      public boolean cancel() {
+        return request.cancel();
+      }
+    };
+  }
+
+  @Override
+  public void releaseConnection(
+      HttpClientConnection conn, Object state, long keepalive, TimeUnit unit) {
+    if (conn instanceof HttpContext context && conn.isOpen()) {
+      context.setAttribute(RELEASED, System.nanoTime());
+    }
+    try {
+      super.releaseConnection(conn, state, keepalive, unit);
+    } finally {
+      Gate gate = leased.remove(conn);
+      if (gate != null) {
+        release(gate);
+      }
+    }
+  }
+
+  private HttpClientConnection lease(
+      ConnectionRequest request, Gate gate, long timeout, TimeUnit unit)
+      throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+    acquire(gate, timeout, unit);
+    HttpClientConnection conn;
+    try {
+      conn = request.get(timeout, unit);
+    } catch (InterruptedException
+        | ExecutionException
+        | ConnectionPoolTimeoutException
+        | RuntimeException e) {
+      release(gate);
+      throw e;
+    }
+    leased.put(conn, gate);
+    closeIfStale(conn);
+    return conn;
+  }
+
+  private void acquire(Gate gate, long timeout, TimeUnit unit)
+      throws InterruptedException, ConnectionPoolTimeoutException {
+    // as in HttpClient, a timeout of 0 or less waits indefinitely
+    long deadline = timeout > 0 ? System.nanoTime() + unit.toNanos(timeout) : 0;
+    pending.incrementAndGet();
+    gate.pending.incrementAndGet();
+    try {
+      if (!tryAcquire(gate.permits, deadline)) {
+        throw new ConnectionPoolTimeoutException("Timeout waiting for connection from pool");
+      }
+      boolean acquired = false;
+      try {
+        acquired = tryAcquire(total, deadline);
+      } finally {
+        if (!acquired) {
+          gate.permits.release();
+        }
+      }
+      if (!acquired) {
+        throw new ConnectionPoolTimeoutException("Timeout waiting for connection from pool");
+      }
+    } finally {
+      gate.pending.decrementAndGet();
+      pending.decrementAndGet();
+    }
+  }
+
+  private static boolean tryAcquire(Semaphore permits, long deadline) throws InterruptedException {
+    if (deadline == 0) {
+      permits.acquire();
+      return true;
+    }
+    return permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+  }
+
+  private void release(Gate gate) {
+    total.release();
+    gate.permits.release();
+  }
+
+  private static void closeIfStale(HttpClientConnection conn) {
+    if (conn instanceof HttpContext context
+        && context.getAttribute(RELEASED) instanceof Long released
+        && System.nanoTime() - released >= STALE_CHECK_AFTER_NANOS
+        && conn.isStale()) {
+      try {
+        conn.close();
+      } catch (IOException ignored) {
+        // closed either way, and connected again by the client
+      }
+    }
+  }
+
+  private static final class Gate {
+
+    final Semaphore permits;
+    final AtomicInteger pending = new AtomicInteger();
+
+    Gate(int maxPerRoute) {
+      this.permits = new Semaphore(maxPerRoute, true);
+    }
+  }
+}
@@ -4,13 +4,14 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.phasetwo.keycloak.admin.jfr.HttpRequestEvent;
 import java.io.IOException;
 import java.time.Duration;
+import java.io.FilterInputStream;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionReleaseTrigger;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
@@ -37,15 +39,21 @@ import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.execchain.RequestAbortedException;
 import org.apache.http.message.BasicNameValuePair;
 
 /** 24.0.5 version of SimpleHttp */
 public class Http {
 
-  private static final ObjectMapper mapper = new ObjectMapper();
+  /*
+   Addition: unknown properties are ignored
+  */
+  private static final ObjectMapper mapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
   private final HttpClient client;
 
@@ -58,16 +66,18 @@ public class Http {
   private Duration socketTimeout;
   private Duration connectTimeout;
   private Duration connectionRequestTimeout;
+  private RequestConfig requestConfig;
+  private long bytesSent;
+  private String urlTemplate;
+  private ResponseLimits responseLimits;
+
+  private volatile HttpRequestBase pending;
+  private volatile boolean aborted;
 
   protected Http(String url, String method, HttpClient client) {
     this.client = client;
     this.url = url;
     this.method = method;
-
-    /*
-     Addition
-    */
-    mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
   }
 
   public static Http doDelete(String url, HttpClient client) {
@@ -142,6 +152,34 @@ public class Http {
     return this;
   }
 
+  /**
+   * The URL with IDs replaced by their path parameter names, e.g. {@code
+   * /admin/realms/{realm}/users/{id}}. Reported instead of the URL in {@link HttpRequestEvent}s so
+   * that events can be grouped by endpoint.
+   */
+  public Http urlTemplate(String urlTemplate) {
+    this.urlTemplate = urlTemplate;
+    return this;
+  }
+
+  /**
+   * Reads the response body within {@code limits}, spilling a large one to a file and rejecting
+   * one that is too large, instead of buffering it in memory whatever its size.
+   */
+  public Http responseLimits(ResponseLimits limits) {
+    this.responseLimits = limits;
+    return this;
+  }
+
+  /**
+   * Uses a prebuilt config for this request instead of building one from the individual timeouts,
+   * which are then ignored.
+   */
+  public Http requestConfig(RequestConfig requestConfig) {
+    this.requestConfig = requestConfig;
+    return this;
+  }
+
   public Http auth(String token) {
     header("Authorization", "Bearer " + token);
     return this;
@@ -219,6 +257,28 @@ public class Http {
     return url;
   }
 
+  /**
+   * Aborts this request from another thread. A request that has not been sent yet fails as soon as
+   * it is; one in flight has its connection shut down. Either way the sending thread gets a {@link
+   * RequestAbortedException}, which callers can use to tell cancellation apart from I/O failures.
+   */
+  public void abort() {
+    aborted = true;
+    HttpRequestBase request = pending;
+    if (request != null) {
+      request.abort();
+    }
+  }
+
+  public boolean isAborted() {
+    return aborted;
+  }
+
+  /** The size of the request body once sent, or {@code 0} if it had none or it was streamed. */
+  public long getBytesSent() {
+    return bytesSent;
+  }
+
   private Response makeRequest() throws IOException {
 
     HttpRequestBase httpRequest = createHttpRequest();
@@ -244,7 +304,11 @@ public class Http {
       }
     }
 
-    if (socketTimeout != null || connectTimeout != null || connectionRequestTimeout != null) {
+    if (requestConfig != null) {
+      httpRequest.setConfig(requestConfig);
+    } else if (socketTimeout != null
+        || connectTimeout != null
+        || connectionRequestTimeout != null) {
       RequestConfig.Builder config = RequestConfig.custom();
       if (socketTimeout != null) config.setSocketTimeout((int) socketTimeout.toMillis());
       if (connectTimeout != null) config.setConnectTimeout((int) connectTimeout.toMillis());
@@ -253,7 +317,50 @@ public class Http {
       httpRequest.setConfig(config.build());
     }
 
-    return new Response(client.execute(httpRequest));
+    if (httpRequest instanceof HttpEntityEnclosingRequestBase enclosing
+        && enclosing.getEntity() != null) {
+      bytesSent = Math.max(0, enclosing.getEntity().getContentLength());
+    }
+
+    HttpRequestEvent event = new HttpRequestEvent();
+    if (event.isEnabled()) {
+      event.begin();
+    } else {
+      event = null;
+    }
+
+    pending = httpRequest;
+    if (aborted) {
+      httpRequest.abort();
+    }
+    HttpClientContext context = HttpClientContext.create();
+    try {
+      return new Response(client.execute(httpRequest, context), this, context, event);
+    } catch (IOException e) {
+      if (event != null) {
+        commit(event, -1, 0, e);
+      }
+      throw aborted ? aborted(e) : e;
+    }
+  }
+
+  private void commit(HttpRequestEvent event, int status, long bytesReceived, Exception error) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.method = method;
+      event.urlTemplate = urlTemplate != null ? urlTemplate : url;
+      event.status = status;
+      event.bytesSent = bytesSent;
+      event.bytesReceived = bytesReceived;
+      event.error = error == null ? null : error.getClass().getName();
+      event.commit();
+    }
+  }
+
+  private static IOException aborted(IOException e) {
+    return e instanceof RequestAbortedException
+        ? e
+        : new RequestAbortedException("Request aborted", e);
   }
 
   private URI appendParameterToUrl(String url) {
@@ -293,48 +400,93 @@ public class Http {
   public static class Response implements AutoCloseable {
 
     private final HttpResponse response;
+    private final Http request;
+    private final HttpClientContext context;
+    private HttpRequestEvent event;
     private int statusCode = -1;
+    private long bytesReceived;
+    private byte[] responseBytes;
+    private ByteBuffer spilled;
     private String responseString;
     private ContentType contentType;
 
     public Response(HttpResponse response) {
+      this(response, null, null, null);
+    }
+
+    private Response(
+        HttpResponse response, Http request, HttpClientContext context, HttpRequestEvent event) {
       this.response = response;
+      this.request = request;
+      this.context = context;
+      this.event = event;
     }
 
     private void readResponse() throws IOException {
+      try {
+        readFully();
+      } catch (IOException e) {
+        if (event != null) {
+          request.commit(event, statusCode, bytesReceived, e);
+          event = null;
+        }
+        throw request != null && request.aborted ? aborted(e) : e;
+      } catch (ResponseTooLargeException e) {
+        if (event != null) {
+          request.commit(event, statusCode, bytesReceived, e);
+          event = null;
+        }
+        throw e;
+      }
+      if (event != null) {
+        request.commit(event, statusCode, bytesReceived, null);
+        event = null;
+      }
+    }
+
+    private void readFully() throws IOException {
       if (statusCode == -1) {
         statusCode = response.getStatusLine().getStatusCode();
 
         InputStream is;
         HttpEntity entity = response.getEntity();
         if (entity != null) {
-          is = entity.getContent();
+          InputStream content = entity.getContent();
+          CountingInputStream counting = new CountingInputStream(content);
+          is = counting;
           contentType = ContentType.getOrDefault(entity);
-          Charset charset = contentType.getCharset();
+          long contentLength = entity.getContentLength();
           try {
             HeaderIterator it = response.headerIterator();
             while (it.hasNext()) {
               Header header = it.nextHeader();
               if (header.getName().equals("Content-Encoding") && header.getValue().equals("gzip")) {
                 is = new GZIPInputStream(is);
+                contentLength = -1;
               }
             }
 
-            try (InputStreamReader reader =
-                charset == null
-                    ? new InputStreamReader(is, StandardCharsets.UTF_8)
-                    : new InputStreamReader(is, charset)) {
-
-              StringWriter writer = new StringWriter();
-
-              char[] buffer = new char[1024 * 4];
-              for (int n = reader.read(buffer); n != -1; n = reader.read(buffer)) {
-                writer.write(buffer, 0, n);
+            ResponseLimits limits = request == null ? null : request.responseLimits;
+            if (limits == null) {
+              responseBytes = is.readAllBytes();
+            } else {
+              ByteBuffer body = limits.read(is, contentLength);
+              if (body.hasArray()) {
+                responseBytes = body.array();
+              } else {
+                spilled = body;
               }
-
-              responseString = writer.toString();
             }
+          } catch (ResponseTooLargeException e) {
+            // closing the stream would read the rest of the body first
+            try {
+              abortConnection(content);
+            } catch (IOException suppressed) {
+              e.addSuppressed(suppressed);
+            }
+            throw e;
           } finally {
+            bytesReceived = counting.count;
             if (is != null) {
               is.close();
             }
@@ -343,6 +495,14 @@ public class Http {
       }
     }
 
+    private void abortConnection(InputStream content) throws IOException {
+      if (content instanceof ConnectionReleaseTrigger trigger) {
+        trigger.abortConnection();
+      } else if (request != null && request.pending != null) {
+        request.pending.abort();
+      }
+    }
+
     public int getStatus() throws IOException {
       readResponse();
       return response.getStatusLine().getStatusCode();
@@ -362,9 +522,46 @@ public class Http {
 
     public String asString() throws IOException {
       readResponse();
+      if (responseString == null && responseBytes != null) {
+        responseString = new String(responseBytes, getContentTypeCharset());
+      } else if (responseString == null && spilled != null) {
+        responseString = getContentTypeCharset().decode(spilled.duplicate()).toString();
+      }
       return responseString;
     }
 
+    /**
+     * The body after decompression, without decoding it. The array is not copied and must not be
+     * modified, unless the body was spilled to a file, in which case it is read into a new one.
+     */
+    public byte[] asBytes() throws IOException {
+      readResponse();
+      if (spilled != null) {
+        byte[] bytes = new byte[spilled.remaining()];
+        spilled.duplicate().get(bytes);
+        return bytes;
+      }
+      return responseBytes;
+    }
+
+    /**
+     * The body after decompression, without copying it: the array returned by {@link #asBytes()},
+     * or the mapped file if the body was spilled. Must not be modified.
+     */
+    public ByteBuffer asBuffer() throws IOException {
+      readResponse();
+      if (spilled != null) {
+        return spilled.duplicate();
+      }
+      return responseBytes == null ? null : ByteBuffer.wrap(responseBytes);
+    }
+
+    /** Whether the body was larger than the in-memory limit and was spilled to a file. */
+    public boolean isSpilled() throws IOException {
+      readResponse();
+      return spilled != null;
+    }
+
     public String getFirstHeader(String name) throws IOException {
       readResponse();
       Header[] headers = response.getHeaders(name);
@@ -408,8 +605,60 @@ public class Http {
       return StandardCharsets.UTF_8;
     }
 
+    /** The number of body bytes read from the connection, before any decompression. */
+    public long getBytesReceived() throws IOException {
+      readResponse();
+      return bytesReceived;
+    }
+
+    /** The size of the request body that produced this response. */
+    public long getBytesSent() {
+      return request == null ? 0 : request.getBytesSent();
+    }
+
+    /**
+     * @return the context the request was executed with, or {@code null} for a response that was
+     *     not produced by {@link Http}
+     */
+    public HttpClientContext getContext() {
+      return context;
+    }
+
     public void close() throws IOException {
       readResponse();
     }
   }
+
+  private static final class CountingInputStream extends FilterInputStream {
+    private long count;
+
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        count += n;
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = super.skip(n);
+      count += skipped;
+      return skipped;
+    }
+  }
 }
@@ -19,20 +19,48 @@ package io.phasetwo.keycloak.admin;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.DeserializationConfig;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.BeanDeserializerModifier;
+import com.fasterxml.jackson.databind.deser.std.DelegatingDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.keycloak.representations.idm.AbstractUserRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
 
 /**
  * Utility class to handle simple JSON serializable for Keycloak.
  *
+ * <p>Readers and writers are built from {@link #mapper} once per type and reused, so they keep the
+ * configuration the mapper had when they were built. Configure the mapper before the first call, or
+ * call {@link #clearCaches()} after changing it.
+ *
  * @author <a href="mailto:bill@burkecentral.com">Bill Burke</a>
  * @version $Revision: 1 $
  */
@@ -40,19 +68,154 @@ public class JsonSerialization {
   public static final ObjectMapper mapper = new ObjectMapper();
   public static final ObjectMapper prettyMapper = new ObjectMapper();
 
+  private static final String BLACKBIRD_MODULE =
+      "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+
+  // one entry per type read or written, which is bounded by the representation classes in use
+  private static final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+  private static final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+  private static volatile boolean blackbird;
+
+  // mapper with string values looked up in the StringTable passed as a reader attribute
+  private static volatile ObjectMapper deduplicatingMapper;
+  private static final Map<Type, ObjectReader> deduplicatingReaders = new ConcurrentHashMap<>();
+
   static {
     mapper.registerModule(new Jdk8Module());
     mapper.registerModule(new JavaTimeModule());
     mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
     mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    // roles are shared through the RoleTable passed as a reader attribute, if any
+    mapper.registerModule(new SimpleModule("RoleTable").setDeserializerModifier(new RoleSharing()));
     prettyMapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
     prettyMapper.enable(SerializationFeature.INDENT_OUTPUT);
     prettyMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    deduplicatingMapper = deduplicating(mapper);
+  }
+
+  private static ObjectMapper deduplicating(ObjectMapper mapper) {
+    return mapper
+        .copy()
+        .registerModule(
+            new SimpleModule("StringTable")
+                .addDeserializer(String.class, new DeduplicatingStringDeserializer()))
+        // Keycloak reads user attributes through a tree of its own, bypassing the above
+        .addMixIn(AbstractUserRepresentation.class, UserAttributesMixIn.class);
+  }
+
+  /**
+   * Drops the readers and writers built so far, so that later calls build them from the current
+   * configuration of {@link #mapper}. Call it after configuring the mapper, e.g. with {@code
+   * configure}, {@code registerModule} or {@code addMixIn}, once calls have been made.
+   */
+  public static void clearCaches() {
+    deduplicatingMapper = deduplicating(mapper);
+    readers.clear();
+    writers.clear();
+    deduplicatingReaders.clear();
+  }
+
+  /**
+   * Registers Jackson's Blackbird module with {@link #mapper} and {@link #prettyMapper}, if {@code
+   * com.fasterxml.jackson.module:jackson-module-blackbird} is on the class path. Blackbird replaces
+   * reflective getter, setter and constructor calls with generated lambdas, which speeds up large
+   * representation graphs such as realm exports and clients with many protocol mappers.
+   *
+   * <p>Jackson keeps the (de)serializers it has already built, so call this once at startup, before
+   * the first request.
+   *
+   * @return whether Blackbird is registered
+   */
+  public static boolean enableBlackbird() {
+    if (blackbird) {
+      return true;
+    }
+    Class<?> type;
+    try {
+      type = Class.forName(BLACKBIRD_MODULE, true, JsonSerialization.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+    try {
+      mapper.registerModule((Module) type.getConstructor().newInstance());
+      prettyMapper.registerModule((Module) type.getConstructor().newInstance());
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot create " + BLACKBIRD_MODULE, e);
+    }
+    clearCaches();
+    blackbird = true;
+    return true;
+  }
+
+  public static boolean isBlackbirdEnabled() {
+    return blackbird;
+  }
+
+  /**
+   * Returns a reader for {@code type} from {@link #mapper}, built once per type. {@code type} may
+   * be a {@link Class}, a parameterized type such as a method's generic return type, or a {@link
+   * JavaType}.
+   */
+  public static ObjectReader reader(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (reader == null) {
+      reader =
+          readers.computeIfAbsent(
+              type,
+              t ->
+                  mapper.readerFor(
+                      t instanceof JavaType javaType ? javaType : mapper.constructType(t)));
+    }
+    return reader;
+  }
+
+  /**
+   * Returns a reader for {@code type} that shares repeated string values through {@code strings},
+   * or the plain {@link #reader(Type)} if {@code strings} is {@code null}. It is configured like
+   * {@link #mapper} otherwise.
+   */
+  public static ObjectReader reader(Type type, StringTable strings) {
+    if (strings == null) {
+      return reader(type);
+    }
+    ObjectReader reader = deduplicatingReaders.get(type);
+    if (reader == null) {
+      reader =
+          deduplicatingReaders.computeIfAbsent(
+              type,
+              t -> {
+                ObjectMapper m = deduplicatingMapper;
+                return m.readerFor(t instanceof JavaType javaType ? javaType : m.constructType(t));
+              });
+    }
+    return reader.withAttribute(StringTable.class, strings);
+  }
+
+  /**
+   * Returns a reader for {@code type} like {@link #reader(Type, StringTable)}, that also shares the
+   * roles it reads through {@code roles}, if not {@code null}.
+   */
+  public static ObjectReader reader(Type type, StringTable strings, RoleTable roles) {
+    ObjectReader reader = reader(type, strings);
+    return roles == null ? reader : reader.withAttribute(RoleTable.class, roles);
+  }
+
+  /** Returns a writer for values of exactly {@code type} from {@link #mapper}. */
+  public static ObjectWriter writer(Class<?> type) {
+    ObjectWriter writer = writers.get(type);
+    if (writer == null) {
+      writer = writers.computeIfAbsent(type, mapper::writerFor);
+    }
+    return writer;
+  }
+
+  private static ObjectWriter writerFor(Object obj) {
+    return obj == null ? mapper.writer() : writer(obj.getClass());
   }
 
   public static String valueAsString(Object obj) {
     try {
-      return mapper.writeValueAsString(obj);
+      return writerFor(obj).writeValueAsString(obj);
     } catch (IOException e) {
       throw new IllegalArgumentException(e);
     }
@@ -68,14 +231,14 @@ public class JsonSerialization {
 
   public static <T> T valueFromString(String string, Class<T> type) {
     try {
-      return mapper.readValue(string, type);
+      return reader(type).readValue(string);
     } catch (IOException e) {
       throw new IllegalArgumentException(e);
     }
   }
 
   public static void writeValueToStream(OutputStream os, Object obj) throws IOException {
-    mapper.writeValue(os, obj);
+    writerFor(obj).writeValue(os, obj);
   }
 
   public static void writeValuePrettyToStream(OutputStream os, Object obj) throws IOException {
@@ -87,11 +250,11 @@ public class JsonSerialization {
   }
 
   public static String writeValueAsString(Object obj) throws IOException {
-    return mapper.writeValueAsString(obj);
+    return writerFor(obj).writeValueAsString(obj);
   }
 
   public static byte[] writeValueAsBytes(Object obj) throws IOException {
-    return mapper.writeValueAsBytes(obj);
+    return writerFor(obj).writeValueAsBytes(obj);
   }
 
   public static JsonNode writeValueAsNode(Object obj) {
@@ -99,27 +262,27 @@ public class JsonSerialization {
   }
 
   public static <T> T readValue(byte[] bytes, Class<T> type) throws IOException {
-    return mapper.readValue(bytes, type);
+    return reader(type).readValue(bytes);
   }
 
   public static <T> T readValue(String bytes, Class<T> type) throws IOException {
-    return mapper.readValue(bytes, type);
+    return reader(type).readValue(bytes);
   }
 
   public static <T> T readValue(InputStream bytes, Class<T> type) throws IOException {
-    return mapper.readValue(bytes, type);
+    return reader(type).readValue(bytes);
   }
 
   public static <T> T readValue(byte[] bytes, TypeReference<T> type) throws IOException {
-    return mapper.readValue(bytes, type);
+    return reader(type.getType()).readValue(bytes);
   }
 
   public static <T> T readValue(String string, TypeReference<T> type) throws IOException {
-    return mapper.readValue(string, type);
+    return reader(type.getType()).readValue(string);
   }
 
   public static <T> T readValue(InputStream bytes, TypeReference<T> type) throws IOException {
-    return mapper.readValue(bytes, type);
+    return reader(type.getType()).readValue(bytes);
   }
 
   /**
@@ -151,4 +314,122 @@ public class JsonSerialization {
   public static ObjectNode createObjectNode() {
     return mapper.createObjectNode();
   }
+
+  /**
+   * Reads string values through the {@link StringTable} set as a reader attribute, if any. It does
+   * not extend {@link StringDeserializer}, because Jackson bypasses its own standard deserializers
+   * in string collections and arrays.
+   */
+  private static final class DeduplicatingStringDeserializer extends StdScalarDeserializer<String> {
+
+    DeduplicatingStringDeserializer() {
+      super(String.class);
+    }
+
+    @Override
+    public String deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      if (p.hasToken(JsonToken.VALUE_STRING)
+          && ctxt.getAttribute(StringTable.class) instanceof StringTable strings) {
+        return strings.canonicalize(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+      }
+      return StringDeserializer.instance.deserialize(p, ctxt);
+    }
+
+    @Override
+    public Object getEmptyValue(DeserializationContext ctxt) {
+      return "";
+    }
+  }
+
+  private static final class RoleSharing extends BeanDeserializerModifier {
+    @Override
+    public JsonDeserializer<?> modifyDeserializer(
+        DeserializationConfig config, BeanDescription beanDesc, JsonDeserializer<?> deserializer) {
+      return beanDesc.getBeanClass() == RoleRepresentation.class
+          ? new SharingRoleDeserializer(deserializer)
+          : deserializer;
+    }
+  }
+
+  /** Replaces each role read with its shared instance from the {@link RoleTable}, if any. */
+  private static final class SharingRoleDeserializer extends DelegatingDeserializer {
+
+    SharingRoleDeserializer(JsonDeserializer<?> delegate) {
+      super(delegate);
+    }
+
+    @Override
+    protected JsonDeserializer<?> newDelegatingInstance(JsonDeserializer<?> newDelegatee) {
+      return new SharingRoleDeserializer(newDelegatee);
+    }
+
+    @Override
+    public Object deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+      Object value = super.deserialize(p, ctxt);
+      return ctxt.getAttribute(RoleTable.class) instanceof RoleTable roles
+          ? roles.share((RoleRepresentation) value)
+          : value;
+    }
+  }
+
+  abstract static class UserAttributesMixIn {
+    @JsonDeserialize(using = DeduplicatingStringListMapDeserializer.class)
+    protected Map<String, List<String>> attributes;
+  }
+
+  /**
+   * Reads user attributes like Keycloak's {@code StringListMapDeserializer}, a single value
+   * becoming a list of one, but streams them instead of building a tree and shares the values
+   * through the {@link StringTable} set as a reader attribute.
+   */
+  static final class DeduplicatingStringListMapDeserializer
+      extends StdDeserializer<Map<String, List<String>>> {
+
+    DeduplicatingStringListMapDeserializer() {
+      super(Map.class);
+    }
+
+    @Override
+    public Map<String, List<String>> deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      StringTable strings =
+          ctxt.getAttribute(StringTable.class) instanceof StringTable table ? table : null;
+      Map<String, List<String>> map = new HashMap<>();
+      if (p.hasToken(JsonToken.START_OBJECT)) {
+        p.nextToken();
+      }
+      for (; p.hasToken(JsonToken.FIELD_NAME); p.nextToken()) {
+        String name = p.currentName();
+        List<String> values;
+        if (p.nextToken() == JsonToken.START_ARRAY) {
+          values = new ArrayList<>();
+          while (p.nextToken() != JsonToken.END_ARRAY) {
+            values.add(value(p, strings));
+          }
+          ((ArrayList<String>) values).trimToSize();
+        } else {
+          values = new ArrayList<>(1);
+          values.add(value(p, strings));
+        }
+        map.put(name, values);
+      }
+      return map;
+    }
+
+    private static String value(JsonParser p, StringTable strings) throws IOException {
+      JsonToken token = p.currentToken();
+      if (token == JsonToken.VALUE_NULL) {
+        return null;
+      }
+      if (token == JsonToken.VALUE_STRING && strings != null) {
+        return strings.canonicalize(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+      }
+      if (token.isScalarValue()) {
+        return p.getText();
+      }
+      // like JsonNode.asText() on an object or array
+      p.skipChildren();
+      return "";
+    }
+  }
 }
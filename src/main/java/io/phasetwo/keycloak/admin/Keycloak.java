@@ -2,13 +2,26 @@ package io.phasetwo.keycloak.admin;
 
 import static org.keycloak.OAuth2Constants.PASSWORD;
 
+import io.phasetwo.keycloak.admin.metrics.InFlightRequests;
+import io.phasetwo.keycloak.admin.metrics.RequestTimings;
+import io.phasetwo.keycloak.admin.resilience.CircuitBreakerRegistry;
+import io.phasetwo.keycloak.admin.resilience.Hedger;
+import io.phasetwo.keycloak.admin.resource.LazyListingsResource;
+import io.phasetwo.keycloak.admin.resource.ProxyContext;
 import io.phasetwo.keycloak.admin.resource.ResourceProxyFactory;
+import io.phasetwo.keycloak.admin.routing.LoadBalancer;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfiles;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.URI;
 import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
 import org.apache.http.client.HttpClient;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
+import org.apache.http.pool.PoolStats;
 import org.keycloak.admin.client.Config;
 import org.keycloak.admin.client.resource.RealmResource;
 import org.keycloak.admin.client.resource.RealmsResource;
@@ -21,48 +34,95 @@ public class Keycloak implements AutoCloseable {
   private final boolean ownClient;
   private final TokenManager tokenManager;
   private final String authToken;
+  private final CircuitBreakerRegistry circuitBreakers;
+  private final LoadBalancer loadBalancer;
+  private final Hedger hedger;
+  private final GatedConnectionManager connectionManager;
+  private final InFlightRequests inFlight = new InFlightRequests();
+  private final ProxyContext proxyContext;
   private boolean closed;
 
   private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(30);
+  // the limits of the pool HttpClients.createDefault() would create
+  private static final int DEFAULT_MAX_PER_ROUTE = 2;
+  private static final int DEFAULT_MAX_TOTAL = 20;
 
   private final Duration socketTimeout;
   private final Duration connectTimeout;
   private final Duration connectionRequestTimeout;
 
-  Keycloak(
-      String serverUrl,
-      String realm,
-      String username,
-      String password,
-      String clientId,
-      String clientSecret,
-      String grantType,
-      HttpClient httpClient,
-      String authToken,
-      String scope,
-      Duration socketTimeout,
-      Duration connectTimeout,
-      Duration connectionRequestTimeout) {
+  /**
+   * Takes the settings of a builder, with the server URL, load balancer and grant type derived from
+   * them, which the builder's own fields may not hold.
+   */
+  Keycloak(KeycloakBuilder builder, String serverUrl, LoadBalancer loadBalancer, String grantType) {
+    this.loadBalancer = loadBalancer;
     this.config =
-        new Config(serverUrl, realm, username, password, clientId, clientSecret, grantType, scope);
-    this.socketTimeout = socketTimeout != null ? socketTimeout : DEFAULT_TIMEOUT;
-    this.connectTimeout = connectTimeout != null ? connectTimeout : DEFAULT_TIMEOUT;
+        new Config(
+            serverUrl,
+            builder.realm,
+            builder.username,
+            builder.password,
+            builder.clientId,
+            builder.clientSecret,
+            grantType,
+            builder.scope);
+    this.socketTimeout = builder.socketTimeout != null ? builder.socketTimeout : DEFAULT_TIMEOUT;
+    this.connectTimeout = builder.connectTimeout != null ? builder.connectTimeout : DEFAULT_TIMEOUT;
     this.connectionRequestTimeout =
-        connectionRequestTimeout != null ? connectionRequestTimeout : DEFAULT_TIMEOUT;
-    if (httpClient != null) {
-      this.client = httpClient;
+        builder.connectionRequestTimeout != null
+            ? builder.connectionRequestTimeout
+            : DEFAULT_TIMEOUT;
+    if (builder.httpClient != null) {
+      this.client = builder.httpClient;
       this.ownClient = false;
+      this.connectionManager = null;
     } else {
-      this.client = HttpClients.createDefault();
+      int perRoute =
+          builder.maxConnections != null ? builder.maxConnections : DEFAULT_MAX_PER_ROUTE;
+      int nodes = loadBalancer != null ? loadBalancer.getNodes().size() : 1;
+      // room for every node, and never less than the default pool; kept here for stats()
+      this.connectionManager =
+          new GatedConnectionManager(perRoute, Math.max(DEFAULT_MAX_TOTAL, perRoute * nodes));
+      HttpClientBuilder http = HttpClients.custom().setConnectionManager(connectionManager);
+      this.client =
+          builder.metrics != null ? RequestTimings.instrument(http).build() : http.build();
       this.ownClient = true;
     }
-    this.authToken = authToken;
+    this.authToken = builder.authorization;
     this.tokenManager =
         authToken == null
             ? new TokenManager(
-                config, this.client, this.socketTimeout, this.connectTimeout,
-                this.connectionRequestTimeout)
+                config,
+                new TokenService(
+                    config,
+                    this.client,
+                    this.socketTimeout,
+                    this.connectTimeout,
+                    this.connectionRequestTimeout,
+                    loadBalancer,
+                    builder.tracer))
             : null;
+    this.circuitBreakers = builder.circuitBreakers;
+    this.hedger = builder.hedging != null ? new Hedger(builder.hedging) : null;
+    this.proxyContext =
+        ProxyContext.builder(this.client)
+            .tokenSupplier(this::resolveAccessToken)
+            .tokenInvalidator(this::invalidateToken)
+            .socketTimeout(this.socketTimeout)
+            .connectTimeout(this.connectTimeout)
+            .connectionRequestTimeout(this.connectionRequestTimeout)
+            .circuitBreakers(circuitBreakers)
+            .loadBalancer(loadBalancer)
+            .hedger(hedger)
+            .timeoutProfiles(builder.timeoutProfiles)
+            .metrics(builder.metrics)
+            .tracer(builder.tracer)
+            .inFlight(inFlight)
+            .responseLimits(builder.responseLimits)
+            .strings(builder.strings)
+            .roles(builder.roles)
+            .build();
   }
 
   public static Keycloak getInstance(
@@ -73,59 +133,144 @@ public class Keycloak implements AutoCloseable {
       String clientId,
       String clientSecret) {
     return new Keycloak(
-        serverUrl, realm, username, password, clientId, clientSecret, PASSWORD, null, null, null,
-        null, null, null);
+        KeycloakBuilder.builder()
+            .realm(realm)
+            .username(username)
+            .password(password)
+            .clientId(clientId)
+            .clientSecret(clientSecret),
+        serverUrl,
+        null,
+        PASSWORD);
   }
 
   public static Keycloak getInstance(
       String serverUrl, String realm, String clientId, String authToken) {
     return new Keycloak(
-        serverUrl, realm, null, null, clientId, null, PASSWORD, null, authToken, null,
-        null, null, null);
+        KeycloakBuilder.builder().realm(realm).clientId(clientId).authorization(authToken),
+        serverUrl,
+        null,
+        PASSWORD);
   }
 
   public RealmsResource realms() {
-    return ResourceProxyFactory.create(
-        RealmsResource.class,
-        config.getServerUrl(),
-        client,
-        this::resolveAccessToken,
-        this::invalidateToken,
-        socketTimeout,
-        connectTimeout,
-        connectionRequestTimeout);
+    return ResourceProxyFactory.create(RealmsResource.class, config.getServerUrl(), proxyContext);
   }
 
   public RealmResource realm(String realmName) {
     return realms().realm(realmName);
   }
 
+  /**
+   * Returns the user and group listings of {@code realmName}, read into {@link LazyRepresentation}s
+   * for scans that only need a few fields of each element.
+   */
+  public LazyListingsResource lazyListings(String realmName) {
+    return ResourceProxyFactory.create(
+        LazyListingsResource.class,
+        config.getServerUrl() + "/admin/realms/" + realmName,
+        proxyContext);
+  }
+
   public ServerInfoResource serverInfo() {
     return ResourceProxyFactory.create(
-        ServerInfoResource.class,
-        config.getServerUrl(),
-        client,
-        this::resolveAccessToken,
-        this::invalidateToken,
-        socketTimeout,
-        connectTimeout,
-        connectionRequestTimeout);
+        ServerInfoResource.class, config.getServerUrl(), proxyContext);
   }
 
   public TokenManager tokenManager() {
     return tokenManager;
   }
 
+  /**
+   * @return the circuit breakers guarding proxied calls, or {@code null} if none were configured
+   */
+  public CircuitBreakerRegistry circuitBreakers() {
+    return circuitBreakers;
+  }
+
+  /**
+   * @return the balancer spreading calls over the configured server URLs, or {@code null} if a
+   *     single server URL was configured
+   */
+  public LoadBalancer loadBalancer() {
+    return loadBalancer;
+  }
+
+  /**
+   * @return the hedger for slow GET calls, or {@code null} if hedging was not enabled
+   */
+  public Hedger hedger() {
+    return hedger;
+  }
+
+  /**
+   * @return the bounds on response bodies, with their spill and rejection counts, or {@code null}
+   *     if none were configured
+   */
+  public ResponseLimits responseLimits() {
+    return proxyContext.getResponseLimits();
+  }
+
+  /**
+   * Starts a fan-out of calls over many inputs, with a concurrency cap and an optional shared
+   * deadline. See {@link Parallel}. When the client created its own connection pool, the
+   * concurrency defaults to the number of connections the pool can lease to the configured nodes,
+   * which is {@link KeycloakBuilder#maxConnections(int)} per node.
+   */
+  public Parallel parallel() {
+    Parallel parallel = new Parallel();
+    if (connectionManager != null) {
+      int nodes = loadBalancer != null ? loadBalancer.getNodes().size() : 1;
+      parallel.concurrency(
+          Math.min(
+              connectionManager.getMaxTotal(), connectionManager.getDefaultMaxPerRoute() * nodes));
+    }
+    return parallel;
+  }
+
+  /**
+   * Takes a snapshot of the connection pool, the calls in flight, the access token and the internal
+   * caches. Cheap enough to be polled by a health or metrics endpoint.
+   */
+  public KeycloakStats stats() {
+    KeycloakStats.Pool pool = null;
+    Map<String, KeycloakStats.Pool> routes = new TreeMap<>();
+    if (connectionManager != null) {
+      pool = toPool(connectionManager.getTotalStats(), connectionManager.getPending());
+      for (HttpRoute route : connectionManager.getRoutes()) {
+        routes.put(
+            route.getTargetHost().toURI(),
+            toPool(connectionManager.getStats(route), connectionManager.getPending(route)));
+      }
+    }
+    TimeoutProfiles timeouts = proxyContext.getTimeoutProfiles();
+    Map<String, KeycloakStats.Cache> caches = new TreeMap<>();
+    caches.put(
+        "timeoutProfiles",
+        new KeycloakStats.Cache(timeouts.getCacheHits(), timeouts.getCacheMisses()));
+    StringTable strings = proxyContext.getStrings();
+    if (strings != null) {
+      caches.put("strings", new KeycloakStats.Cache(strings.getHits(), strings.getMisses()));
+    }
+    RoleTable roles = proxyContext.getRoles();
+    if (roles != null) {
+      caches.put("roles", new KeycloakStats.Cache(roles.getHits(), roles.getMisses()));
+    }
+    return new KeycloakStats(
+        pool,
+        routes,
+        inFlight.snapshot(),
+        tokenManager != null ? tokenManager.getStats() : null,
+        caches);
+  }
+
+  private static KeycloakStats.Pool toPool(PoolStats stats, int gated) {
+    return new KeycloakStats.Pool(
+        stats.getLeased(), stats.getAvailable(), stats.getPending() + gated, stats.getMax());
+  }
+
   public <T> T proxy(Class<T> proxyClass, URI absoluteURI) {
-    return ResourceProxyFactory.create(
-        proxyClass,
-        absoluteURI.toString(),
-        client,
-        this::resolveAccessToken,
-        this::invalidateToken,
-        socketTimeout,
-        connectTimeout,
-        connectionRequestTimeout);
+    return ResourceProxyFactory.create(proxyClass, absoluteURI.toString(), proxyContext);
   }
 
   @Override
@@ -138,6 +283,9 @@ public class Keycloak implements AutoCloseable {
         // best-effort logout only
       }
     }
+    if (hedger != null) {
+      hedger.close();
+    }
     if (ownClient && client instanceof Closeable closeable) {
       try {
         closeable.close();
@@ -2,24 +2,43 @@ package io.phasetwo.keycloak.admin;
 
 import static org.keycloak.OAuth2Constants.PASSWORD;
 
+import io.phasetwo.keycloak.admin.metrics.MetricsRecorder;
+import io.phasetwo.keycloak.admin.resilience.CircuitBreakerRegistry;
+import io.phasetwo.keycloak.admin.resilience.HedgingPolicy;
+import io.phasetwo.keycloak.admin.routing.LoadBalancer;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfiles;
+import io.phasetwo.keycloak.admin.tracing.Tracer;
 import java.time.Duration;
+import java.util.List;
 import org.apache.http.client.HttpClient;
 import org.keycloak.admin.client.Config;
 
 public class KeycloakBuilder {
-  private String serverUrl;
-  private String realm;
-  private String username;
-  private String password;
-  private String clientId;
-  private String clientSecret;
-  private String grantType;
-  private HttpClient httpClient;
-  private String authorization;
-  private String scope;
-  private Duration socketTimeout;
-  private Duration connectTimeout;
-  private Duration connectionRequestTimeout;
+  // read by the Keycloak constructor
+  String serverUrl;
+  List<String> serverUrls;
+  LoadBalancer loadBalancer;
+  String realm;
+  String username;
+  String password;
+  String clientId;
+  String clientSecret;
+  String grantType;
+  HttpClient httpClient;
+  String authorization;
+  String scope;
+  Duration socketTimeout;
+  Duration connectTimeout;
+  Duration connectionRequestTimeout;
+  CircuitBreakerRegistry circuitBreakers;
+  HedgingPolicy hedging;
+  TimeoutProfiles timeoutProfiles;
+  MetricsRecorder metrics;
+  Tracer tracer;
+  ResponseLimits responseLimits;
+  StringTable strings;
+  RoleTable roles;
+  Integer maxConnections;
 
   private KeycloakBuilder() {}
 
@@ -32,6 +51,26 @@ public class KeycloakBuilder {
     return this;
   }
 
+  /**
+   * Spreads calls over several nodes of a Keycloak cluster using the default {@link LoadBalancer}
+   * settings. The first URL is used as the server URL for anything that is not load balanced.
+   * Replaces {@link #serverUrl(String)}, so setting both fails {@link #build()}.
+   */
+  public KeycloakBuilder serverUrls(List<String> serverUrls) {
+    this.serverUrls = serverUrls;
+    return this;
+  }
+
+  /**
+   * Spreads calls over the nodes of a custom-configured {@link LoadBalancer}, whose primary URL is
+   * the server URL. Replaces {@link #serverUrl(String)} and {@link #serverUrls(List)}, so setting
+   * either as well fails {@link #build()}. Every client built with it shares its node state.
+   */
+  public KeycloakBuilder loadBalancer(LoadBalancer loadBalancer) {
+    this.loadBalancer = loadBalancer;
+    return this;
+  }
+
   public KeycloakBuilder realm(String realm) {
     this.realm = realm;
     return this;
@@ -78,6 +117,19 @@ public class KeycloakBuilder {
     return this;
   }
 
+  /**
+   * Sizes the connection pool the client creates when no {@link #httpClient(HttpClient)} is set: at
+   * most {@code maxConnections} connections to each Keycloak node, 2 by default, as in HttpClient's
+   * default pool. It is also the default concurrency of {@link Keycloak#parallel()}.
+   */
+  public KeycloakBuilder maxConnections(int maxConnections) {
+    if (maxConnections < 1) {
+      throw new IllegalArgumentException("maxConnections must be at least 1");
+    }
+    this.maxConnections = maxConnections;
+    return this;
+  }
+
   public KeycloakBuilder socketTimeout(Duration socketTimeout) {
     this.socketTimeout = socketTimeout;
     return this;
@@ -93,13 +145,110 @@ public class KeycloakBuilder {
     return this;
   }
 
+  /**
+   * Guards every proxied call with a circuit breaker from the given registry, so that calls to an
+   * endpoint family that keeps failing or timing out fail fast with a {@link
+   * io.phasetwo.keycloak.admin.resilience.CircuitBreakerOpenException} instead of waiting for the
+   * socket timeout.
+   */
+  public KeycloakBuilder circuitBreakers(CircuitBreakerRegistry circuitBreakers) {
+    this.circuitBreakers = circuitBreakers;
+    return this;
+  }
+
+  /**
+   * Hedges slow GET calls: when no response has arrived after the policy's delay, a second copy is
+   * sent, to another node if several server URLs are configured, and the first successful answer is
+   * used.
+   */
+  public KeycloakBuilder hedging(HedgingPolicy hedging) {
+    this.hedging = hedging;
+    return this;
+  }
+
+  /**
+   * Selects timeouts per resource interface, resource method or URL pattern instead of applying the
+   * client-wide timeouts to every call. Timeouts a profile leaves unset fall back to the
+   * client-wide ones.
+   */
+  public KeycloakBuilder timeoutProfiles(TimeoutProfiles timeoutProfiles) {
+    this.timeoutProfiles = timeoutProfiles;
+    return this;
+  }
+
+  /**
+   * Reports count, errors, bytes and latencies of every proxied call to {@code metrics}, e.g. an
+   * {@link io.phasetwo.keycloak.admin.metrics.InMemoryMetricsRegistry}. Connection lease and server
+   * time are only measured when no custom {@link #httpClient(HttpClient)} is set, or when that
+   * client was built with {@link io.phasetwo.keycloak.admin.metrics.RequestTimings#instrument}.
+   */
+  public KeycloakBuilder metrics(MetricsRecorder metrics) {
+    this.metrics = metrics;
+    return this;
+  }
+
+  /**
+   * Opens a span through {@code tracer} around every admin and token call and propagates the
+   * headers it returns, e.g. {@code traceparent}, on the underlying HTTP requests.
+   */
+  public KeycloakBuilder tracer(Tracer tracer) {
+    this.tracer = tracer;
+    return this;
+  }
+
+  /**
+   * Bounds the memory taken by response bodies: large ones are spilled to a memory-mapped file and
+   * oversized ones fail the call with a {@link ResponseTooLargeException}. Without limits, every
+   * body is read into memory whatever its size.
+   */
+  public KeycloakBuilder responseLimits(ResponseLimits responseLimits) {
+    this.responseLimits = responseLimits;
+    return this;
+  }
+
+  /**
+   * Shares the string values that repeat across responses, such as attribute values, role names and
+   * client IDs, through {@code strings} instead of reading each into its own string. Meant for
+   * clients that keep large listings in memory.
+   */
+  public KeycloakBuilder deduplicateStrings(StringTable strings) {
+    this.strings = strings;
+    return this;
+  }
+
+  /**
+   * Reads the roles that repeat across responses, such as role mappings, into one shared immutable
+   * instance per role ID from {@code roles}. Meant for clients that keep or compare the roles of
+   * many users; see {@link RoleTable} for what sharing implies.
+   */
+  public KeycloakBuilder shareRoles(RoleTable roles) {
+    this.roles = roles;
+    return this;
+  }
+
   public Keycloak build() {
+    // derived into locals, so that the builder can be changed and built again
+    if ((serverUrl != null && (serverUrls != null || loadBalancer != null))
+        || (serverUrls != null && loadBalancer != null)) {
+      throw new IllegalStateException("only one of serverUrl, serverUrls and loadBalancer allowed");
+    }
+    LoadBalancer loadBalancer = this.loadBalancer;
+    if (serverUrls != null && serverUrls.size() > 1) {
+      loadBalancer = LoadBalancer.of(serverUrls);
+    }
+    String serverUrl = this.serverUrl;
+    if (loadBalancer != null) {
+      serverUrl = loadBalancer.getPrimaryUrl();
+    } else if (serverUrls != null && !serverUrls.isEmpty()) {
+      serverUrl = serverUrls.get(0);
+    }
     if (serverUrl == null) {
       throw new IllegalStateException("serverUrl required");
     }
     if (realm == null) {
       throw new IllegalStateException("realm required");
     }
+    String grantType = this.grantType;
     if (authorization == null && grantType == null) {
       grantType = PASSWORD;
     }
@@ -114,19 +263,6 @@ public class KeycloakBuilder {
     if (authorization == null && clientId == null) {
       throw new IllegalStateException("clientId required");
     }
-    return new Keycloak(
-        serverUrl,
-        realm,
-        username,
-        password,
-        clientId,
-        clientSecret,
-        grantType,
-        httpClient,
-        authorization,
-        scope,
-        socketTimeout,
-        connectTimeout,
-        connectionRequestTimeout);
+    return new Keycloak(this, serverUrl, loadBalancer, grantType);
   }
 }
@@ -0,0 +1,46 @@
+package io.phasetwo.keycloak.admin;
+
+import io.phasetwo.keycloak.admin.metrics.Endpoint;
+import java.util.Map;
+
+/**
+ * Point-in-time view of a {@link Keycloak} client's internal state, returned by {@link
+ * Keycloak#stats()}. Taking a snapshot does not block on calls or token requests in progress, so
+ * the values are each consistent on their own but not necessarily with one another.
+ *
+ * @param pool connection pool totals, or {@code null} if the client was given its own {@link
+ *     org.apache.http.client.HttpClient}
+ * @param routes connection pool counts per route (scheme, host and port); empty if {@code pool} is
+ *     {@code null}
+ * @param inFlight proxied calls in progress per endpoint; endpoints with none are omitted
+ * @param token access token age and counters, or {@code null} if the client uses a fixed token
+ * @param caches hit and miss counts of the client's internal caches, by cache name
+ */
+public record KeycloakStats(
+    Pool pool,
+    Map<String, Pool> routes,
+    Map<Endpoint, Integer> inFlight,
+    TokenManager.Stats token,
+    Map<String, Cache> caches) {
+
+  /**
+   * @param leased connections currently used by a request
+   * @param available idle connections kept alive for reuse
+   * @param pending requests waiting for a connection
+   * @param max the most connections that may be open at once
+   */
+  public record Pool(int leased, int available, int pending, int max) {}
+
+  /**
+   * @param hits lookups answered from the cache
+   * @param misses lookups that had to compute the value
+   */
+  public record Cache(long hits, long misses) {
+
+    /** Fraction of lookups answered from the cache, or {@code NaN} before the first lookup. */
+    public double hitRatio() {
+      long total = hits + misses;
+      return total == 0 ? Double.NaN : (double) hits / total;
+    }
+  }
+}
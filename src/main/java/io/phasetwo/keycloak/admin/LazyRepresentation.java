@@ -0,0 +1,182 @@
+package io.phasetwo.keycloak.admin;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.filter.FilteringParserDelegate;
+import com.fasterxml.jackson.core.filter.TokenFilter;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The JSON of one representation, kept as UTF-8 bytes and read only as far as it is accessed. Meant
+ * for scans over large listings that need a few fields of each element: reading the listing as
+ * {@code List<LazyRepresentation<UserRepresentation>>} keeps one byte array per user instead of
+ * every nested map and list, and {@link #get(String...)} reads only the fields asked for.
+ *
+ * <pre>{@code
+ * for (LazyRepresentation<UserRepresentation> user :
+ *     keycloak.lazyListings("test").users(null, 0, 1000)) {
+ *   List<String> department = user.get("attributes.department").getAttributes().get("department");
+ * }
+ * }</pre>
+ *
+ * <p>Each call reads a new representation from the bytes, so keep the result rather than calling
+ * again for the same fields. Any property of type {@code LazyRepresentation<T>} is read this way,
+ * by any {@link JsonSerialization} reader, and written back as the JSON it was read from.
+ */
+@JsonDeserialize(using = LazyRepresentation.Deserializer.class)
+public final class LazyRepresentation<T> implements JsonSerializable {
+
+  private final JavaType type;
+  private final byte[] json;
+
+  private LazyRepresentation(JavaType type, byte[] json) {
+    this.type = type;
+    this.json = json;
+  }
+
+  /**
+   * @param json the UTF-8 JSON of a {@code type}, which is not copied
+   */
+  public static <T> LazyRepresentation<T> of(byte[] json, Class<T> type) {
+    Objects.requireNonNull(json, "json");
+    return new LazyRepresentation<>(JsonSerialization.mapper.constructType(type), json);
+  }
+
+  /** Size of the JSON in bytes. */
+  public int size() {
+    return json.length;
+  }
+
+  /** Reads the whole representation. */
+  public T get() {
+    return read(null);
+  }
+
+  /**
+   * Reads a representation with only {@code fields} set, each the name of a top-level JSON property
+   * or a dotted path into one, e.g. {@code "attributes.department"} for a single attribute. The
+   * rest of the JSON is skipped without being read into objects.
+   */
+  public T get(String... fields) {
+    if (fields.length == 0) {
+      throw new IllegalArgumentException("fields must not be empty");
+    }
+    return read(PathFilter.of(fields));
+  }
+
+  private T read(TokenFilter filter) {
+    try (JsonParser parser = JsonSerialization.mapper.getFactory().createParser(json)) {
+      JsonParser p =
+          filter == null
+              ? parser
+              : new FilteringParserDelegate(
+                  parser, filter, TokenFilter.Inclusion.INCLUDE_ALL_AND_PATH, true);
+      if (p.nextToken() == null) {
+        // none of the fields are present
+        return JsonSerialization.reader(type).readValue("{}");
+      }
+      return JsonSerialization.reader(type).readValue(p);
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read " + type.getRawClass().getSimpleName(), e);
+    }
+  }
+
+  @Override
+  public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+    gen.writeRawValue(toString());
+  }
+
+  @Override
+  public void serializeWithType(
+      JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer)
+      throws IOException {
+    serialize(gen, serializers);
+  }
+
+  @Override
+  public String toString() {
+    return new String(json, StandardCharsets.UTF_8);
+  }
+
+  /** Includes the properties on the paths it was created with, and everything below them. */
+  private static final class PathFilter extends TokenFilter {
+
+    private final Map<String, PathFilter> children = new HashMap<>();
+
+    static PathFilter of(String... paths) {
+      PathFilter root = new PathFilter();
+      for (String path : paths) {
+        PathFilter node = root;
+        for (String name : path.split("\\.", -1)) {
+          if (name.isEmpty()) {
+            throw new IllegalArgumentException("Invalid field " + path);
+          }
+          node = node.children.computeIfAbsent(name, n -> new PathFilter());
+        }
+      }
+      return root;
+    }
+
+    @Override
+    public TokenFilter includeProperty(String name) {
+      PathFilter child = children.get(name);
+      if (child == null) {
+        return null;
+      }
+      return child.children.isEmpty() ? TokenFilter.INCLUDE_ALL : child;
+    }
+  }
+
+  /**
+   * Copies each element into a byte array of its own, so that nothing but the bytes is retained.
+   * String values are copied from the parser's buffer without becoming strings.
+   */
+  static final class Deserializer extends JsonDeserializer<LazyRepresentation<?>>
+      implements ContextualDeserializer {
+
+    private final JavaType type;
+
+    Deserializer() {
+      this(null);
+    }
+
+    private Deserializer(JavaType type) {
+      this.type = type;
+    }
+
+    @Override
+    public JsonDeserializer<?> createContextual(
+        DeserializationContext ctxt, BeanProperty property) {
+      // the LazyRepresentation<T> being read, also for elements of a list
+      return new Deserializer(ctxt.getContextualType().containedTypeOrUnknown(0));
+    }
+
+    @Override
+    public LazyRepresentation<?> deserialize(JsonParser p, DeserializationContext ctxt)
+        throws IOException {
+      if (type == null || p.currentToken() != JsonToken.START_OBJECT) {
+        return (LazyRepresentation<?>) ctxt.handleUnexpectedToken(LazyRepresentation.class, p);
+      }
+      ByteArrayBuilder bytes = new ByteArrayBuilder(512);
+      try (JsonGenerator gen = JsonSerialization.mapper.getFactory().createGenerator(bytes)) {
+        gen.copyCurrentStructure(p);
+      }
+      return new LazyRepresentation<>(type, bytes.toByteArray());
+    }
+  }
+}
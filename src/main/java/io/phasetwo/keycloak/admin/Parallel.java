@@ -0,0 +1,243 @@
+package io.phasetwo.keycloak.admin;
+
+import io.phasetwo.keycloak.admin.timeout.Deadline;
+import io.phasetwo.keycloak.admin.timeout.DeadlineExceededException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Function;
+
+/**
+ * Fans a call out over many inputs, e.g. reading the role mappings of 5,000 users, with at most
+ * {@link #concurrency(int)} calls in flight at once. Results are returned in input order.
+ *
+ * <pre>{@code
+ * List<List<RoleRepresentation>> roles =
+ *     keycloak.parallel()
+ *         .concurrency(32)
+ *         .deadline(Duration.ofSeconds(30))
+ *         .map(ids, id -> realm.users().get(id).roles().realmLevel().listAll());
+ * }</pre>
+ *
+ * <p>{@link #map} fails fast: the first failure interrupts the calls in progress, no further calls
+ * are started, and the failure is rethrown. {@link #mapAll} runs every call and returns each
+ * outcome. Either way, every call has finished by the time the method returns. Calls run on virtual
+ * threads unless another {@link #threadFactory(ThreadFactory)} is given.
+ *
+ * <p>A deadline set here is shared by all calls and is opened on each calling thread, so it caps
+ * the timeouts of each request as described in {@link Deadline}. A deadline already open on the
+ * thread that calls {@code map} applies as well. Inputs that had not started when the deadline
+ * passed fail with {@link DeadlineExceededException}.
+ */
+public final class Parallel {
+
+  static final int DEFAULT_CONCURRENCY = 16;
+
+  private int concurrency = DEFAULT_CONCURRENCY;
+  private Duration deadline;
+  private ThreadFactory threadFactory;
+
+  Parallel() {}
+
+  /**
+   * Maximum number of calls in flight. Defaults to {@value #DEFAULT_CONCURRENCY}, or to the pool
+   * size when the client created its own connection pool. Calls beyond the pool size only wait for
+   * a connection. With a custom {@code HttpClient}, keep it within that client's pool size:
+   * HttpClient 4.5 waits for a connection inside a {@code synchronized} block, which pins the
+   * carrier of a virtual thread.
+   */
+  public Parallel concurrency(int concurrency) {
+    if (concurrency < 1) {
+      throw new IllegalArgumentException("concurrency must be at least 1");
+    }
+    this.concurrency = concurrency;
+    return this;
+  }
+
+  int getConcurrency() {
+    return concurrency;
+  }
+
+  /** Time allowed for all calls together, measured from the start of {@code map}. */
+  public Parallel deadline(Duration deadline) {
+    if (deadline != null && (deadline.isNegative() || deadline.isZero())) {
+      throw new IllegalArgumentException("deadline must be positive");
+    }
+    this.deadline = deadline;
+    return this;
+  }
+
+  /** Creates the threads the calls run on; defaults to one virtual thread per call. */
+  public Parallel threadFactory(ThreadFactory threadFactory) {
+    this.threadFactory = threadFactory;
+    return this;
+  }
+
+  /**
+   * Applies {@code call} to every input and returns the results in input order.
+   *
+   * @throws RuntimeException the first failure, after the calls still in progress were interrupted
+   *     and have finished
+   */
+  public <T, R> List<R> map(Collection<? extends T> inputs, Function<? super T, ? extends R> call) {
+    List<Result<R>> results = run(inputs, call, true);
+    List<R> values = new ArrayList<>(results.size());
+    for (Result<R> result : results) {
+      values.add(result.value());
+    }
+    return values;
+  }
+
+  /** Applies {@code call} to every input, whether or not others fail, and returns each outcome. */
+  public <T, R> List<Result<R>> mapAll(
+      Collection<? extends T> inputs, Function<? super T, ? extends R> call) {
+    return run(inputs, call, false);
+  }
+
+  private <T, R> List<Result<R>> run(
+      Collection<? extends T> inputs, Function<? super T, ? extends R> call, boolean failFast) {
+    Objects.requireNonNull(call, "call");
+    List<T> items = List.copyOf(inputs);
+    int size = items.size();
+    AtomicReferenceArray<R> values = new AtomicReferenceArray<>(size);
+    AtomicReferenceArray<Throwable> errors = new AtomicReferenceArray<>(size);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    Deadline outer = Deadline.current();
+    Deadline shared = deadline != null ? Deadline.after(deadline) : null;
+    Semaphore permits = new Semaphore(concurrency);
+    ExecutorService executor =
+        Executors.newThreadPerTaskExecutor(
+            threadFactory != null ? threadFactory : Thread.ofVirtual().factory());
+
+    int started = 0;
+    try {
+      while (started < size && failure.get() == null) {
+        Deadline expired = acquire(permits, outer, shared);
+        if (expired != null) {
+          DeadlineExceededException e = new DeadlineExceededException(expired);
+          for (int i = started; i < size; i++) {
+            errors.set(i, e);
+          }
+          if (failFast) {
+            failure.compareAndSet(null, e);
+          }
+          break;
+        }
+        int index = started;
+        T input = items.get(index);
+        try {
+          executor.execute(
+              () -> {
+                try (Deadline.Scope a = open(outer);
+                    Deadline.Scope b = open(shared)) {
+                  values.set(index, call.apply(input));
+                } catch (Throwable e) {
+                  errors.set(index, e);
+                  if (failFast && failure.compareAndSet(null, e)) {
+                    executor.shutdownNow();
+                  }
+                } finally {
+                  permits.release();
+                }
+              });
+        } catch (RejectedExecutionException e) {
+          // shut down by a failing call
+          permits.release();
+          break;
+        }
+        started++;
+      }
+    } catch (InterruptedException e) {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      failure.compareAndSet(null, new IllegalStateException("Interrupted", e));
+    } finally {
+      // waits for every started call, interrupting them if this thread is interrupted
+      executor.close();
+    }
+
+    Throwable first = failure.get();
+    if (first instanceof RuntimeException e) {
+      throw e;
+    }
+    if (first instanceof Error e) {
+      throw e;
+    }
+    if (first != null) {
+      throw new IllegalStateException(first);
+    }
+    List<Result<R>> results = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      results.add(new Result<>(values.get(i), errors.get(i)));
+    }
+    return results;
+  }
+
+  /**
+   * Waits for a permit until the earlier deadline passes.
+   *
+   * @return the deadline that passed first, or {@code null} once a permit was acquired
+   */
+  private static Deadline acquire(Semaphore permits, Deadline outer, Deadline shared)
+      throws InterruptedException {
+    Deadline earliest = outer;
+    if (shared != null
+        && (earliest == null || shared.remaining().compareTo(outer.remaining()) < 0)) {
+      earliest = shared;
+    }
+    if (earliest == null) {
+      permits.acquire();
+      return null;
+    }
+    long remaining = earliest.remaining().toNanos();
+    if (remaining > 0 && permits.tryAcquire(remaining, TimeUnit.NANOSECONDS)) {
+      return null;
+    }
+    return earliest;
+  }
+
+  private static Deadline.Scope open(Deadline deadline) {
+    return deadline != null ? deadline.open() : null;
+  }
+
+  /**
+   * The outcome of one call made by {@link #mapAll}.
+   *
+   * @param value what the call returned, {@code null} if it failed
+   * @param error why the call failed, {@code null} if it succeeded
+   */
+  public record Result<R>(R value, Throwable error) {
+
+    public boolean isSuccess() {
+      return error == null;
+    }
+
+    /**
+     * @return the value of a successful call
+     * @throws RuntimeException the failure of an unsuccessful call, wrapped in an {@link
+     *     IllegalStateException} if it is a checked exception
+     */
+    public R get() {
+      if (error instanceof RuntimeException e) {
+        throw e;
+      }
+      if (error instanceof Error e) {
+        throw e;
+      }
+      if (error != null) {
+        throw new IllegalStateException(error);
+      }
+      return value;
+    }
+  }
+}
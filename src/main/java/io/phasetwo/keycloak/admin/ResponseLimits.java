@@ -0,0 +1,187 @@
+package io.phasetwo.keycloak.admin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the memory taken by response bodies. A body of up to {@link Builder#maxInMemory(long)
+ * maxInMemory} bytes is read onto the heap as before. A larger one is written to a temporary file
+ * that is memory-mapped for reading, so it occupies the page cache rather than the heap. A body of
+ * more than {@link Builder#maxSize(long) maxSize} bytes fails the call with a {@link
+ * ResponseTooLargeException}, and the connection is closed without reading the rest.
+ *
+ * <pre>{@code
+ * ResponseLimits limits =
+ *     ResponseLimits.builder().maxInMemory(4 << 20).maxSize(256 << 20).build();
+ * Keycloak keycloak = KeycloakBuilder.builder()...responseLimits(limits).build();
+ * }</pre>
+ *
+ * <p>Sizes are counted after decompression. Spill files are deleted as soon as they are mapped; the
+ * mapping is released once the response is no longer referenced. The counters returned by {@link
+ * #getSpills()}, {@link #getSpilledBytes()} and {@link #getRejected()} cover every client the
+ * limits were given to.
+ */
+public final class ResponseLimits {
+
+  static final long DEFAULT_MAX_IN_MEMORY = 8L << 20;
+  // the largest body that can be mapped into a single buffer
+  static final long MAX_SIZE = Integer.MAX_VALUE;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final long maxInMemory;
+  private final long maxSize;
+  private final Path spillDirectory;
+  private final LongAdder spills = new LongAdder();
+  private final LongAdder spilledBytes = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  private ResponseLimits(Builder builder) {
+    this.maxInMemory = Math.min(builder.maxInMemory, builder.maxSize);
+    this.maxSize = builder.maxSize;
+    this.spillDirectory = builder.spillDirectory;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public long getMaxInMemory() {
+    return maxInMemory;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  /** Number of bodies written to a spill file. */
+  public long getSpills() {
+    return spills.sum();
+  }
+
+  /** Total size of the bodies written to spill files. */
+  public long getSpilledBytes() {
+    return spilledBytes.sum();
+  }
+
+  /** Number of responses rejected for exceeding the maximum size. */
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  /**
+   * Reads a body within these limits.
+   *
+   * @param contentLength the declared length of {@code in}, or -1 if unknown or if the body is
+   *     decompressed while it is read
+   * @return the body, backed by an array if it was read onto the heap and by a read-only mapping if
+   *     it was spilled
+   * @throws ResponseTooLargeException once more than the maximum size has been read or declared;
+   *     the caller must then abort the connection
+   */
+  ByteBuffer read(InputStream in, long contentLength) throws IOException {
+    if (contentLength > maxSize) {
+      throw tooLarge();
+    }
+    byte[] head = in.readNBytes((int) Math.min(maxInMemory + 1, MAX_SIZE));
+    if (head.length <= maxInMemory) {
+      return ByteBuffer.wrap(head);
+    }
+    if (maxInMemory == maxSize) {
+      throw tooLarge();
+    }
+    return spill(head, in);
+  }
+
+  private ByteBuffer spill(byte[] head, InputStream in) throws IOException {
+    Path file =
+        spillDirectory != null
+            ? Files.createTempFile(spillDirectory, "keycloak-admin-", ".body")
+            : Files.createTempFile("keycloak-admin-", ".body");
+    FileChannel channel;
+    try {
+      channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE);
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    try (channel) {
+      write(channel, ByteBuffer.wrap(head));
+      long size = head.length;
+      byte[] chunk = new byte[CHUNK_SIZE];
+      for (int n = in.read(chunk); n != -1; n = in.read(chunk)) {
+        size += n;
+        if (size > maxSize) {
+          throw tooLarge();
+        }
+        write(channel, ByteBuffer.wrap(chunk, 0, n));
+      }
+      spills.increment();
+      spilledBytes.add(size);
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  private ResponseTooLargeException tooLarge() {
+    rejected.increment();
+    return new ResponseTooLargeException(maxSize);
+  }
+
+  public static final class Builder {
+    private long maxInMemory = DEFAULT_MAX_IN_MEMORY;
+    private long maxSize = MAX_SIZE;
+    private Path spillDirectory;
+
+    private Builder() {}
+
+    /**
+     * Largest body read onto the heap; larger ones are spilled to a file. Defaults to 8 MiB; 0
+     * spills every non-empty body.
+     */
+    public Builder maxInMemory(long bytes) {
+      if (bytes < 0) {
+        throw new IllegalArgumentException("maxInMemory must not be negative");
+      }
+      this.maxInMemory = bytes;
+      return this;
+    }
+
+    /**
+     * Largest body accepted at all. Defaults to, and cannot exceed, {@value
+     * ResponseLimits#MAX_SIZE} bytes, the most that can be mapped at once.
+     */
+    public Builder maxSize(long bytes) {
+      if (bytes < 1 || bytes > MAX_SIZE) {
+        throw new IllegalArgumentException("maxSize must be between 1 and " + MAX_SIZE);
+      }
+      this.maxSize = bytes;
+      return this;
+    }
+
+    /** Where spill files are created; defaults to {@code java.io.tmpdir}. */
+    public Builder spillDirectory(Path spillDirectory) {
+      this.spillDirectory = spillDirectory;
+      return this;
+    }
+
+    public ResponseLimits build() {
+      return new ResponseLimits(this);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.phasetwo.keycloak.admin;
+
+/**
+ * Thrown instead of reading a response body larger than the {@link ResponseLimits#getMaxSize()
+ * maximum size}. The connection it arrived on is closed.
+ */
+public class ResponseTooLargeException extends RuntimeException {
+
+  private final long maxSize;
+
+  public ResponseTooLargeException(long maxSize) {
+    super("Response body exceeds " + maxSize + " bytes");
+    this.maxSize = maxSize;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+}
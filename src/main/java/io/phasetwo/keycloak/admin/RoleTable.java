@@ -0,0 +1,231 @@
+package io.phasetwo.keycloak.admin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.keycloak.representations.idm.RoleRepresentation;
+
+/**
+ * A bounded table of shared roles, keyed by role ID, used to read the roles that repeat across
+ * responses, such as the role mappings of thousands of users, into one instance per role instead of
+ * one per occurrence. Roles read through the table can be compared by identity.
+ *
+ * <pre>{@code
+ * RoleTable roles = RoleTable.create(10_000);
+ * Keycloak keycloak = KeycloakBuilder.builder()...shareRoles(roles).build();
+ * }</pre>
+ *
+ * <p>Since an instance is shared, every role read through the table is immutable: its setters,
+ * attributes and composites throw {@link UnsupportedOperationException}. To update a role, copy it
+ * into a new {@link RoleRepresentation} first. A role read again with different values replaces the
+ * shared instance, so later responses see the change; earlier ones keep the instance they were read
+ * with. Once the table holds {@link #getMaxSize()} roles, roles it does not hold yet are still read
+ * as immutable copies, but not shared.
+ */
+public final class RoleTable {
+
+  private final Map<String, RoleRepresentation> roles = new ConcurrentHashMap<>();
+  private final int maxSize;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private RoleTable(int maxSize) {
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @param maxSize number of roles to share
+   */
+  public static RoleTable create(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("maxSize must be at least 1");
+    }
+    return new RoleTable(maxSize);
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  public int size() {
+    return roles.size();
+  }
+
+  /** Lookups that returned a role already in the table. */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Lookups that put a new or changed role into the table, or found it full. */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /**
+   * Returns the shared instance of {@code role}, which becomes an immutable copy of it if there is
+   * none yet or if it differs from {@code role}. Roles without an ID are returned as they are.
+   */
+  public RoleRepresentation share(RoleRepresentation role) {
+    if (role == null || role.getId() == null) {
+      return role;
+    }
+    RoleRepresentation current = roles.get(role.getId());
+    if (current != null && sameValues(current, role)) {
+      hits.increment();
+      return current;
+    }
+    misses.increment();
+    if (role instanceof SharedRole) {
+      return role;
+    }
+    RoleRepresentation shared = new SharedRole(role);
+    if (current != null) {
+      roles.put(role.getId(), shared);
+    } else if (roles.size() < maxSize) {
+      RoleRepresentation raced = roles.putIfAbsent(role.getId(), shared);
+      if (raced != null && sameValues(raced, shared)) {
+        return raced;
+      }
+    }
+    return shared;
+  }
+
+  /** Removes every role, for instance after roles have been updated in bulk. */
+  public void clear() {
+    roles.clear();
+  }
+
+  // RoleRepresentation.equals() only compares IDs and names
+  @SuppressWarnings("deprecation") // Keycloak still sends scopeParamRequired
+  private static boolean sameValues(RoleRepresentation a, RoleRepresentation b) {
+    return Objects.equals(a.getId(), b.getId())
+        && Objects.equals(a.getName(), b.getName())
+        && Objects.equals(a.getDescription(), b.getDescription())
+        && Objects.equals(a.isScopeParamRequired(), b.isScopeParamRequired())
+        && a.isComposite() == b.isComposite()
+        && Objects.equals(a.getClientRole(), b.getClientRole())
+        && Objects.equals(a.getContainerId(), b.getContainerId())
+        && Objects.equals(a.getAttributes(), b.getAttributes())
+        && sameComposites(a.getComposites(), b.getComposites());
+  }
+
+  @SuppressWarnings("deprecation") // Keycloak still sends application composites
+  private static boolean sameComposites(
+      RoleRepresentation.Composites a, RoleRepresentation.Composites b) {
+    if (a == null || b == null) {
+      return a == b;
+    }
+    return Objects.equals(a.getRealm(), b.getRealm())
+        && Objects.equals(a.getClient(), b.getClient())
+        && Objects.equals(a.getApplication(), b.getApplication());
+  }
+
+  private static Map<String, List<String>> freeze(Map<String, List<String>> map) {
+    if (map == null) {
+      return null;
+    }
+    Map<String, List<String>> copy = new LinkedHashMap<>(map.size());
+    map.forEach(
+        (key, values) ->
+            copy.put(
+                key,
+                values == null ? null : Collections.unmodifiableList(new ArrayList<>(values))));
+    return Collections.unmodifiableMap(copy);
+  }
+
+  private static final class SharedRole extends RoleRepresentation {
+
+    @SuppressWarnings("deprecation") // Keycloak still sends scopeParamRequired
+    SharedRole(RoleRepresentation role) {
+      this.id = role.getId();
+      this.name = role.getName();
+      this.description = role.getDescription();
+      this.scopeParamRequired = role.isScopeParamRequired();
+      this.composite = role.isComposite();
+      this.composites =
+          role.getComposites() == null ? null : new SharedComposites(role.getComposites());
+      this.attributes = freeze(role.getAttributes());
+      super.setClientRole(role.getClientRole());
+      super.setContainerId(role.getContainerId());
+    }
+
+    @Override
+    public void setId(String id) {
+      throw immutable();
+    }
+
+    @Override
+    public void setName(String name) {
+      throw immutable();
+    }
+
+    @Override
+    public void setDescription(String description) {
+      throw immutable();
+    }
+
+    @Override
+    public void setComposites(Composites composites) {
+      throw immutable();
+    }
+
+    @Override
+    public void setComposite(boolean composite) {
+      throw immutable();
+    }
+
+    @Override
+    public void setClientRole(Boolean clientRole) {
+      throw immutable();
+    }
+
+    @Override
+    public void setContainerId(String containerId) {
+      throw immutable();
+    }
+
+    @Override
+    public void setAttributes(Map<String, List<String>> attributes) {
+      throw immutable();
+    }
+
+    @Override
+    public RoleRepresentation singleAttribute(String name, String value) {
+      throw immutable();
+    }
+  }
+
+  private static final class SharedComposites extends RoleRepresentation.Composites {
+
+    @SuppressWarnings("deprecation") // Keycloak still sends application composites
+    SharedComposites(RoleRepresentation.Composites composites) {
+      this.realm =
+          composites.getRealm() == null
+              ? null
+              : Collections.unmodifiableSet(new LinkedHashSet<>(composites.getRealm()));
+      this.client = freeze(composites.getClient());
+      this.application = freeze(composites.getApplication());
+    }
+
+    @Override
+    public void setRealm(Set<String> realm) {
+      throw immutable();
+    }
+
+    @Override
+    public void setClient(Map<String, List<String>> client) {
+      throw immutable();
+    }
+  }
+
+  private static UnsupportedOperationException immutable() {
+    return new UnsupportedOperationException("Roles read through a RoleTable are shared");
+  }
+}
@@ -0,0 +1,156 @@
+package io.phasetwo.keycloak.admin;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded table of canonical strings, used to share the string values that repeat across a large
+ * listing, such as attribute values, required actions, role names and client IDs, instead of
+ * keeping one copy per element. Jackson already shares field names, including map keys; this table
+ * does the same for values.
+ *
+ * <pre>{@code
+ * StringTable strings = StringTable.create(64 * 1024);
+ * Keycloak keycloak = KeycloakBuilder.builder()...deduplicateStrings(strings).build();
+ * }</pre>
+ *
+ * <p>The table is 2-way set associative: a string can be held in either slot of the set its hash
+ * selects, and each slot has a use bit, set when a lookup finds its string. A new string takes a
+ * slot whose bit is clear; if both bits are set, they are cleared instead and the string is not
+ * kept, giving both current strings another chance. Values that repeat keep their bit set and stay;
+ * unique ones, such as IDs, only displace each other in the other slot. Strings longer than {@link
+ * #getMaxLength()} are not shared. Strings read from a parser are looked up from its buffer, so a
+ * hit does not allocate a new string at all. The table never grows and never needs locking.
+ */
+public final class StringTable {
+
+  static final int DEFAULT_MAX_LENGTH = 64;
+
+  // read and written without synchronization, which is safe because strings are immutable; a lost
+  // update only costs a hit or a use bit
+  private final String[] slots;
+  private final boolean[] used;
+  // selects a set, whose two slots are at (index << 1) and (index << 1) + 1
+  private final int mask;
+  private final int maxLength;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+
+  private StringTable(int size, int maxLength) {
+    this.slots = new String[size];
+    this.used = new boolean[size];
+    this.mask = (size >> 1) - 1;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * @param size number of slots, rounded up to a power of two of at least 2
+   */
+  public static StringTable create(int size) {
+    return create(size, DEFAULT_MAX_LENGTH);
+  }
+
+  /**
+   * @param size number of slots, rounded up to a power of two of at least 2
+   * @param maxLength length of the longest string to share
+   */
+  public static StringTable create(int size, int maxLength) {
+    if (size < 1 || size > 1 << 30) {
+      throw new IllegalArgumentException("size must be between 1 and 2^30");
+    }
+    if (maxLength < 1) {
+      throw new IllegalArgumentException("maxLength must be at least 1");
+    }
+    int slots = size <= 2 ? 2 : Integer.highestOneBit(size - 1) << 1;
+    return new StringTable(slots, maxLength);
+  }
+
+  public int getSize() {
+    return slots.length;
+  }
+
+  public int getMaxLength() {
+    return maxLength;
+  }
+
+  /** Lookups that returned a string already in the table. */
+  public long getHits() {
+    return hits.sum();
+  }
+
+  /** Lookups that did not find their string in the table, whether it was then kept or not. */
+  public long getMisses() {
+    return misses.sum();
+  }
+
+  /** Returns the canonical instance of {@code value}, which becomes it if there is none yet. */
+  public String canonicalize(String value) {
+    if (value == null || value.length() > maxLength) {
+      return value;
+    }
+    int set = (spread(value.hashCode()) & mask) << 1;
+    for (int i = set; i < set + 2; i++) {
+      String current = slots[i];
+      if (value.equals(current)) {
+        used[i] = true;
+        hits.increment();
+        return current;
+      }
+    }
+    admit(set, value);
+    return value;
+  }
+
+  /** Returns the canonical string of {@code length} chars of {@code buffer} from {@code offset}. */
+  public String canonicalize(char[] buffer, int offset, int length) {
+    if (length > maxLength) {
+      return new String(buffer, offset, length);
+    }
+    int hash = 0;
+    for (int i = offset; i < offset + length; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+    int set = (spread(hash) & mask) << 1;
+    for (int i = set; i < set + 2; i++) {
+      String current = slots[i];
+      if (current != null && matches(current, buffer, offset, length)) {
+        used[i] = true;
+        hits.increment();
+        return current;
+      }
+    }
+    String value = new String(buffer, offset, length);
+    admit(set, value);
+    return value;
+  }
+
+  /** Keeps {@code value} in a slot of {@code set} whose string has not been used since it came. */
+  private void admit(int set, String value) {
+    misses.increment();
+    if (slots[set] == null) {
+      slots[set] = value;
+    } else if (slots[set + 1] == null || !used[set + 1]) {
+      slots[set + 1] = value;
+    } else if (!used[set]) {
+      slots[set] = value;
+    } else {
+      used[set] = false;
+      used[set + 1] = false;
+    }
+  }
+
+  private static boolean matches(String value, char[] buffer, int offset, int length) {
+    if (value.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (value.charAt(i) != buffer[offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
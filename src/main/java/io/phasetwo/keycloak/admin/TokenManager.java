@@ -7,26 +7,42 @@ import static org.keycloak.OAuth2Constants.REFRESH_TOKEN;
 import static org.keycloak.OAuth2Constants.SCOPE;
 import static org.keycloak.OAuth2Constants.USERNAME;
 
+import io.phasetwo.keycloak.admin.jfr.TokenEvent;
 import jakarta.ws.rs.WebApplicationException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.http.client.HttpClient;
 import org.keycloak.admin.client.Config;
 import org.keycloak.representations.AccessTokenResponse;
 
+/**
+ * Obtains and caches the access token used by a {@link Keycloak} client, refreshing it when it is
+ * about to expire.
+ *
+ * <p>Token requests are serialized with a {@link ReentrantLock} rather than a monitor, so that a
+ * virtual thread waiting for a slow token request unmounts from its carrier instead of pinning it.
+ * While the token is valid, {@link #getAccessToken()} only reads a volatile snapshot and takes no
+ * lock at all.
+ */
 public class TokenManager {
   private static final long DEFAULT_MIN_VALIDITY = 30L;
 
   private final Config config;
   private final TokenService tokenService;
   private final String accessTokenGrantType;
+  private final ReentrantLock lock = new ReentrantLock();
 
-  private AccessTokenResponse currentToken;
-  private long expirationTime;
-  private long refreshExpirationTime;
-  private long minTokenValidity = DEFAULT_MIN_VALIDITY;
+  // replaced as a whole under the lock, read without it
+  private volatile Token current;
+  private volatile long minTokenValidity = DEFAULT_MIN_VALIDITY;
+
+  private final AtomicLong grants = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
 
   public TokenManager(
       Config config,
@@ -34,9 +50,14 @@ public class TokenManager {
       Duration socketTimeout,
       Duration connectTimeout,
       Duration connectionRequestTimeout) {
+    this(
+        config,
+        new TokenService(config, client, socketTimeout, connectTimeout, connectionRequestTimeout));
+  }
+
+  public TokenManager(Config config, TokenService tokenService) {
     this.config = config;
-    this.tokenService =
-        new TokenService(config, client, socketTimeout, connectTimeout, connectionRequestTimeout);
+    this.tokenService = tokenService;
     this.accessTokenGrantType = config.getGrantType();
   }
 
@@ -44,13 +65,24 @@ public class TokenManager {
     return getAccessToken().getToken();
   }
 
-  public synchronized AccessTokenResponse getAccessToken() {
-    if (currentToken == null) {
-      grantToken();
-    } else if (tokenExpired()) {
-      refreshToken();
+  public AccessTokenResponse getAccessToken() {
+    Token token = current;
+    if (token != null && !expired(token.expirationTime())) {
+      return token.response();
+    }
+    lock.lock();
+    try {
+      token = current;
+      if (token == null) {
+        return grantToken();
+      }
+      if (expired(token.expirationTime())) {
+        return refreshToken();
+      }
+      return token.response();
+    } finally {
+      lock.unlock();
     }
-    return currentToken;
   }
 
   public AccessTokenResponse grantToken() {
@@ -67,69 +99,165 @@ public class TokenManager {
       form.put(CLIENT_ID, config.getClientId());
     }
 
-    long requestTime = now();
-    synchronized (this) {
-      currentToken = tokenService.grantToken(config.getRealm(), form);
-      expirationTime = requestTime + currentToken.getExpiresIn();
-      refreshExpirationTime = requestTime + currentToken.getRefreshExpiresIn();
+    lock.lock();
+    // begun once the lock is held, so that the event times the request rather than the wait
+    TokenEvent event = new TokenEvent();
+    event.begin();
+    boolean success = false;
+    try {
+      long requestTime = now();
+      AccessTokenResponse response = tokenService.grantToken(config.getRealm(), form);
+      current =
+          new Token(
+              response,
+              requestTime,
+              requestTime + response.getExpiresIn(),
+              requestTime + response.getRefreshExpiresIn());
+      grants.incrementAndGet();
+      success = true;
+      // not current, which a concurrent logout or grant may replace once the lock is released
+      return response;
+    } finally {
+      lock.unlock();
+      if (!success) {
+        failures.incrementAndGet();
+      }
+      commit(event, "grant", accessTokenGrantType, success);
     }
-    return currentToken;
   }
 
-  public synchronized AccessTokenResponse refreshToken() {
-    if (currentToken == null || currentToken.getRefreshToken() == null || refreshTokenExpired()) {
-      return grantToken();
-    }
+  public AccessTokenResponse refreshToken() {
+    lock.lock();
+    try {
+      Token token = current;
+      if (token == null
+          || token.response().getRefreshToken() == null
+          || expired(token.refreshExpirationTime())) {
+        return grantToken();
+      }
 
-    Map<String, String> form = new LinkedHashMap<>();
-    form.put(GRANT_TYPE, REFRESH_TOKEN);
-    form.put(REFRESH_TOKEN, currentToken.getRefreshToken());
-    if (config.isPublicClient()) {
-      form.put(CLIENT_ID, config.getClientId());
-    }
+      Map<String, String> form = new LinkedHashMap<>();
+      form.put(GRANT_TYPE, REFRESH_TOKEN);
+      form.put(REFRESH_TOKEN, token.response().getRefreshToken());
+      if (config.isPublicClient()) {
+        form.put(CLIENT_ID, config.getClientId());
+      }
 
-    try {
-      long requestTime = now();
-      currentToken = tokenService.refreshToken(config.getRealm(), form);
-      expirationTime = requestTime + currentToken.getExpiresIn();
-      return currentToken;
-    } catch (WebApplicationException e) {
+      TokenEvent event = new TokenEvent();
+      event.begin();
+      boolean success = false;
+      try {
+        long requestTime = now();
+        AccessTokenResponse response = tokenService.refreshToken(config.getRealm(), form);
+        current =
+            new Token(
+                response,
+                requestTime,
+                requestTime + response.getExpiresIn(),
+                token.refreshExpirationTime());
+        refreshes.incrementAndGet();
+        success = true;
+        return response;
+      } catch (WebApplicationException e) {
+        // the refresh token was rejected, so start over with a new grant
+      } finally {
+        // also for I/O failures, which propagate as IllegalStateException
+        if (!success) {
+          failures.incrementAndGet();
+        }
+        commit(event, "refresh", REFRESH_TOKEN, success);
+      }
       return grantToken();
+    } finally {
+      lock.unlock();
     }
   }
 
-  public synchronized void logout() {
-    if (currentToken == null || currentToken.getRefreshToken() == null || refreshTokenExpired()) {
-      return;
-    }
-    Map<String, String> form = new LinkedHashMap<>();
-    form.put(REFRESH_TOKEN, currentToken.getRefreshToken());
-    if (config.isPublicClient()) {
-      form.put(CLIENT_ID, config.getClientId());
+  public void logout() {
+    lock.lock();
+    try {
+      Token token = current;
+      if (token == null
+          || token.response().getRefreshToken() == null
+          || expired(token.refreshExpirationTime())) {
+        return;
+      }
+      Map<String, String> form = new LinkedHashMap<>();
+      form.put(REFRESH_TOKEN, token.response().getRefreshToken());
+      if (config.isPublicClient()) {
+        form.put(CLIENT_ID, config.getClientId());
+      }
+      tokenService.logout(config.getRealm(), form);
+      current = null;
+    } finally {
+      lock.unlock();
     }
-    tokenService.logout(config.getRealm(), form);
-    currentToken = null;
   }
 
-  public synchronized void setMinTokenValidity(long minTokenValidity) {
+  /** Token age and counters. Does not block while a token request is in progress. */
+  public Stats getStats() {
+    Token token = current;
+    long now = now();
+    return new Stats(
+        token == null ? null : Duration.ofSeconds(now - token.issuedAt()),
+        token == null ? null : Duration.ofSeconds(token.expirationTime() - now),
+        grants.get(),
+        refreshes.get(),
+        failures.get());
+  }
+
+  /**
+   * @param age time since the current token was issued, or {@code null} if there is none
+   * @param expiresIn time until the current token expires; negative once expired, {@code null} if
+   *     there is no token
+   * @param grants successful token grants
+   * @param refreshes successful token refreshes
+   * @param failures failed grants and refreshes
+   */
+  public record Stats(
+      Duration age, Duration expiresIn, long grants, long refreshes, long failures) {}
+
+  public void setMinTokenValidity(long minTokenValidity) {
     this.minTokenValidity = minTokenValidity;
   }
 
-  public synchronized void invalidate(String token) {
-    if (currentToken == null) {
-      return;
-    }
-    if (token.equals(currentToken.getToken())) {
-      expirationTime = -1;
+  public void invalidate(String token) {
+    lock.lock();
+    try {
+      Token invalidated = current;
+      if (invalidated != null && token.equals(invalidated.response().getToken())) {
+        current =
+            new Token(
+                invalidated.response(),
+                invalidated.issuedAt(),
+                -1,
+                invalidated.refreshExpirationTime());
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
-  private synchronized boolean tokenExpired() {
+  private boolean expired(long expirationTime) {
     return (now() + minTokenValidity) >= expirationTime;
   }
 
-  private synchronized boolean refreshTokenExpired() {
-    return (now() + minTokenValidity) >= refreshExpirationTime;
+  /** The current token and its expiry times, in epoch seconds. */
+  private record Token(
+      AccessTokenResponse response,
+      long issuedAt,
+      long expirationTime,
+      long refreshExpirationTime) {}
+
+  private void commit(TokenEvent event, String operation, String grantType, boolean success) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.realm = config.getRealm();
+      event.grantType = grantType;
+      event.success = success;
+      event.commit();
+    }
   }
 
   private static long now() {
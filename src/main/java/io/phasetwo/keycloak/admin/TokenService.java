@@ -1,5 +1,11 @@
 package io.phasetwo.keycloak.admin;
 
+import io.phasetwo.keycloak.admin.routing.LoadBalancer;
+import io.phasetwo.keycloak.admin.timeout.Deadline;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfile;
+import io.phasetwo.keycloak.admin.tracing.Span;
+import io.phasetwo.keycloak.admin.tracing.SpanInfo;
+import io.phasetwo.keycloak.admin.tracing.Tracer;
 import jakarta.ws.rs.WebApplicationException;
 import java.io.IOException;
 import java.time.Duration;
@@ -10,11 +16,14 @@ import org.keycloak.representations.AccessTokenResponse;
 
 public class TokenService {
 
+  private static final String TOKEN_PATH = "/realms/{realm}/protocol/openid-connect/token";
+  private static final String LOGOUT_PATH = "/realms/{realm}/protocol/openid-connect/logout";
+
   private final Config config;
   private final HttpClient client;
-  private final Duration socketTimeout;
-  private final Duration connectTimeout;
-  private final Duration connectionRequestTimeout;
+  private final TimeoutProfile timeouts;
+  private final LoadBalancer loadBalancer;
+  private final Tracer tracer;
 
   public TokenService(
       Config config,
@@ -22,57 +31,136 @@ public class TokenService {
       Duration socketTimeout,
       Duration connectTimeout,
       Duration connectionRequestTimeout) {
+    this(config, client, socketTimeout, connectTimeout, connectionRequestTimeout, null);
+  }
+
+  /**
+   * @param loadBalancer spreads token endpoint calls over the cluster nodes, or {@code null} to
+   *     always use the configured server URL. Tokens are issued by the realm rather than by a node,
+   *     so a token obtained from one node is accepted by all of them as long as the nodes share a
+   *     hostname configuration.
+   */
+  public TokenService(
+      Config config,
+      HttpClient client,
+      Duration socketTimeout,
+      Duration connectTimeout,
+      Duration connectionRequestTimeout,
+      LoadBalancer loadBalancer) {
+    this(
+        config,
+        client,
+        socketTimeout,
+        connectTimeout,
+        connectionRequestTimeout,
+        loadBalancer,
+        null);
+  }
+
+  /**
+   * @param tracer opens a span around each token endpoint call, or {@code null} to disable tracing
+   */
+  public TokenService(
+      Config config,
+      HttpClient client,
+      Duration socketTimeout,
+      Duration connectTimeout,
+      Duration connectionRequestTimeout,
+      LoadBalancer loadBalancer,
+      Tracer tracer) {
     this.config = config;
     this.client = client;
-    this.socketTimeout = socketTimeout;
-    this.connectTimeout = connectTimeout;
-    this.connectionRequestTimeout = connectionRequestTimeout;
+    this.timeouts = TimeoutProfile.of(socketTimeout, connectTimeout, connectionRequestTimeout);
+    this.loadBalancer = loadBalancer;
+    this.tracer = tracer;
   }
 
   public AccessTokenResponse grantToken(String realm, Map<String, String> formParams) {
-    return tokenRequest("/realms/" + realm + "/protocol/openid-connect/token", formParams);
+    return tokenRequest("TokenService.grant", realm, formParams);
   }
 
   public AccessTokenResponse refreshToken(String realm, Map<String, String> formParams) {
-    return tokenRequest("/realms/" + realm + "/protocol/openid-connect/token", formParams);
+    return tokenRequest("TokenService.refresh", realm, formParams);
   }
 
   public void logout(String realm, Map<String, String> formParams) {
-    String url = config.getServerUrl() + "/realms/" + realm + "/protocol/openid-connect/logout";
-    Http request = withTimeouts(Http.doPost(url, client).acceptJson());
-    addAuth(request);
-    addFormParams(request, formParams);
-    try (Http.Response response = request.asResponse()) {
-      if (response.getStatus() >= 400) {
-        throw new WebApplicationException(
-            buildErrorMessage(response.getStatus(), response.asString()), response.getStatus());
+    Span span = startSpan("TokenService.logout", LOGOUT_PATH, realm);
+    int status = -1;
+    try (Http.Response response = post(LOGOUT_PATH, realm, formParams, span)) {
+      status = response.getStatus();
+      if (status >= 400) {
+        throw new WebApplicationException(buildErrorMessage(status, response.asString()), status);
       }
     } catch (IOException e) {
+      span.end(status, e);
       throw new IllegalStateException("Failed to call logout endpoint", e);
+    } catch (RuntimeException e) {
+      span.end(status, e);
+      throw e;
     }
+    span.end(status, null);
   }
 
-  private AccessTokenResponse tokenRequest(String path, Map<String, String> formParams) {
-    String url = config.getServerUrl() + path;
-    Http request = withTimeouts(Http.doPost(url, client).acceptJson());
-    addAuth(request);
-    addFormParams(request, formParams);
-    try (Http.Response response = request.asResponse()) {
-      if (response.getStatus() >= 400) {
-        throw new WebApplicationException(
-            buildErrorMessage(response.getStatus(), response.asString()), response.getStatus());
+  private AccessTokenResponse tokenRequest(
+      String spanName, String realm, Map<String, String> formParams) {
+    Span span = startSpan(spanName, TOKEN_PATH, realm);
+    int status = -1;
+    AccessTokenResponse token;
+    try (Http.Response response = post(TOKEN_PATH, realm, formParams, span)) {
+      status = response.getStatus();
+      if (status >= 400) {
+        throw new WebApplicationException(buildErrorMessage(status, response.asString()), status);
       }
-      return response.asJson(AccessTokenResponse.class);
+      token = response.asJson(AccessTokenResponse.class);
     } catch (IOException e) {
+      span.end(status, e);
       throw new IllegalStateException("Failed to call token endpoint", e);
+    } catch (RuntimeException e) {
+      span.end(status, e);
+      throw e;
+    }
+    span.end(status, null);
+    return token;
+  }
+
+  private Span startSpan(String name, String pathTemplate, String realm) {
+    if (tracer == null) {
+      return Span.NOOP;
     }
+    return tracer.startSpan(
+        new SpanInfo(name, "POST", pathTemplate, url(pathTemplate, realm), null, null));
   }
 
-  private Http withTimeouts(Http request) {
-    return request
-        .socketTimeout(socketTimeout)
-        .connectTimeout(connectTimeout)
-        .connectionRequestTimeout(connectionRequestTimeout);
+  private String url(String pathTemplate, String realm) {
+    return config.getServerUrl() + pathTemplate.replace("{realm}", realm);
+  }
+
+  /**
+   * Posts the form, failing over to another node on connection errors. Repeating a token or logout
+   * request on another node is harmless: at worst an extra session is created or a refresh token is
+   * rejected, which {@link TokenManager} answers with a fresh grant.
+   */
+  private Http.Response post(
+      String pathTemplate, String realm, Map<String, String> formParams, Span span)
+      throws IOException {
+    String url = url(pathTemplate, realm);
+    if (loadBalancer == null) {
+      return newPost(url, pathTemplate, formParams, span).asResponse();
+    }
+    return loadBalancer.execute(
+        url, realm, true, target -> newPost(target, pathTemplate, formParams, span).asResponse());
+  }
+
+  private Http newPost(String url, String pathTemplate, Map<String, String> formParams, Span span) {
+    Http request =
+        Http.doPost(url, client)
+            .urlTemplate(pathTemplate)
+            .acceptJson()
+            .requestConfig(timeouts.getRequestConfig(Deadline.current()));
+    addAuth(request);
+    span.headers().forEach(request::header);
+    addFormParams(request, formParams);
+    return request;
   }
 
   private void addAuth(Http request) {
@@ -0,0 +1,29 @@
+package io.phasetwo.keycloak.admin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Turning a JSON response body into the return value of an admin call. */
+@Name("io.phasetwo.keycloak.admin.Deserialization")
+@Label("Keycloak Admin Deserialization")
+@Category({"Keycloak Admin", "JSON"})
+@Description("JSON deserialization of an admin API response")
+@StackTrace(false)
+public class DeserializationEvent extends Event {
+
+  @Label("URL Template")
+  public String urlTemplate;
+
+  @Label("Type")
+  public String type;
+
+  @Label("Length")
+  @Description("Size of the JSON body after decompression")
+  @DataAmount
+  public long length;
+}
@@ -0,0 +1,43 @@
+package io.phasetwo.keycloak.admin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One HTTP exchange with Keycloak, from sending the request until the response body has been read.
+ * Emitted for admin calls and token endpoint calls alike.
+ */
+@Name("io.phasetwo.keycloak.admin.HttpRequest")
+@Label("Keycloak Admin HTTP Request")
+@Category({"Keycloak Admin", "HTTP"})
+@Description("HTTP exchange with a Keycloak server")
+@StackTrace(false)
+public class HttpRequestEvent extends Event {
+
+  @Label("Method")
+  public String method;
+
+  @Label("URL Template")
+  @Description("Request path with IDs replaced by their path parameter names")
+  public String urlTemplate;
+
+  @Label("Status")
+  @Description("HTTP status, or -1 if no response was received")
+  public int status;
+
+  @Label("Bytes Sent")
+  @DataAmount
+  public long bytesSent;
+
+  @Label("Bytes Received")
+  @DataAmount
+  public long bytesReceived;
+
+  @Label("Error")
+  public String error;
+}
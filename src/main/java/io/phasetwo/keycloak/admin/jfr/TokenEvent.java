@@ -0,0 +1,30 @@
+package io.phasetwo.keycloak.admin.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Obtaining or refreshing the access token used for admin calls. */
+@Name("io.phasetwo.keycloak.admin.Token")
+@Label("Keycloak Admin Token")
+@Category({"Keycloak Admin", "Token"})
+@Description("Access token grant or refresh")
+@StackTrace(false)
+public class TokenEvent extends Event {
+
+  @Label("Operation")
+  @Description("grant or refresh")
+  public String operation;
+
+  @Label("Realm")
+  public String realm;
+
+  @Label("Grant Type")
+  public String grantType;
+
+  @Label("Success")
+  public boolean success;
+}
@@ -0,0 +1,39 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+/**
+ * What was measured for one call. Timings that could not be measured are {@code -1}: connection
+ * lease and server time are only available when the client created its own {@code HttpClient} (see
+ * {@link RequestTimings}), and deserialization time only when a response was received.
+ *
+ * @param status the HTTP status, or {@code -1} if the call failed without a response
+ * @param failed whether the call threw, including I/O errors and error statuses mapped to
+ *     exceptions
+ * @param latencyNanos time from sending the request until the response body was read
+ * @param bytesSent size of the request body
+ * @param bytesReceived size of the response body as transferred
+ * @param leaseNanos time spent waiting for a pooled connection and, for a new one, connecting
+ * @param serverNanos time from the request being written until the response head arrived
+ * @param deserializationNanos time spent turning the response body into the return value
+ */
+public record CallMetrics(
+    int status,
+    boolean failed,
+    long latencyNanos,
+    long bytesSent,
+    long bytesReceived,
+    long leaseNanos,
+    long serverNanos,
+    long deserializationNanos) {
+
+  /** {@code "2xx"} through {@code "5xx"}, or {@code "error"} if there was no response. */
+  public String statusClass() {
+    return switch (status / 100) {
+      case 1 -> "1xx";
+      case 2 -> "2xx";
+      case 3 -> "3xx";
+      case 4 -> "4xx";
+      case 5 -> "5xx";
+      default -> "error";
+    };
+  }
+}
@@ -0,0 +1,35 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A resource method that calls are aggregated under, e.g. {@code UserResource.toRepresentation}.
+ * Unlike URLs, endpoints do not contain IDs, so their number is bounded by the size of the API.
+ */
+public record Endpoint(String resource, String method) implements Comparable<Endpoint> {
+
+  private static final Map<Method, Endpoint> CACHE = new ConcurrentHashMap<>();
+
+  /** The endpoint for {@code method} invoked through {@code resource}, cached per method. */
+  public static Endpoint of(Class<?> resource, Method method) {
+    Endpoint endpoint = CACHE.get(method);
+    if (endpoint == null || !endpoint.resource.equals(resource.getSimpleName())) {
+      endpoint = new Endpoint(resource.getSimpleName(), method.getName());
+      CACHE.put(method, endpoint);
+    }
+    return endpoint;
+  }
+
+  @Override
+  public int compareTo(Endpoint other) {
+    int byResource = resource.compareTo(other.resource);
+    return byResource != 0 ? byResource : method.compareTo(other.method);
+  }
+
+  @Override
+  public String toString() {
+    return resource + "." + method;
+  }
+}
@@ -0,0 +1,48 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the proxied calls that are currently in progress, per endpoint. A call is in flight from
+ * the moment it is invoked until its response has been read, including any retries and hedges.
+ */
+public final class InFlightRequests {
+
+  private final Map<Endpoint, AtomicInteger> counters = new ConcurrentHashMap<>();
+
+  public void enter(Endpoint endpoint) {
+    counters.computeIfAbsent(endpoint, k -> new AtomicInteger()).incrementAndGet();
+  }
+
+  public void exit(Endpoint endpoint) {
+    AtomicInteger counter = counters.get(endpoint);
+    if (counter != null) {
+      counter.decrementAndGet();
+    }
+  }
+
+  /** Returns the endpoints with calls in flight, sorted by endpoint. */
+  public Map<Endpoint, Integer> snapshot() {
+    Map<Endpoint, Integer> snapshot = new TreeMap<>();
+    counters.forEach(
+        (endpoint, counter) -> {
+          int count = counter.get();
+          if (count > 0) {
+            snapshot.put(endpoint, count);
+          }
+        });
+    return snapshot;
+  }
+
+  /** Total calls in flight over all endpoints. */
+  public int total() {
+    int total = 0;
+    for (AtomicInteger counter : counters.values()) {
+      total += counter.get();
+    }
+    return total;
+  }
+}
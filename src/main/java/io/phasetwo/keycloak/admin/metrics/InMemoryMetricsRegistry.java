@@ -0,0 +1,96 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Aggregates calls per endpoint and status class in memory. Recording only touches striped counters
+ * and {@link LatencyHistogram}s, so it does not contend between threads. Read the aggregates with
+ * {@link #snapshot()} or render them with {@link #toPrometheus()}.
+ */
+public final class InMemoryMetricsRegistry implements MetricsRecorder {
+
+  private final Map<Key, Series> series = new ConcurrentHashMap<>();
+
+  @Override
+  public void record(Endpoint endpoint, CallMetrics call) {
+    Key key = new Key(endpoint, call.statusClass());
+    Series s = series.get(key);
+    if (s == null) {
+      s = series.computeIfAbsent(key, k -> new Series());
+    }
+    s.requests.increment();
+    if (call.failed()) {
+      s.errors.increment();
+    }
+    s.bytesSent.add(call.bytesSent());
+    s.bytesReceived.add(call.bytesReceived());
+    s.latency.record(call.latencyNanos());
+    s.lease.record(call.leaseNanos());
+    s.server.record(call.serverNanos());
+    s.deserialization.record(call.deserializationNanos());
+  }
+
+  /** The current aggregates, sorted by endpoint and status class. */
+  public List<SeriesSnapshot> snapshot() {
+    List<SeriesSnapshot> snapshots = new ArrayList<>(series.size());
+    series.forEach(
+        (key, s) ->
+            snapshots.add(
+                new SeriesSnapshot(
+                    key.endpoint(),
+                    key.statusClass(),
+                    s.requests.sum(),
+                    s.errors.sum(),
+                    s.bytesSent.sum(),
+                    s.bytesReceived.sum(),
+                    s.latency.snapshot(),
+                    s.lease.snapshot(),
+                    s.server.snapshot(),
+                    s.deserialization.snapshot())));
+    snapshots.sort(
+        Comparator.comparing(SeriesSnapshot::endpoint).thenComparing(SeriesSnapshot::statusClass));
+    return snapshots;
+  }
+
+  /** The current aggregates in the Prometheus text exposition format. */
+  public String toPrometheus() {
+    StringBuilder out = new StringBuilder();
+    PrometheusTextFormat.write(snapshot(), out);
+    return out.toString();
+  }
+
+  public void reset() {
+    series.clear();
+  }
+
+  private record Key(Endpoint endpoint, String statusClass) {}
+
+  private static final class Series {
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram lease = new LatencyHistogram();
+    private final LatencyHistogram server = new LatencyHistogram();
+    private final LatencyHistogram deserialization = new LatencyHistogram();
+  }
+
+  /** Aggregates for one endpoint and status class. Timings not measured are not counted. */
+  public record SeriesSnapshot(
+      Endpoint endpoint,
+      String statusClass,
+      long requests,
+      long errors,
+      long bytesSent,
+      long bytesReceived,
+      LatencyHistogram.Snapshot latency,
+      LatencyHistogram.Snapshot lease,
+      LatencyHistogram.Snapshot server,
+      LatencyHistogram.Snapshot deserialization) {}
+}
@@ -0,0 +1,130 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in the style of HdrHistogram: every power of
+ * two is split into {@value #SUB_BUCKETS} linear sub-buckets, so a recorded value is known to
+ * within about 3% while the whole range from one microsecond to over an hour fits in under a
+ * thousand counters. Recording is a single atomic increment plus a sum update and never allocates.
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 5;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 32;
+  static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder sumNanos = new LongAdder();
+  private final AtomicLong maxNanos = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      return;
+    }
+    counts.incrementAndGet(index(TimeUnit.NANOSECONDS.toMicros(nanos)));
+    sumNanos.add(nanos);
+    long max = maxNanos.get();
+    while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+      max = maxNanos.get();
+    }
+  }
+
+  /** A copy of the current counts. Concurrent recordings may or may not be included. */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      count += copy[i];
+    }
+    return new Snapshot(copy, count, sumNanos.sum(), maxNanos.get());
+  }
+
+  static int index(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int shift = exponent - SUB_BUCKET_BITS;
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /** The largest value, in microseconds, that falls into bucket {@code index}. */
+  static long upperBoundMicros(int index) {
+    if (index < 2 * SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+
+  /** Immutable view of a histogram. */
+  public static final class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sumNanos;
+    private final long maxNanos;
+
+    private Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+      this.counts = counts;
+      this.count = count;
+      this.sumNanos = sumNanos;
+      this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getSumNanos() {
+      return sumNanos;
+    }
+
+    public long getMaxNanos() {
+      return maxNanos;
+    }
+
+    public long getMeanNanos() {
+      return count == 0 ? 0 : sumNanos / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the upper bound of the bucket holding the given percentile, in nanoseconds, capped at
+     *     the maximum recorded value
+     */
+    public long getPercentileNanos(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(TimeUnit.MICROSECONDS.toNanos(upperBoundMicros(i)), maxNanos);
+        }
+      }
+      return maxNanos;
+    }
+
+    /** The number of recorded values up to {@code nanos}, to bucket resolution. */
+    public long getCountAtOrBelow(long nanos) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+      long total = 0;
+      for (int i = 0; i < counts.length && upperBoundMicros(i) <= micros; i++) {
+        total += counts[i];
+      }
+      return total;
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+/**
+ * Receives one {@link CallMetrics} per proxied admin call. Implementations are called on the
+ * calling thread after the response has been handled, so they must be thread-safe and cheap; see
+ * {@link InMemoryMetricsRegistry} for one that aggregates in memory without locking.
+ */
+@FunctionalInterface
+public interface MetricsRecorder {
+
+  void record(Endpoint endpoint, CallMetrics call);
+}
@@ -0,0 +1,145 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Renders {@link InMemoryMetricsRegistry} snapshots in the Prometheus text exposition format
+ * (version 0.0.4), so they can be served from any HTTP endpoint without a Prometheus client
+ * library. Latencies are exposed as histograms in seconds; bucket counts are exact to the
+ * resolution of {@link LatencyHistogram}.
+ */
+public final class PrometheusTextFormat {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final String PREFIX = "keycloak_admin_";
+  private static final double[] BUCKETS_SECONDS = {
+    0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+  };
+
+  private PrometheusTextFormat() {}
+
+  public static void write(List<InMemoryMetricsRegistry.SeriesSnapshot> snapshots, Appendable out) {
+    try {
+      counter(out, "requests_total", "Admin API calls.", snapshots, s -> s.requests());
+      counter(out, "errors_total", "Admin API calls that failed.", snapshots, s -> s.errors());
+      counter(out, "sent_bytes_total", "Request body bytes sent.", snapshots, s -> s.bytesSent());
+      counter(
+          out,
+          "received_bytes_total",
+          "Response body bytes received.",
+          snapshots,
+          s -> s.bytesReceived());
+      histogram(
+          out,
+          "request_duration_seconds",
+          "Time from sending a request until its response was read.",
+          snapshots,
+          s -> s.latency());
+      histogram(
+          out,
+          "connection_lease_seconds",
+          "Time spent obtaining a pooled or new connection.",
+          snapshots,
+          s -> s.lease());
+      histogram(
+          out,
+          "server_time_seconds",
+          "Time from writing a request until the response head arrived.",
+          snapshots,
+          s -> s.server());
+      histogram(
+          out,
+          "deserialization_seconds",
+          "Time spent turning response bodies into return values.",
+          snapshots,
+          s -> s.deserialization());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void counter(
+      Appendable out,
+      String name,
+      String help,
+      List<InMemoryMetricsRegistry.SeriesSnapshot> snapshots,
+      ToLongFunction<InMemoryMetricsRegistry.SeriesSnapshot> value)
+      throws IOException {
+    header(out, name, help, "counter");
+    for (InMemoryMetricsRegistry.SeriesSnapshot s : snapshots) {
+      out.append(PREFIX).append(name);
+      labels(out, s, null);
+      out.append(' ').append(Long.toString(value.applyAsLong(s))).append('\n');
+    }
+  }
+
+  private static void histogram(
+      Appendable out,
+      String name,
+      String help,
+      List<InMemoryMetricsRegistry.SeriesSnapshot> snapshots,
+      Function<InMemoryMetricsRegistry.SeriesSnapshot, LatencyHistogram.Snapshot> histogram)
+      throws IOException {
+    header(out, name, help, "histogram");
+    for (InMemoryMetricsRegistry.SeriesSnapshot s : snapshots) {
+      LatencyHistogram.Snapshot h = histogram.apply(s);
+      if (h.getCount() == 0) {
+        continue;
+      }
+      for (double le : BUCKETS_SECONDS) {
+        long count = h.getCountAtOrBelow((long) (le * TimeUnit.SECONDS.toNanos(1)));
+        out.append(PREFIX).append(name).append("_bucket");
+        labels(out, s, Double.toString(le));
+        out.append(' ').append(Long.toString(count)).append('\n');
+      }
+      out.append(PREFIX).append(name).append("_bucket");
+      labels(out, s, "+Inf");
+      out.append(' ').append(Long.toString(h.getCount())).append('\n');
+      out.append(PREFIX).append(name).append("_sum");
+      labels(out, s, null);
+      out.append(' ').append(Double.toString(h.getSumNanos() / 1e9)).append('\n');
+      out.append(PREFIX).append(name).append("_count");
+      labels(out, s, null);
+      out.append(' ').append(Long.toString(h.getCount())).append('\n');
+    }
+  }
+
+  private static void header(Appendable out, String name, String help, String type)
+      throws IOException {
+    out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void labels(Appendable out, InMemoryMetricsRegistry.SeriesSnapshot s, String le)
+      throws IOException {
+    out.append("{resource=\"");
+    escape(out, s.endpoint().resource());
+    out.append("\",method=\"");
+    escape(out, s.endpoint().method());
+    out.append("\",status=\"");
+    escape(out, s.statusClass());
+    out.append('"');
+    if (le != null) {
+      out.append(",le=\"").append(le).append('"');
+    }
+    out.append('}');
+  }
+
+  private static void escape(Appendable out, String value) throws IOException {
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '\\' -> out.append("\\\\");
+        case '"' -> out.append("\\\"");
+        case '\n' -> out.append("\\n");
+        default -> out.append(c);
+      }
+    }
+  }
+}
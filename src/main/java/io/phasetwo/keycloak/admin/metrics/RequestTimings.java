@@ -0,0 +1,94 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import java.io.IOException;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+/**
+ * Splits the time of a request into connection lease and server time by recording timestamps in the
+ * request's {@link HttpContext}. A request interceptor runs before a connection is leased from the
+ * pool, and the request executor runs once it has been leased and connected, so the gap between the
+ * two is the lease time; the executor also marks when the request has been written and when the
+ * response head arrives.
+ */
+public final class RequestTimings {
+
+  private static final String STARTED = RequestTimings.class.getName() + ".started";
+  private static final String LEASED = RequestTimings.class.getName() + ".leased";
+  private static final String SENT = RequestTimings.class.getName() + ".sent";
+  private static final String RECEIVED = RequestTimings.class.getName() + ".received";
+
+  private RequestTimings() {}
+
+  /** Adds the timing hooks to a client builder. */
+  public static HttpClientBuilder instrument(HttpClientBuilder builder) {
+    return builder
+        .addInterceptorFirst((HttpRequest request, HttpContext context) -> mark(context, STARTED))
+        .setRequestExecutor(new TimingRequestExecutor());
+  }
+
+  /**
+   * @return the time spent leasing and connecting, or {@code -1} if the client was not {@link
+   *     #instrument instrumented}
+   */
+  public static long leaseNanos(HttpContext context) {
+    return between(context, STARTED, LEASED);
+  }
+
+  /**
+   * @return the time between writing the request and receiving the response head, or {@code -1} if
+   *     the client was not {@link #instrument instrumented}
+   */
+  public static long serverNanos(HttpContext context) {
+    return between(context, SENT, RECEIVED);
+  }
+
+  private static long between(HttpContext context, String from, String to) {
+    if (context == null) {
+      return -1;
+    }
+    Object start = context.getAttribute(from);
+    Object end = context.getAttribute(to);
+    if (start instanceof Long s && end instanceof Long e) {
+      return Math.max(0, e - s);
+    }
+    return -1;
+  }
+
+  private static void mark(HttpContext context, String attribute) {
+    context.setAttribute(attribute, System.nanoTime());
+  }
+
+  private static final class TimingRequestExecutor extends HttpRequestExecutor {
+
+    @Override
+    public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+        throws IOException, HttpException {
+      mark(context, LEASED);
+      return super.execute(request, conn, context);
+    }
+
+    @Override
+    protected HttpResponse doSendRequest(
+        HttpRequest request, HttpClientConnection conn, HttpContext context)
+        throws IOException, HttpException {
+      HttpResponse response = super.doSendRequest(request, conn, context);
+      mark(context, SENT);
+      return response;
+    }
+
+    @Override
+    protected HttpResponse doReceiveResponse(
+        HttpRequest request, HttpClientConnection conn, HttpContext context)
+        throws HttpException, IOException {
+      HttpResponse response = super.doReceiveResponse(request, conn, context);
+      mark(context, RECEIVED);
+      return response;
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package io.phasetwo.keycloak.admin.paging;
+
+import io.phasetwo.keycloak.admin.timeout.Deadline;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.keycloak.admin.client.resource.GroupResource;
+import org.keycloak.admin.client.resource.RealmResource;
+import org.keycloak.admin.client.resource.RoleResource;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.AdminEventRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/**
+ * A {@link Flow.Publisher} over a paged list endpoint that fetches pages only as the subscriber
+ * requests items. At most one page request is in flight per subscription, and a page is requested
+ * only while fewer items are buffered than the outstanding demand or than {@link
+ * Builder#readAhead(int) readAhead} pages. Since pages arrive whole, fewer than {@code readAhead +
+ * 1} pages beyond the outstanding demand are ever buffered. A slow subscriber therefore never
+ * causes unbounded buffering. A fast one gets the next page fetched while it processes the current
+ * one.
+ *
+ * <pre>{@code
+ * Flow.Publisher<UserRepresentation> users =
+ *     PagedPublisher.users(keycloak.realm("test").users()).pageSize(200).build();
+ * }</pre>
+ *
+ * <p>The publisher is cold: every subscription starts again from the first page. Pages are
+ * requested on the builder's executor, one virtual thread per page by default, and the items are
+ * signalled on whichever thread fetched the page or called {@link Flow.Subscription#request}. A
+ * {@link Deadline} open on the thread that subscribes applies to every page request. The stream
+ * completes after the first page that is shorter than the page size.
+ */
+public final class PagedPublisher<T> implements Flow.Publisher<T> {
+
+  static final int DEFAULT_PAGE_SIZE = 100;
+
+  /** Requests one page of a list endpoint. */
+  @FunctionalInterface
+  public interface Fetcher<T> {
+    /**
+     * @param first the offset of the first item
+     * @param max the page size
+     * @return the items of the page; fewer than {@code max} if it is the last one
+     */
+    List<T> fetch(int first, int max);
+  }
+
+  private final Fetcher<T> fetcher;
+  private final int pageSize;
+  private final int readAhead;
+  private final Executor executor;
+
+  private PagedPublisher(Builder<T> builder) {
+    this.fetcher = builder.fetcher;
+    this.pageSize = builder.pageSize;
+    this.readAhead = builder.readAhead;
+    this.executor =
+        builder.executor != null
+            ? builder.executor
+            : task -> Thread.ofVirtual().name("keycloak-admin-paging").start(task);
+  }
+
+  public static <T> Builder<T> builder(Fetcher<T> fetcher) {
+    return new Builder<>(Objects.requireNonNull(fetcher, "fetcher"));
+  }
+
+  /** Pages through {@link UsersResource#list(Integer, Integer)}. */
+  public static Builder<UserRepresentation> users(UsersResource users) {
+    return builder(users::list);
+  }
+
+  /** Pages through the members of a group, {@link GroupResource#members(Integer, Integer)}. */
+  public static Builder<UserRepresentation> members(GroupResource group) {
+    return builder((first, max) -> group.members(first, max));
+  }
+
+  /** Pages through the users with a role, {@link RoleResource#getUserMembers(Integer, Integer)}. */
+  public static Builder<UserRepresentation> userMembers(RoleResource role) {
+    return builder((first, max) -> role.getUserMembers(first, max));
+  }
+
+  /** Pages through all admin events of a realm, newest first. */
+  public static Builder<AdminEventRepresentation> adminEvents(RealmResource realm) {
+    return builder(
+        (first, max) ->
+            realm.getAdminEvents(null, null, null, null, null, null, null, null, first, max));
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super T> subscriber) {
+    Objects.requireNonNull(subscriber, "subscriber");
+    Subscription subscription = new Subscription(subscriber, Deadline.current());
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * The state of one subscriber. Every signal to the subscriber is made from {@link #drain()},
+   * which only one thread runs at a time.
+   */
+  private final class Subscription implements Flow.Subscription {
+    private final Flow.Subscriber<? super T> subscriber;
+    private final Deadline deadline;
+    private final Queue<T> buffer = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean fetching = new AtomicBoolean();
+    private volatile boolean started;
+    private volatile boolean exhausted;
+    private volatile boolean cancelled;
+    private volatile Throwable error;
+    // signalled ahead of buffered items and fetches in flight, unlike a failed fetch
+    private volatile Throwable invalidRequest;
+    // offset of the next page; only used inside drain()
+    private int next;
+
+    Subscription(Flow.Subscriber<? super T> subscriber, Deadline deadline) {
+      this.subscriber = subscriber;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+      } else {
+        requested.accumulateAndGet(
+            n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+        started = true;
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      drain();
+    }
+
+    private void drain() {
+      if (wip.getAndIncrement() != 0) {
+        return;
+      }
+      int missed = 1;
+      do {
+        Throwable invalid = invalidRequest;
+        if (invalid != null && !cancelled) {
+          cancelled = true;
+          buffer.clear();
+          subscriber.onError(invalid);
+          return;
+        }
+        long demand = requested.get();
+        long emitted = 0;
+        while (emitted != demand && !cancelled) {
+          T item = buffer.poll();
+          if (item == null) {
+            break;
+          }
+          buffered.decrementAndGet();
+          subscriber.onNext(item);
+          emitted++;
+        }
+        if (emitted != 0 && demand != Long.MAX_VALUE) {
+          requested.addAndGet(-emitted);
+        }
+        if (cancelled) {
+          buffer.clear();
+          return;
+        }
+        if (buffer.isEmpty() && !fetching.get()) {
+          Throwable failure = error;
+          if (failure != null) {
+            cancelled = true;
+            subscriber.onError(failure);
+            return;
+          }
+          if (exhausted) {
+            cancelled = true;
+            subscriber.onComplete();
+            return;
+          }
+        }
+        fetchIfNeeded();
+        missed = wip.addAndGet(-missed);
+      } while (missed != 0);
+    }
+
+    private void fetchIfNeeded() {
+      if (!started || exhausted || error != null) {
+        return;
+      }
+      int size = buffered.get();
+      if (size >= requested.get() && size >= readAhead * pageSize) {
+        return;
+      }
+      if (!fetching.compareAndSet(false, true)) {
+        return;
+      }
+      int first = next;
+      next += pageSize;
+      try {
+        executor.execute(() -> fetch(first));
+      } catch (RejectedExecutionException e) {
+        error = e;
+        fetching.set(false);
+        // the drain loop that called this runs once more and signals the error
+        wip.incrementAndGet();
+      }
+    }
+
+    private void fetch(int first) {
+      try (Deadline.Scope ignored = deadline != null ? deadline.open() : null) {
+        List<T> page = cancelled ? List.of() : fetcher.fetch(first, pageSize);
+        if (page == null) {
+          page = List.of();
+        }
+        buffer.addAll(page);
+        buffered.addAndGet(page.size());
+        if (page.size() < pageSize) {
+          exhausted = true;
+        }
+      } catch (Throwable t) {
+        error = t;
+      } finally {
+        fetching.set(false);
+        drain();
+      }
+    }
+  }
+
+  public static final class Builder<T> {
+    private final Fetcher<T> fetcher;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private int readAhead = 1;
+    private Executor executor;
+
+    private Builder(Fetcher<T> fetcher) {
+      this.fetcher = fetcher;
+    }
+
+    /** Items per page request; defaults to {@value PagedPublisher#DEFAULT_PAGE_SIZE}. */
+    public Builder<T> pageSize(int pageSize) {
+      if (pageSize < 1) {
+        throw new IllegalArgumentException("pageSize must be at least 1");
+      }
+      this.pageSize = pageSize;
+      return this;
+    }
+
+    /**
+     * Pages to keep buffered beyond the subscriber's outstanding demand, so that the next page is
+     * already being fetched while the subscriber processes the current one. A page is requested
+     * while fewer items than this are buffered, so up to one page more can end up buffered.
+     * Defaults to 1; 0 fetches a page only once the buffered items cannot satisfy the demand.
+     */
+    public Builder<T> readAhead(int readAhead) {
+      if (readAhead < 0) {
+        throw new IllegalArgumentException("readAhead must not be negative");
+      }
+      this.readAhead = readAhead;
+      return this;
+    }
+
+    /** Runs the page requests; defaults to one virtual thread per page. */
+    public Builder<T> executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public PagedPublisher<T> build() {
+      return new PagedPublisher<>(this);
+    }
+  }
+}
@@ -0,0 +1,290 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. While {@link State#CLOSED} every call is permitted and its outcome
+ * is recorded in a ring buffer; once the failure or slow call rate over that window crosses the
+ * configured threshold the breaker moves to {@link State#OPEN} and rejects calls with a {@link
+ * CircuitBreakerOpenException} until the wait duration elapses. It then moves to {@link
+ * State#HALF_OPEN} and lets a limited number of trial calls through, closing again if they succeed
+ * or re-opening if they do not.
+ */
+public final class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  /** Notified on every state transition, on the thread that caused it. */
+  @FunctionalInterface
+  public interface StateTransitionListener {
+    void onStateTransition(CircuitBreaker circuitBreaker, State from, State to);
+  }
+
+  private static final byte FAILED = 1;
+  private static final byte SLOW = 2;
+
+  private final String name;
+  private final CircuitBreakerConfig config;
+  private final LongSupplier nanoClock;
+  private final long slowCallNanos;
+  private final List<StateTransitionListener> listeners = new CopyOnWriteArrayList<>();
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private final byte[] window;
+  private int windowIndex;
+  private int bufferedCalls;
+  private int failedCalls;
+  private int slowCalls;
+
+  private State state = State.CLOSED;
+  private long openedAt;
+  private int halfOpenPermits;
+  private int halfOpenCalls;
+  private int halfOpenFailedCalls;
+  private int halfOpenSlowCalls;
+
+  private long notPermittedCalls;
+  private final long[] transitions = new long[State.values().length * State.values().length];
+
+  public CircuitBreaker(String name, CircuitBreakerConfig config) {
+    this(name, config, System::nanoTime);
+  }
+
+  CircuitBreaker(String name, CircuitBreakerConfig config, LongSupplier nanoClock) {
+    this.name = name;
+    this.config = config;
+    this.nanoClock = nanoClock;
+    this.slowCallNanos = config.getSlowCallDurationThreshold().toNanos();
+    this.window = new byte[config.getSlidingWindowSize()];
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public CircuitBreakerConfig getConfig() {
+    return config;
+  }
+
+  public State getState() {
+    lock.lock();
+    try {
+      return state;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void addStateTransitionListener(StateTransitionListener listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Acquires permission to perform a call. Every permitted call must be followed by exactly one
+   * {@link #onSuccess}, {@link #onError} or {@link #onResult}.
+   *
+   * @throws CircuitBreakerOpenException if the circuit is open or no half-open trial calls remain
+   */
+  public void acquirePermission() {
+    State from;
+    lock.lock();
+    try {
+      from = state;
+      if (state == State.OPEN) {
+        long waited = nanoClock.getAsLong() - openedAt;
+        if (waited < config.getWaitDurationInOpenState().toNanos()) {
+          notPermittedCalls++;
+          throw new CircuitBreakerOpenException(
+              name,
+              state,
+              Duration.ofNanos(config.getWaitDurationInOpenState().toNanos() - waited));
+        }
+        transitionTo(State.HALF_OPEN);
+      }
+      if (state == State.HALF_OPEN) {
+        if (halfOpenPermits >= config.getPermittedCallsInHalfOpenState()) {
+          notPermittedCalls++;
+          throw new CircuitBreakerOpenException(name, state, Duration.ZERO);
+        }
+        halfOpenPermits++;
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (from != state) {
+      fireTransition(from, State.HALF_OPEN);
+    }
+  }
+
+  /** Records the outcome of an HTTP exchange; server errors (5xx) count as failures. */
+  public void onResult(int status, long durationNanos) {
+    record(status >= 500, durationNanos);
+  }
+
+  public void onSuccess(long durationNanos) {
+    record(false, durationNanos);
+  }
+
+  public void onError(long durationNanos) {
+    record(true, durationNanos);
+  }
+
+  private void record(boolean failed, long durationNanos) {
+    boolean slow = durationNanos >= slowCallNanos;
+    State from;
+    State to;
+    lock.lock();
+    try {
+      from = state;
+      if (state == State.HALF_OPEN) {
+        recordHalfOpen(failed, slow);
+      } else if (state == State.CLOSED) {
+        recordClosed(failed, slow);
+      }
+      to = state;
+    } finally {
+      lock.unlock();
+    }
+    if (from != to) {
+      fireTransition(from, to);
+    }
+  }
+
+  private void recordClosed(boolean failed, boolean slow) {
+    byte outcome = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+    if (bufferedCalls == window.length) {
+      byte evicted = window[windowIndex];
+      if ((evicted & FAILED) != 0) {
+        failedCalls--;
+      }
+      if ((evicted & SLOW) != 0) {
+        slowCalls--;
+      }
+    } else {
+      bufferedCalls++;
+    }
+    window[windowIndex] = outcome;
+    windowIndex = (windowIndex + 1) % window.length;
+    if (failed) {
+      failedCalls++;
+    }
+    if (slow) {
+      slowCalls++;
+    }
+    if (bufferedCalls >= config.getMinimumNumberOfCalls()
+        && exceedsThresholds(bufferedCalls, failedCalls, slowCalls)) {
+      transitionTo(State.OPEN);
+    }
+  }
+
+  private void recordHalfOpen(boolean failed, boolean slow) {
+    halfOpenCalls++;
+    if (failed) {
+      halfOpenFailedCalls++;
+    }
+    if (slow) {
+      halfOpenSlowCalls++;
+    }
+    if (halfOpenCalls >= config.getPermittedCallsInHalfOpenState()) {
+      if (exceedsThresholds(halfOpenCalls, halfOpenFailedCalls, halfOpenSlowCalls)) {
+        transitionTo(State.OPEN);
+      } else {
+        transitionTo(State.CLOSED);
+      }
+    }
+  }
+
+  private boolean exceedsThresholds(int calls, int failed, int slow) {
+    return rate(failed, calls) >= config.getFailureRateThreshold()
+        || rate(slow, calls) >= config.getSlowCallRateThreshold();
+  }
+
+  private void transitionTo(State to) {
+    transitions[state.ordinal() * State.values().length + to.ordinal()]++;
+    state = to;
+    switch (to) {
+      case OPEN -> openedAt = nanoClock.getAsLong();
+      case HALF_OPEN -> {
+        halfOpenPermits = 0;
+        halfOpenCalls = 0;
+        halfOpenFailedCalls = 0;
+        halfOpenSlowCalls = 0;
+      }
+      case CLOSED -> {
+        windowIndex = 0;
+        bufferedCalls = 0;
+        failedCalls = 0;
+        slowCalls = 0;
+      }
+    }
+  }
+
+  private void fireTransition(State from, State to) {
+    for (StateTransitionListener listener : listeners) {
+      listener.onStateTransition(this, from, to);
+    }
+  }
+
+  /** Forces the breaker back to {@link State#CLOSED} and clears the sliding window. */
+  public void reset() {
+    State from;
+    lock.lock();
+    try {
+      from = state;
+      transitionTo(State.CLOSED);
+    } finally {
+      lock.unlock();
+    }
+    if (from != State.CLOSED) {
+      fireTransition(from, State.CLOSED);
+    }
+  }
+
+  public Metrics getMetrics() {
+    lock.lock();
+    try {
+      return new Metrics(
+          name,
+          state,
+          rate(failedCalls, bufferedCalls),
+          rate(slowCalls, bufferedCalls),
+          bufferedCalls,
+          failedCalls,
+          slowCalls,
+          notPermittedCalls,
+          transitions.clone());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static float rate(int count, int total) {
+    return total == 0 ? 0f : count * 100f / total;
+  }
+
+  /** Point-in-time view of a circuit breaker's sliding window and transition counters. */
+  public record Metrics(
+      String name,
+      State state,
+      float failureRate,
+      float slowCallRate,
+      int bufferedCalls,
+      int failedCalls,
+      int slowCalls,
+      long notPermittedCalls,
+      long[] transitionCounts) {
+
+    /** Number of times the breaker has moved from {@code from} to {@code to}. */
+    public long transitions(State from, State to) {
+      return transitionCounts[from.ordinal() * State.values().length + to.ordinal()];
+    }
+  }
+}
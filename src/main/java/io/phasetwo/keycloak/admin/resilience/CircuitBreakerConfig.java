@@ -0,0 +1,142 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.time.Duration;
+
+/**
+ * Immutable settings for a {@link CircuitBreaker}. Rates are percentages in the range {@code (0,
+ * 100]} and are evaluated over a count-based sliding window of the most recent calls.
+ */
+public final class CircuitBreakerConfig {
+
+  private final float failureRateThreshold;
+  private final float slowCallRateThreshold;
+  private final Duration slowCallDurationThreshold;
+  private final int slidingWindowSize;
+  private final int minimumNumberOfCalls;
+  private final Duration waitDurationInOpenState;
+  private final int permittedCallsInHalfOpenState;
+
+  private CircuitBreakerConfig(Builder builder) {
+    this.failureRateThreshold = builder.failureRateThreshold;
+    this.slowCallRateThreshold = builder.slowCallRateThreshold;
+    this.slowCallDurationThreshold = builder.slowCallDurationThreshold;
+    this.slidingWindowSize = builder.slidingWindowSize;
+    this.minimumNumberOfCalls = Math.min(builder.minimumNumberOfCalls, builder.slidingWindowSize);
+    this.waitDurationInOpenState = builder.waitDurationInOpenState;
+    this.permittedCallsInHalfOpenState = builder.permittedCallsInHalfOpenState;
+  }
+
+  public static CircuitBreakerConfig ofDefaults() {
+    return builder().build();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public float getFailureRateThreshold() {
+    return failureRateThreshold;
+  }
+
+  public float getSlowCallRateThreshold() {
+    return slowCallRateThreshold;
+  }
+
+  public Duration getSlowCallDurationThreshold() {
+    return slowCallDurationThreshold;
+  }
+
+  public int getSlidingWindowSize() {
+    return slidingWindowSize;
+  }
+
+  public int getMinimumNumberOfCalls() {
+    return minimumNumberOfCalls;
+  }
+
+  public Duration getWaitDurationInOpenState() {
+    return waitDurationInOpenState;
+  }
+
+  public int getPermittedCallsInHalfOpenState() {
+    return permittedCallsInHalfOpenState;
+  }
+
+  public static final class Builder {
+    private float failureRateThreshold = 50f;
+    private float slowCallRateThreshold = 100f;
+    private Duration slowCallDurationThreshold = Duration.ofSeconds(10);
+    private int slidingWindowSize = 100;
+    private int minimumNumberOfCalls = 20;
+    private Duration waitDurationInOpenState = Duration.ofSeconds(30);
+    private int permittedCallsInHalfOpenState = 5;
+
+    private Builder() {}
+
+    /** Percentage of failed calls (I/O errors and 5xx responses) that opens the circuit. */
+    public Builder failureRateThreshold(float failureRateThreshold) {
+      this.failureRateThreshold = checkRate(failureRateThreshold, "failureRateThreshold");
+      return this;
+    }
+
+    /** Percentage of calls slower than the slow call duration threshold that opens the circuit. */
+    public Builder slowCallRateThreshold(float slowCallRateThreshold) {
+      this.slowCallRateThreshold = checkRate(slowCallRateThreshold, "slowCallRateThreshold");
+      return this;
+    }
+
+    public Builder slowCallDurationThreshold(Duration slowCallDurationThreshold) {
+      this.slowCallDurationThreshold =
+          checkPositive(slowCallDurationThreshold, "slowCallDurationThreshold");
+      return this;
+    }
+
+    public Builder slidingWindowSize(int slidingWindowSize) {
+      if (slidingWindowSize < 1) {
+        throw new IllegalArgumentException("slidingWindowSize must be at least 1");
+      }
+      this.slidingWindowSize = slidingWindowSize;
+      return this;
+    }
+
+    public Builder minimumNumberOfCalls(int minimumNumberOfCalls) {
+      if (minimumNumberOfCalls < 1) {
+        throw new IllegalArgumentException("minimumNumberOfCalls must be at least 1");
+      }
+      this.minimumNumberOfCalls = minimumNumberOfCalls;
+      return this;
+    }
+
+    public Builder waitDurationInOpenState(Duration waitDurationInOpenState) {
+      this.waitDurationInOpenState =
+          checkPositive(waitDurationInOpenState, "waitDurationInOpenState");
+      return this;
+    }
+
+    public Builder permittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+      if (permittedCallsInHalfOpenState < 1) {
+        throw new IllegalArgumentException("permittedCallsInHalfOpenState must be at least 1");
+      }
+      this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+      return this;
+    }
+
+    public CircuitBreakerConfig build() {
+      return new CircuitBreakerConfig(this);
+    }
+
+    private static float checkRate(float rate, String name) {
+      if (rate <= 0 || rate > 100) {
+        throw new IllegalArgumentException(name + " must be in the range (0, 100]");
+      }
+      return rate;
+    }
+
+    private static Duration checkPositive(Duration duration, String name) {
+      if (duration == null || duration.isNegative() || duration.isZero()) {
+        throw new IllegalArgumentException(name + " must be a positive duration");
+      }
+      return duration;
+    }
+  }
+}
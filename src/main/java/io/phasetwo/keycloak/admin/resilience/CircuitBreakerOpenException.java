@@ -0,0 +1,32 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.time.Duration;
+
+/** Thrown instead of making a call while the {@link CircuitBreaker} guarding it is open. */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+  private final String circuitBreakerName;
+  private final CircuitBreaker.State state;
+  private final Duration retryAfter;
+
+  public CircuitBreakerOpenException(
+      String circuitBreakerName, CircuitBreaker.State state, Duration retryAfter) {
+    super("Circuit breaker '" + circuitBreakerName + "' is " + state + ", call not permitted");
+    this.circuitBreakerName = circuitBreakerName;
+    this.state = state;
+    this.retryAfter = retryAfter;
+  }
+
+  public String getCircuitBreakerName() {
+    return circuitBreakerName;
+  }
+
+  public CircuitBreaker.State getState() {
+    return state;
+  }
+
+  /** Time until the breaker will admit half-open trial calls, or zero if unknown. */
+  public Duration getRetryAfter() {
+    return retryAfter;
+  }
+}
@@ -0,0 +1,104 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Holds one {@link CircuitBreaker} per endpoint family. Which calls share a breaker is decided by a
+ * {@link KeyResolver}; by default every HTTP method of a resource interface gets its own breaker,
+ * so a struggling {@code UsersResource} search does not trip reads of {@code RealmResource}.
+ */
+public final class CircuitBreakerRegistry {
+
+  /** Maps a proxied call to the name of the circuit breaker that guards it. */
+  @FunctionalInterface
+  public interface KeyResolver {
+    String resolve(Class<?> resourceInterface, Method method, String httpMethod);
+  }
+
+  public static final KeyResolver BY_RESOURCE =
+      (resource, method, httpMethod) -> resource.getName();
+
+  public static final KeyResolver BY_RESOURCE_AND_HTTP_METHOD =
+      (resource, method, httpMethod) -> resource.getName() + " " + httpMethod;
+
+  public static final KeyResolver BY_RESOURCE_METHOD =
+      (resource, method, httpMethod) -> resource.getName() + "#" + method.getName();
+
+  private final CircuitBreakerConfig config;
+  private final KeyResolver keyResolver;
+  private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Class<?>, ConcurrentMap<Method, CircuitBreaker>> byInvocation =
+      new ConcurrentHashMap<>();
+  private final List<CircuitBreaker.StateTransitionListener> listeners =
+      new CopyOnWriteArrayList<>();
+
+  public CircuitBreakerRegistry(CircuitBreakerConfig config, KeyResolver keyResolver) {
+    this.config = Objects.requireNonNull(config, "config");
+    this.keyResolver = Objects.requireNonNull(keyResolver, "keyResolver");
+  }
+
+  public static CircuitBreakerRegistry of(CircuitBreakerConfig config) {
+    return new CircuitBreakerRegistry(config, BY_RESOURCE_AND_HTTP_METHOD);
+  }
+
+  public static CircuitBreakerRegistry ofDefaults() {
+    return of(CircuitBreakerConfig.ofDefaults());
+  }
+
+  /**
+   * Registers a listener that is notified of transitions of every breaker in this registry,
+   * including breakers created later.
+   */
+  public CircuitBreakerRegistry onStateTransition(CircuitBreaker.StateTransitionListener listener) {
+    listeners.add(listener);
+    return this;
+  }
+
+  public CircuitBreaker circuitBreaker(String name) {
+    return circuitBreakers.computeIfAbsent(name, this::newCircuitBreaker);
+  }
+
+  /** Returns the breaker for a proxied call, resolving its key only once per method. */
+  public CircuitBreaker circuitBreaker(
+      Class<?> resourceInterface, Method method, String httpMethod) {
+    ConcurrentMap<Method, CircuitBreaker> methods =
+        byInvocation.computeIfAbsent(resourceInterface, k -> new ConcurrentHashMap<>());
+    CircuitBreaker circuitBreaker = methods.get(method);
+    if (circuitBreaker == null) {
+      circuitBreaker =
+          methods.computeIfAbsent(
+              method,
+              m -> circuitBreaker(keyResolver.resolve(resourceInterface, method, httpMethod)));
+    }
+    return circuitBreaker;
+  }
+
+  /** Snapshot of every breaker's metrics, sorted by name. */
+  public Map<String, CircuitBreaker.Metrics> getMetrics() {
+    Map<String, CircuitBreaker.Metrics> metrics = new TreeMap<>();
+    for (CircuitBreaker circuitBreaker : circuitBreakers.values()) {
+      metrics.put(circuitBreaker.getName(), circuitBreaker.getMetrics());
+    }
+    return metrics;
+  }
+
+  private CircuitBreaker newCircuitBreaker(String name) {
+    CircuitBreaker circuitBreaker = new CircuitBreaker(name, config);
+    circuitBreaker.addStateTransitionListener(this::fireTransition);
+    return circuitBreaker;
+  }
+
+  private void fireTransition(
+      CircuitBreaker circuitBreaker, CircuitBreaker.State from, CircuitBreaker.State to) {
+    for (CircuitBreaker.StateTransitionListener listener : listeners) {
+      listener.onStateTransition(circuitBreaker, from, to);
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import io.phasetwo.keycloak.admin.Http;
+import io.phasetwo.keycloak.admin.routing.ServerNode;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends a second copy of a slow GET and uses whichever copy answers successfully first, as
+ * described in "The Tail at Scale" (Dean, Barroso). The first copy runs on the calling thread; if
+ * it has not completed after the policy's delay, a hedge is sent from another thread, to a
+ * different node when a {@link io.phasetwo.keycloak.admin.routing.LoadBalancer} is configured. The
+ * copy that loses is aborted through {@link Http#abort()}.
+ *
+ * <p>Hedges draw from a credit bucket that every call refills by {@link
+ * HedgingPolicy#getMaxHedgeRatio()}, so the extra load stays bounded even when all calls are slow.
+ */
+public final class Hedger implements AutoCloseable {
+
+  private static final long CREDIT = 1000;
+
+  private final HedgingPolicy policy;
+  private final ScheduledThreadPoolExecutor timer;
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+  private final long delayNanos;
+  private final long minDelayNanos;
+  private final long refill;
+  private final long maxCredits;
+  private final AtomicLong credits;
+  private final Map<Object, LatencyWindow> windows = new ConcurrentHashMap<>();
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder hedgeWins = new LongAdder();
+  private final LongAdder throttled = new LongAdder();
+
+  public Hedger(HedgingPolicy policy) {
+    this.policy = policy;
+    this.timer =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = new Thread(runnable, "keycloak-admin-hedging");
+              thread.setDaemon(true);
+              return thread;
+            });
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.ownsExecutor = policy.getExecutor() == null;
+    this.executor =
+        ownsExecutor ? Executors.newVirtualThreadPerTaskExecutor() : policy.getExecutor();
+    this.delayNanos = policy.getDelay().toNanos();
+    this.minDelayNanos = policy.getMinDelay().toNanos();
+    this.refill = Math.max(1, Math.round(policy.getMaxHedgeRatio() * CREDIT));
+    this.maxCredits = policy.getMaxHedgeBurst() * CREDIT;
+    this.credits = new AtomicLong(maxCredits);
+  }
+
+  public HedgingPolicy getPolicy() {
+    return policy;
+  }
+
+  /** Whether calls to {@code method} of {@code resource} with the given HTTP method are hedged. */
+  public boolean appliesTo(Class<?> resource, Method method, String httpMethod) {
+    return "GET".equals(httpMethod) && policy.getFilter().test(resource, method);
+  }
+
+  /** One copy of a hedged request. */
+  public static final class Attempt {
+    private final Set<ServerNode> triedNodes;
+    private final boolean hedge;
+    private volatile Http request;
+    private volatile boolean cancelled;
+
+    Attempt(Set<ServerNode> triedNodes, boolean hedge) {
+      this.triedNodes = triedNodes;
+      this.hedge = hedge;
+    }
+
+    /**
+     * Nodes used by either copy so far, to be passed to {@link
+     * io.phasetwo.keycloak.admin.routing.LoadBalancer#execute(String, String, boolean, Set,
+     * io.phasetwo.keycloak.admin.routing.LoadBalancer.Attempt)} so that the copies do not land on
+     * the same node.
+     */
+    public Set<ServerNode> triedNodes() {
+      return triedNodes;
+    }
+
+    public boolean isHedge() {
+      return hedge;
+    }
+
+    /** Must be called with each request before it is sent, so that it can be aborted. */
+    public void register(Http request) {
+      this.request = request;
+      if (cancelled) {
+        request.abort();
+      }
+    }
+
+    void cancel() {
+      cancelled = true;
+      Http current = request;
+      if (current != null) {
+        current.abort();
+      }
+    }
+  }
+
+  /** Sends one copy of the request. */
+  @FunctionalInterface
+  public interface Call {
+    Http.Response send(Attempt attempt) throws IOException;
+  }
+
+  /**
+   * Runs {@code call}, hedging it if it is slow.
+   *
+   * @param key identifies the endpoint whose latencies drive a percentile-based delay
+   */
+  public Http.Response execute(Object key, Call call) throws IOException {
+    calls.increment();
+    credits.accumulateAndGet(refill, (current, add) -> Math.min(maxCredits, current + add));
+    LatencyWindow window =
+        windows.computeIfAbsent(key, k -> new LatencyWindow(LatencyWindow.DEFAULT_SIZE));
+
+    Race race = new Race(call);
+    long start = System.nanoTime();
+    ScheduledFuture<?> trigger;
+    try {
+      trigger = timer.schedule(race::launchHedge, hedgeDelayNanos(window), TimeUnit.NANOSECONDS);
+    } catch (RejectedExecutionException e) {
+      return call.send(race.primary);
+    }
+
+    Http.Response response = null;
+    Throwable error = null;
+    try {
+      response = call.send(race.primary);
+      // buffer the body here, where an abort by a winning hedge is still caught
+      response.getStatus();
+    } catch (IOException | RuntimeException e) {
+      error = e;
+    }
+    trigger.cancel(false);
+
+    if (race.finishPrimary()) {
+      if (error == null) {
+        window.record(System.nanoTime() - start);
+      }
+      return result(response, error);
+    }
+
+    if (error == null && isSuccess(response)) {
+      race.hedge.cancel();
+      window.record(System.nanoTime() - start);
+      return response;
+    }
+    Outcome hedged;
+    try {
+      hedged = race.hedgeOutcome.get();
+    } catch (InterruptedException e) {
+      race.hedge.cancel();
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for hedged request");
+    } catch (ExecutionException e) {
+      hedged = new Outcome(null, e.getCause());
+    }
+    if (hedged.error() == null && isSuccess(hedged.response())) {
+      hedgeWins.increment();
+      window.record(System.nanoTime() - start);
+      return hedged.response();
+    }
+    return result(response, error);
+  }
+
+  private long hedgeDelayNanos(LatencyWindow window) {
+    if (policy.getPercentile() > 0) {
+      long observed = window.percentile(policy.getPercentile(), policy.getMinSamples());
+      if (observed >= 0) {
+        return Math.max(observed, minDelayNanos);
+      }
+    }
+    return delayNanos;
+  }
+
+  private boolean tryAcquireCredit() {
+    long current;
+    do {
+      current = credits.get();
+      if (current < CREDIT) {
+        return false;
+      }
+    } while (!credits.compareAndSet(current, current - CREDIT));
+    return true;
+  }
+
+  private static boolean isSuccess(Http.Response response) throws IOException {
+    return response.getStatus() < 500;
+  }
+
+  private static Http.Response result(Http.Response response, Throwable error) throws IOException {
+    if (error instanceof IOException e) {
+      throw e;
+    }
+    if (error instanceof RuntimeException e) {
+      throw e;
+    }
+    if (error instanceof Error e) {
+      throw e;
+    }
+    if (error != null) {
+      throw new IOException(error);
+    }
+    return response;
+  }
+
+  public Stats getStats() {
+    return new Stats(calls.sum(), hedges.sum(), hedgeWins.sum(), throttled.sum());
+  }
+
+  @Override
+  public void close() {
+    timer.shutdownNow();
+    if (ownsExecutor) {
+      executor.shutdownNow();
+    }
+  }
+
+  private record Outcome(Http.Response response, Throwable error) {}
+
+  /** Coordinates the two copies of one call. */
+  private final class Race {
+    private final Call call;
+    private final Attempt primary;
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private final CompletableFuture<Outcome> hedgeOutcome = new CompletableFuture<>();
+    private volatile Attempt hedge;
+
+    Race(Call call) {
+      this.call = call;
+      this.primary = new Attempt(ConcurrentHashMap.newKeySet(), false);
+    }
+
+    /** Runs on the timer thread once the delay has passed without a response. */
+    void launchHedge() {
+      if (!tryAcquireCredit()) {
+        throttled.increment();
+        return;
+      }
+      Attempt attempt = new Attempt(primary.triedNodes(), true);
+      hedge = attempt;
+      if (!settled.compareAndSet(false, true)) {
+        credits.addAndGet(CREDIT);
+        return;
+      }
+      hedges.increment();
+      try {
+        executor.execute(() -> runHedge(attempt));
+      } catch (RejectedExecutionException e) {
+        hedgeOutcome.complete(new Outcome(null, e));
+      }
+    }
+
+    private void runHedge(Attempt attempt) {
+      try {
+        Http.Response response = call.send(attempt);
+        if (isSuccess(response)) {
+          primary.cancel();
+        }
+        hedgeOutcome.complete(new Outcome(response, null));
+      } catch (Throwable t) {
+        hedgeOutcome.complete(new Outcome(null, t));
+      }
+    }
+
+    /**
+     * @return {@code true} if the primary finished before a hedge was launched, in which case none
+     *     will be
+     */
+    boolean finishPrimary() {
+      return settled.compareAndSet(false, true);
+    }
+  }
+
+  /**
+   * Counters since the client was created.
+   *
+   * @param calls hedgeable calls
+   * @param hedges hedge requests sent
+   * @param hedgeWins calls answered by the hedge rather than the first request
+   * @param throttled hedges skipped because the hedge rate cap was reached
+   */
+  public record Stats(long calls, long hedges, long hedgeWins, long throttled) {}
+}
@@ -0,0 +1,182 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.BiPredicate;
+
+/**
+ * Configuration for {@link Hedger}. Only GET calls are ever hedged; the {@link
+ * Builder#filter(BiPredicate) filter} narrows that further to the resource methods whose tail
+ * latency matters.
+ */
+public final class HedgingPolicy {
+
+  private final Duration delay;
+  private final double percentile;
+  private final int minSamples;
+  private final Duration minDelay;
+  private final double maxHedgeRatio;
+  private final int maxHedgeBurst;
+  private final BiPredicate<Class<?>, Method> filter;
+  private final ExecutorService executor;
+
+  private HedgingPolicy(Builder builder) {
+    this.delay = builder.delay;
+    this.percentile = builder.percentile;
+    this.minSamples = builder.minSamples;
+    this.minDelay = builder.minDelay;
+    this.maxHedgeRatio = builder.maxHedgeRatio;
+    this.maxHedgeBurst = builder.maxHedgeBurst;
+    this.filter = builder.filter;
+    this.executor = builder.executor;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public static HedgingPolicy ofDefaults() {
+    return builder().build();
+  }
+
+  public Duration getDelay() {
+    return delay;
+  }
+
+  /**
+   * @return the latency percentile used as the hedge delay, or {@code 0} if the fixed {@link
+   *     #getDelay() delay} is always used
+   */
+  public double getPercentile() {
+    return percentile;
+  }
+
+  public int getMinSamples() {
+    return minSamples;
+  }
+
+  public Duration getMinDelay() {
+    return minDelay;
+  }
+
+  public double getMaxHedgeRatio() {
+    return maxHedgeRatio;
+  }
+
+  public int getMaxHedgeBurst() {
+    return maxHedgeBurst;
+  }
+
+  public BiPredicate<Class<?>, Method> getFilter() {
+    return filter;
+  }
+
+  /**
+   * @return the executor that sends hedge requests, or {@code null} to use a virtual thread per
+   *     hedge
+   */
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  public static final class Builder {
+    private Duration delay = Duration.ofMillis(100);
+    private double percentile;
+    private int minSamples = 50;
+    private Duration minDelay = Duration.ofMillis(5);
+    private double maxHedgeRatio = 0.05;
+    private int maxHedgeBurst = 10;
+    private BiPredicate<Class<?>, Method> filter = (resource, method) -> true;
+    private ExecutorService executor;
+
+    private Builder() {}
+
+    /**
+     * How long to wait for the first response before sending the hedge. When a {@link
+     * #percentile(double) percentile} is set this is only used until enough latencies have been
+     * observed for the endpoint.
+     */
+    public Builder delay(Duration delay) {
+      Objects.requireNonNull(delay, "delay");
+      if (delay.isNegative()) {
+        throw new IllegalArgumentException("delay must not be negative");
+      }
+      this.delay = delay;
+      return this;
+    }
+
+    /**
+     * Hedges once a call has taken longer than this percentile of the recent latencies of the same
+     * resource method, e.g. {@code 95}. Adapts the delay to each endpoint instead of using one
+     * fixed value.
+     */
+    public Builder percentile(double percentile) {
+      if (!(percentile > 0 && percentile < 100)) {
+        throw new IllegalArgumentException("percentile must be between 0 and 100 exclusive");
+      }
+      this.percentile = percentile;
+      return this;
+    }
+
+    /** Latencies an endpoint must have recorded before its percentile replaces the fixed delay. */
+    public Builder minSamples(int minSamples) {
+      if (minSamples < 1) {
+        throw new IllegalArgumentException("minSamples must be at least 1");
+      }
+      this.minSamples = minSamples;
+      return this;
+    }
+
+    /** Lower bound for a percentile-based delay, so fast endpoints are not hedged on jitter. */
+    public Builder minDelay(Duration minDelay) {
+      this.minDelay = Objects.requireNonNull(minDelay, "minDelay");
+      return this;
+    }
+
+    /**
+     * Upper bound on the number of hedges as a fraction of hedgeable calls, e.g. {@code 0.05} adds
+     * at most 5% extra load. Stops hedging from amplifying an overload that slows every call.
+     */
+    public Builder maxHedgeRatio(double maxHedgeRatio) {
+      if (!(maxHedgeRatio > 0 && maxHedgeRatio <= 1)) {
+        throw new IllegalArgumentException("maxHedgeRatio must be in (0, 1]");
+      }
+      this.maxHedgeRatio = maxHedgeRatio;
+      return this;
+    }
+
+    /** Hedges that may be sent back to back before the {@link #maxHedgeRatio} applies. */
+    public Builder maxHedgeBurst(int maxHedgeBurst) {
+      if (maxHedgeBurst < 1) {
+        throw new IllegalArgumentException("maxHedgeBurst must be at least 1");
+      }
+      this.maxHedgeBurst = maxHedgeBurst;
+      return this;
+    }
+
+    /** Selects the resource methods to hedge; all GET methods by default. */
+    public Builder filter(BiPredicate<Class<?>, Method> filter) {
+      this.filter = Objects.requireNonNull(filter, "filter");
+      return this;
+    }
+
+    /** Hedges only the named methods of {@code resource}, e.g. {@code "toRepresentation"}. */
+    public Builder only(Class<?> resource, String... methodNames) {
+      Set<String> names = Set.of(methodNames);
+      return filter((type, method) -> type == resource && names.contains(method.getName()));
+    }
+
+    /** Executor for hedge requests. It is not shut down when the client is closed. */
+    public Builder executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    public HedgingPolicy build() {
+      return new HedgingPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,64 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The most recent latencies of one endpoint. Percentiles are recomputed from a sorted copy only
+ * every {@link #REFRESH_INTERVAL} samples, so reading them on every call stays cheap.
+ */
+final class LatencyWindow {
+
+  static final int DEFAULT_SIZE = 512;
+  private static final int REFRESH_INTERVAL = 32;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final long[] samples;
+  private int count;
+  private int next;
+  private int sinceRefresh;
+  private double cachedPercentile = Double.NaN;
+  private long cachedValue;
+
+  LatencyWindow(int size) {
+    this.samples = new long[size];
+  }
+
+  void record(long nanos) {
+    lock.lock();
+    try {
+      samples[next] = nanos;
+      next = (next + 1) % samples.length;
+      if (count < samples.length) {
+        count++;
+      }
+      sinceRefresh++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the given percentile of the recorded latencies, or {@code -1} if fewer than {@code
+   *     minSamples} have been recorded
+   */
+  long percentile(double percentile, int minSamples) {
+    lock.lock();
+    try {
+      if (count < minSamples || count == 0) {
+        return -1;
+      }
+      if (sinceRefresh >= REFRESH_INTERVAL || cachedPercentile != percentile) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        cachedValue = sorted[Math.max(0, Math.min(index, count - 1))];
+        cachedPercentile = percentile;
+        sinceRefresh = 0;
+      }
+      return cachedValue;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
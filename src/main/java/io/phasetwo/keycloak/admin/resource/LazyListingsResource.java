@@ -0,0 +1,45 @@
+package io.phasetwo.keycloak.admin.resource;
+
+import io.phasetwo.keycloak.admin.LazyRepresentation;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import java.util.List;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/**
+ * The listings of a realm that grow with its size, read into {@link LazyRepresentation}s instead of
+ * fully materialized representations. The parameters are those of the matching methods of {@code
+ * UsersResource}, {@code GroupsResource} and {@code GroupResource}.
+ */
+public interface LazyListingsResource {
+
+  @GET
+  @Path("users")
+  @Produces(MediaType.APPLICATION_JSON)
+  List<LazyRepresentation<UserRepresentation>> users(
+      @QueryParam("search") String search,
+      @QueryParam("first") Integer first,
+      @QueryParam("max") Integer max);
+
+  @GET
+  @Path("groups")
+  @Produces(MediaType.APPLICATION_JSON)
+  List<LazyRepresentation<GroupRepresentation>> groups(
+      @QueryParam("search") String search,
+      @QueryParam("first") Integer first,
+      @QueryParam("max") Integer max,
+      @QueryParam("briefRepresentation") Boolean briefRepresentation);
+
+  @GET
+  @Path("groups/{id}/members")
+  @Produces(MediaType.APPLICATION_JSON)
+  List<LazyRepresentation<UserRepresentation>> members(
+      @PathParam("id") String groupId,
+      @QueryParam("first") Integer first,
+      @QueryParam("max") Integer max);
+}
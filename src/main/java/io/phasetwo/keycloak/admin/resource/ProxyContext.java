@@ -0,0 +1,271 @@
+package io.phasetwo.keycloak.admin.resource;
+
+import io.phasetwo.keycloak.admin.ResponseLimits;
+import io.phasetwo.keycloak.admin.RoleTable;
+import io.phasetwo.keycloak.admin.StringTable;
+import io.phasetwo.keycloak.admin.metrics.InFlightRequests;
+import io.phasetwo.keycloak.admin.metrics.MetricsRecorder;
+import io.phasetwo.keycloak.admin.resilience.CircuitBreakerRegistry;
+import io.phasetwo.keycloak.admin.resilience.Hedger;
+import io.phasetwo.keycloak.admin.routing.LoadBalancer;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfile;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfiles;
+import io.phasetwo.keycloak.admin.tracing.Tracer;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import org.apache.http.client.HttpClient;
+
+/**
+ * Settings shared by every resource proxy that a client creates. One instance is built per {@link
+ * io.phasetwo.keycloak.admin.Keycloak} and handed down unchanged to nested sub-resource proxies.
+ */
+public final class ProxyContext {
+
+  private final HttpClient client;
+  private final Supplier<String> tokenSupplier;
+  private final Consumer<String> tokenInvalidator;
+  private final Duration socketTimeout;
+  private final Duration connectTimeout;
+  private final Duration connectionRequestTimeout;
+  private final CircuitBreakerRegistry circuitBreakers;
+  private final LoadBalancer loadBalancer;
+  private final Hedger hedger;
+  private final TimeoutProfiles timeoutProfiles;
+  private final MetricsRecorder metrics;
+  private final Tracer tracer;
+  private final InFlightRequests inFlight;
+  private final ResponseLimits responseLimits;
+  private final StringTable strings;
+  private final RoleTable roles;
+
+  private ProxyContext(Builder builder) {
+    this.client = builder.client;
+    this.tokenSupplier = builder.tokenSupplier;
+    this.tokenInvalidator = builder.tokenInvalidator;
+    this.socketTimeout = builder.socketTimeout;
+    this.connectTimeout = builder.connectTimeout;
+    this.connectionRequestTimeout = builder.connectionRequestTimeout;
+    this.circuitBreakers = builder.circuitBreakers;
+    this.loadBalancer = builder.loadBalancer;
+    this.hedger = builder.hedger;
+    this.metrics = builder.metrics;
+    this.tracer = builder.tracer;
+    this.inFlight = builder.inFlight;
+    this.responseLimits = builder.responseLimits;
+    this.strings = builder.strings;
+    this.roles = builder.roles;
+    TimeoutProfile defaults =
+        TimeoutProfile.of(socketTimeout, connectTimeout, connectionRequestTimeout);
+    this.timeoutProfiles =
+        builder.timeoutProfiles == null
+            ? TimeoutProfiles.of(defaults)
+            : builder.timeoutProfiles.withFallback(defaults);
+  }
+
+  public static Builder builder(HttpClient client) {
+    return new Builder(client);
+  }
+
+  public HttpClient getClient() {
+    return client;
+  }
+
+  public Supplier<String> getTokenSupplier() {
+    return tokenSupplier;
+  }
+
+  public Consumer<String> getTokenInvalidator() {
+    return tokenInvalidator;
+  }
+
+  public Duration getSocketTimeout() {
+    return socketTimeout;
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public Duration getConnectionRequestTimeout() {
+    return connectionRequestTimeout;
+  }
+
+  /**
+   * @return the circuit breakers guarding proxied calls, or {@code null} if disabled
+   */
+  public CircuitBreakerRegistry getCircuitBreakers() {
+    return circuitBreakers;
+  }
+
+  /**
+   * @return the balancer spreading calls over several Keycloak nodes, or {@code null} if there is a
+   *     single server URL
+   */
+  public LoadBalancer getLoadBalancer() {
+    return loadBalancer;
+  }
+
+  /**
+   * @return the hedger for slow GET calls, or {@code null} if hedging is disabled
+   */
+  public Hedger getHedger() {
+    return hedger;
+  }
+
+  /**
+   * @return the timeout profiles of proxied calls, with unset timeouts filled in from the
+   *     client-wide ones; never {@code null}
+   */
+  public TimeoutProfiles getTimeoutProfiles() {
+    return timeoutProfiles;
+  }
+
+  /**
+   * @return the recorder that receives per-call metrics, or {@code null} if metrics are disabled
+   */
+  public MetricsRecorder getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @return the tracer that opens a span per proxied call, or {@code null} if tracing is disabled
+   */
+  public Tracer getTracer() {
+    return tracer;
+  }
+
+  /**
+   * @return the per-endpoint counters of calls in progress, or {@code null} if they are not tracked
+   */
+  public InFlightRequests getInFlight() {
+    return inFlight;
+  }
+
+  /**
+   * @return the bounds on response bodies, or {@code null} if bodies are buffered in memory
+   *     whatever their size
+   */
+  public ResponseLimits getResponseLimits() {
+    return responseLimits;
+  }
+
+  /**
+   * @return the table that repeated string values of responses are shared through, or {@code null}
+   *     if every value is read into its own string
+   */
+  public StringTable getStrings() {
+    return strings;
+  }
+
+  /**
+   * @return the table that roles of responses are shared through, or {@code null} if every role is
+   *     read into its own instance
+   */
+  public RoleTable getRoles() {
+    return roles;
+  }
+
+  public static final class Builder {
+    private final HttpClient client;
+    private Supplier<String> tokenSupplier;
+    private Consumer<String> tokenInvalidator;
+    private Duration socketTimeout;
+    private Duration connectTimeout;
+    private Duration connectionRequestTimeout;
+    private CircuitBreakerRegistry circuitBreakers;
+    private LoadBalancer loadBalancer;
+    private Hedger hedger;
+    private TimeoutProfiles timeoutProfiles;
+    private MetricsRecorder metrics;
+    private Tracer tracer;
+    private InFlightRequests inFlight;
+    private ResponseLimits responseLimits;
+    private StringTable strings;
+    private RoleTable roles;
+
+    private Builder(HttpClient client) {
+      this.client = Objects.requireNonNull(client, "client");
+    }
+
+    public Builder tokenSupplier(Supplier<String> tokenSupplier) {
+      this.tokenSupplier = tokenSupplier;
+      return this;
+    }
+
+    public Builder tokenInvalidator(Consumer<String> tokenInvalidator) {
+      this.tokenInvalidator = tokenInvalidator;
+      return this;
+    }
+
+    public Builder socketTimeout(Duration socketTimeout) {
+      this.socketTimeout = socketTimeout;
+      return this;
+    }
+
+    public Builder connectTimeout(Duration connectTimeout) {
+      this.connectTimeout = connectTimeout;
+      return this;
+    }
+
+    public Builder connectionRequestTimeout(Duration connectionRequestTimeout) {
+      this.connectionRequestTimeout = connectionRequestTimeout;
+      return this;
+    }
+
+    public Builder circuitBreakers(CircuitBreakerRegistry circuitBreakers) {
+      this.circuitBreakers = circuitBreakers;
+      return this;
+    }
+
+    public Builder loadBalancer(LoadBalancer loadBalancer) {
+      this.loadBalancer = loadBalancer;
+      return this;
+    }
+
+    public Builder hedger(Hedger hedger) {
+      this.hedger = hedger;
+      return this;
+    }
+
+    public Builder timeoutProfiles(TimeoutProfiles timeoutProfiles) {
+      this.timeoutProfiles = timeoutProfiles;
+      return this;
+    }
+
+    public Builder metrics(MetricsRecorder metrics) {
+      this.metrics = metrics;
+      return this;
+    }
+
+    public Builder tracer(Tracer tracer) {
+      this.tracer = tracer;
+      return this;
+    }
+
+    public Builder inFlight(InFlightRequests inFlight) {
+      this.inFlight = inFlight;
+      return this;
+    }
+
+    public Builder responseLimits(ResponseLimits responseLimits) {
+      this.responseLimits = responseLimits;
+      return this;
+    }
+
+    public Builder strings(StringTable strings) {
+      this.strings = strings;
+      return this;
+    }
+
+    public Builder roles(RoleTable roles) {
+      this.roles = roles;
+      return this;
+    }
+
+    public ProxyContext build() {
+      return new ProxyContext(this);
+    }
+  }
+}
@@ -1,7 +1,24 @@
 package io.phasetwo.keycloak.admin.resource;
 
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.phasetwo.keycloak.admin.Http;
 import io.phasetwo.keycloak.admin.JsonSerialization;
+import io.phasetwo.keycloak.admin.jfr.DeserializationEvent;
+import io.phasetwo.keycloak.admin.metrics.CallMetrics;
+import io.phasetwo.keycloak.admin.metrics.Endpoint;
+import io.phasetwo.keycloak.admin.metrics.InFlightRequests;
+import io.phasetwo.keycloak.admin.metrics.MetricsRecorder;
+import io.phasetwo.keycloak.admin.metrics.RequestTimings;
+import io.phasetwo.keycloak.admin.resilience.CircuitBreaker;
+import io.phasetwo.keycloak.admin.resilience.Hedger;
+import io.phasetwo.keycloak.admin.routing.LoadBalancer;
+import io.phasetwo.keycloak.admin.timeout.Deadline;
+import io.phasetwo.keycloak.admin.timeout.DeadlineExceededException;
+import io.phasetwo.keycloak.admin.timeout.TimeoutProfile;
+import io.phasetwo.keycloak.admin.tracing.Span;
+import io.phasetwo.keycloak.admin.tracing.SpanInfo;
+import io.phasetwo.keycloak.admin.tracing.Tracer;
 import jakarta.ws.rs.BadRequestException;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -21,18 +38,21 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
 import java.lang.annotation.Annotation;
-import java.time.Duration;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import org.apache.http.HttpHeaders;
@@ -41,6 +61,9 @@ import org.apache.http.entity.StringEntity;
 
 public final class ResourceProxyFactory {
 
+  // resolved once per proxied method instead of on every call
+  private static final Map<Method, JavaType> returnTypes = new ConcurrentHashMap<>();
+
   private ResourceProxyFactory() {}
 
   public static <T> T create(
@@ -52,14 +75,31 @@ public final class ResourceProxyFactory {
       Duration socketTimeout,
       Duration connectTimeout,
       Duration connectionRequestTimeout) {
+    Objects.requireNonNull(client, "client");
+    return create(
+        resourceInterface,
+        baseUrl,
+        ProxyContext.builder(client)
+            .tokenSupplier(tokenSupplier)
+            .tokenInvalidator(tokenInvalidator)
+            .socketTimeout(socketTimeout)
+            .connectTimeout(connectTimeout)
+            .connectionRequestTimeout(connectionRequestTimeout)
+            .build());
+  }
+
+  public static <T> T create(Class<T> resourceInterface, String baseUrl, ProxyContext context) {
     Objects.requireNonNull(resourceInterface, "resourceInterface");
     Objects.requireNonNull(baseUrl, "baseUrl");
-    Objects.requireNonNull(client, "client");
+    Objects.requireNonNull(context, "context");
+
+    return create(resourceInterface, normalizeBaseUrl(baseUrl), "", context);
+  }
 
+  private static <T> T create(
+      Class<T> resourceInterface, String baseUrl, String baseTemplate, ProxyContext context) {
     InvocationHandler handler =
-        new ResourceInvocationHandler(
-            resourceInterface, normalizeBaseUrl(baseUrl), client, tokenSupplier, tokenInvalidator,
-            socketTimeout, connectTimeout, connectionRequestTimeout);
+        new ResourceInvocationHandler(resourceInterface, baseUrl, baseTemplate, context);
     return resourceInterface.cast(
         Proxy.newProxyInstance(
             resourceInterface.getClassLoader(), new Class<?>[] {resourceInterface}, handler));
@@ -72,35 +112,56 @@ public final class ResourceProxyFactory {
     return baseUrl;
   }
 
+  /** Returns the cached reader for the generic return type of {@code method}. */
+  static ObjectReader readerFor(Method method) {
+    return JsonSerialization.reader(returnType(method));
+  }
+
+  private static JavaType returnType(Method method) {
+    JavaType type = returnTypes.get(method);
+    if (type == null) {
+      type =
+          returnTypes.computeIfAbsent(
+              method, m -> JsonSerialization.mapper.constructType(m.getGenericReturnType()));
+    }
+    return type;
+  }
+
+  /**
+   * Extracts the realm name from an admin or realm URL ({@code .../realms/{realm}/...}), used as
+   * the routing key so that a realm's requests stick to one node.
+   */
+  static String realmOf(String url) {
+    int marker = url.indexOf("/realms/");
+    if (marker < 0) {
+      return null;
+    }
+    int start = marker + "/realms/".length();
+    int end = start;
+    while (end < url.length() && url.charAt(end) != '/' && url.charAt(end) != '?') {
+      end++;
+    }
+    return end > start ? url.substring(start, end) : null;
+  }
+
   private static final class ResourceInvocationHandler implements InvocationHandler {
     private final Class<?> resourceInterface;
     private final String interfacePath;
     private final String baseUrl;
-    private final HttpClient client;
-    private final Supplier<String> tokenSupplier;
-    private final Consumer<String> tokenInvalidator;
-    private final Duration socketTimeout;
-    private final Duration connectTimeout;
-    private final Duration connectionRequestTimeout;
+    private final String baseTemplate;
+    private final ProxyContext context;
 
+    /**
+     * @param baseTemplate the path below the root proxy's base URL, with path parameters left as
+     *     {@code {name}} placeholders
+     */
     private ResourceInvocationHandler(
-        Class<?> resourceInterface,
-        String baseUrl,
-        HttpClient client,
-        Supplier<String> tokenSupplier,
-        Consumer<String> tokenInvalidator,
-        Duration socketTimeout,
-        Duration connectTimeout,
-        Duration connectionRequestTimeout) {
+        Class<?> resourceInterface, String baseUrl, String baseTemplate, ProxyContext context) {
       this.resourceInterface = resourceInterface;
       this.interfacePath = pathValue(resourceInterface.getAnnotation(Path.class));
       this.baseUrl = baseUrl;
-      this.client = client;
-      this.tokenSupplier = tokenSupplier;
-      this.tokenInvalidator = tokenInvalidator;
-      this.socketTimeout = socketTimeout;
-      this.connectTimeout = connectTimeout;
-      this.connectionRequestTimeout = connectionRequestTimeout;
+      this.baseTemplate = baseTemplate;
+      this.context = context;
     }
 
     @Override
@@ -117,8 +178,7 @@ public final class ResourceProxyFactory {
             replacePathParams(
                 joinPaths(joinPaths(baseUrl, interfacePath), methodPath), method, args);
         return ResourceProxyFactory.create(
-            method.getReturnType(), nestedPath, client, tokenSupplier, tokenInvalidator,
-            socketTimeout, connectTimeout, connectionRequestTimeout);
+            method.getReturnType(), nestedPath, template(methodPath), context);
       }
 
       if (httpMethod == null) {
@@ -132,18 +192,190 @@ public final class ResourceProxyFactory {
       String url =
           replacePathParams(joinPaths(joinPaths(baseUrl, interfacePath), methodPath), method, args);
       RequestParts requestParts = extractRequestParts(method, args);
-      return invokeHttp(method, httpMethod, url, requestParts);
+      requestParts.urlTemplate = template(methodPath);
+      requestParts.timeouts = context.getTimeoutProfiles().resolve(resourceInterface, method, url);
+      // captured here because hedges and retries may build the request on another thread
+      requestParts.deadline = Deadline.current();
+      if (requestParts.deadline != null && requestParts.deadline.isExpired()) {
+        throw new DeadlineExceededException(requestParts.deadline);
+      }
+      InFlightRequests inFlight = context.getInFlight();
+      if (inFlight == null) {
+        return invokeHttp(method, httpMethod, url, requestParts);
+      }
+      Endpoint endpoint = Endpoint.of(resourceInterface, method);
+      inFlight.enter(endpoint);
+      try {
+        return invokeHttp(method, httpMethod, url, requestParts);
+      } finally {
+        inFlight.exit(endpoint);
+      }
     }
 
     private Object invokeHttp(
         Method method, String httpMethod, String url, RequestParts requestParts)
         throws IOException {
-      Http request = newRequest(httpMethod, url);
+      Tracer tracer = context.getTracer();
+      if (tracer == null) {
+        return invokeMeasured(method, httpMethod, url, requestParts);
+      }
+      Span span =
+          tracer.startSpan(
+              new SpanInfo(
+                  resourceInterface.getSimpleName() + "." + method.getName(),
+                  httpMethod,
+                  requestParts.urlTemplate,
+                  url,
+                  resourceInterface,
+                  method));
+      requestParts.span = span;
+      Object value;
+      try {
+        value = invokeMeasured(method, httpMethod, url, requestParts);
+      } catch (Throwable t) {
+        span.end(requestParts.status, t);
+        throw t;
+      }
+      span.end(requestParts.status, null);
+      return value;
+    }
 
+    private Object invokeMeasured(
+        Method method, String httpMethod, String url, RequestParts requestParts)
+        throws IOException {
+      CircuitBreaker circuitBreaker =
+          context.getCircuitBreakers() == null
+              ? null
+              : context.getCircuitBreakers().circuitBreaker(resourceInterface, method, httpMethod);
+      MetricsRecorder metrics = context.getMetrics();
+      if (circuitBreaker == null && metrics == null) {
+        try (Http.Response response = exchange(method, httpMethod, url, requestParts)) {
+          return toReturnValue(method, response, requestParts.urlTemplate);
+        }
+      }
+
+      if (circuitBreaker != null) {
+        circuitBreaker.acquirePermission();
+      }
+      long start = System.nanoTime();
+      Http.Response response;
+      try {
+        response = exchange(method, httpMethod, url, requestParts);
+      } catch (Throwable t) {
+        long elapsed = System.nanoTime() - start;
+        if (circuitBreaker != null) {
+          circuitBreaker.onError(elapsed);
+        }
+        if (metrics != null) {
+          metrics.record(
+              Endpoint.of(resourceInterface, method),
+              new CallMetrics(-1, true, elapsed, 0, 0, -1, -1, -1));
+        }
+        throw t;
+      }
+      try (response) {
+        int status = response.getStatus();
+        long elapsed = System.nanoTime() - start;
+        if (circuitBreaker != null) {
+          circuitBreaker.onResult(status, elapsed);
+        }
+        if (metrics == null) {
+          return toReturnValue(method, response, requestParts.urlTemplate);
+        }
+        boolean failed = true;
+        long deserializeStart = System.nanoTime();
+        try {
+          Object value = toReturnValue(method, response, requestParts.urlTemplate);
+          failed = false;
+          return value;
+        } finally {
+          metrics.record(
+              Endpoint.of(resourceInterface, method),
+              new CallMetrics(
+                  status,
+                  failed,
+                  elapsed,
+                  response.getBytesSent(),
+                  response.getBytesReceived(),
+                  RequestTimings.leaseNanos(response.getContext()),
+                  RequestTimings.serverNanos(response.getContext()),
+                  System.nanoTime() - deserializeStart));
+        }
+      }
+    }
+
+    /**
+     * Sends the request and buffers the response, retrying once with a fresh token if the server
+     * rejects the current one.
+     */
+    private Http.Response exchange(
+        Method method, String httpMethod, String url, RequestParts requestParts)
+        throws IOException {
+      Supplier<String> tokenSupplier = context.getTokenSupplier();
+      Consumer<String> tokenInvalidator = context.getTokenInvalidator();
       String token = tokenSupplier == null ? null : tokenSupplier.get();
+      Http.Response response = send(method, httpMethod, url, requestParts, token);
+      if (response.getStatus() == 401
+          && tokenInvalidator != null
+          && token != null
+          && !token.isBlank()) {
+        response.close();
+        tokenInvalidator.accept(token);
+        response = send(method, httpMethod, url, requestParts, tokenSupplier.get());
+      }
+      requestParts.status = response.getStatus();
+      return response;
+    }
+
+    private Http.Response send(
+        Method method, String httpMethod, String url, RequestParts requestParts, String token)
+        throws IOException {
+      Hedger hedger = context.getHedger();
+      if (hedger != null && hedger.appliesTo(resourceInterface, method, httpMethod)) {
+        return hedger.execute(
+            method, attempt -> route(method, httpMethod, url, requestParts, token, attempt));
+      }
+      return route(method, httpMethod, url, requestParts, token, null);
+    }
+
+    private Http.Response route(
+        Method method,
+        String httpMethod,
+        String url,
+        RequestParts requestParts,
+        String token,
+        Hedger.Attempt attempt)
+        throws IOException {
+      LoadBalancer loadBalancer = context.getLoadBalancer();
+      if (loadBalancer == null) {
+        return dispatch(buildRequest(method, httpMethod, url, requestParts, token), attempt);
+      }
+      return loadBalancer.execute(
+          url,
+          realmOf(url),
+          LoadBalancer.isIdempotent(httpMethod),
+          attempt == null ? new HashSet<>() : attempt.triedNodes(),
+          target ->
+              dispatch(buildRequest(method, httpMethod, target, requestParts, token), attempt));
+    }
+
+    private static Http.Response dispatch(Http request, Hedger.Attempt attempt) throws IOException {
+      if (attempt != null) {
+        attempt.register(request);
+      }
+      return request.asResponse();
+    }
+
+    private Http buildRequest(
+        Method method, String httpMethod, String url, RequestParts requestParts, String token) {
+      Http request =
+          newRequest(httpMethod, url, requestParts).urlTemplate(requestParts.urlTemplate);
       if (token != null && !token.isBlank()) {
         request.auth(token);
       }
+      if (requestParts.span != null) {
+        requestParts.span.headers().forEach(request::header);
+      }
 
       String accept = resolveProduces(method);
       if (accept != null && !accept.isBlank()) {
@@ -173,60 +405,11 @@ public final class ResourceProxyFactory {
       } else if (isWriteMethod(httpMethod)) {
         request.entity(new StringEntity("", StandardCharsets.UTF_8));
       }
-
-      try (Http.Response response = request.asResponse()) {
-        if (response.getStatus() == 401
-            && tokenInvalidator != null
-            && token != null
-            && !token.isBlank()) {
-          tokenInvalidator.accept(token);
-          return retryWithFreshToken(method, httpMethod, url, requestParts);
-        }
-        return toReturnValue(method, response);
-      }
+      return request;
     }
 
-    private Object retryWithFreshToken(
-        Method method, String httpMethod, String url, RequestParts requestParts)
-        throws IOException {
-      Http retry = newRequest(httpMethod, url);
-      String freshToken = tokenSupplier == null ? null : tokenSupplier.get();
-      if (freshToken != null && !freshToken.isBlank()) {
-        retry.auth(freshToken);
-      }
-
-      String accept = resolveProduces(method);
-      if (accept != null && !accept.isBlank()) {
-        retry.header(HttpHeaders.ACCEPT, accept);
-      }
-
-      String contentType = resolveConsumes(method);
-      for (Map.Entry<String, String> query : requestParts.queryParams.entrySet()) {
-        retry.param(query.getKey(), query.getValue());
-      }
-      if (!requestParts.formParams.isEmpty()) {
-        for (Map.Entry<String, String> form : requestParts.formParams.entrySet()) {
-          retry.param(form.getKey(), form.getValue());
-        }
-      } else if (requestParts.body != null) {
-        if (MediaType.TEXT_PLAIN.equals(contentType)) {
-          retry.entity(new StringEntity(String.valueOf(requestParts.body), StandardCharsets.UTF_8));
-        } else {
-          if (contentType != null && !contentType.isBlank()) {
-            retry.header(HttpHeaders.CONTENT_TYPE, contentType);
-          }
-          retry.json(requestParts.body);
-        }
-      } else if (isWriteMethod(httpMethod)) {
-        retry.entity(new StringEntity("", StandardCharsets.UTF_8));
-      }
-
-      try (Http.Response response = retry.asResponse()) {
-        return toReturnValue(method, response);
-      }
-    }
-
-    private Http newRequest(String httpMethod, String url) {
+    private Http newRequest(String httpMethod, String url, RequestParts requestParts) {
+      HttpClient client = context.getClient();
       Http request =
           switch (httpMethod) {
             case "GET" -> Http.doGet(url, client);
@@ -238,12 +421,12 @@ public final class ResourceProxyFactory {
             default -> throw new IllegalStateException("Unsupported HTTP method " + httpMethod);
           };
       return request
-          .socketTimeout(socketTimeout)
-          .connectTimeout(connectTimeout)
-          .connectionRequestTimeout(connectionRequestTimeout);
+          .requestConfig(requestParts.timeouts.getRequestConfig(requestParts.deadline))
+          .responseLimits(context.getResponseLimits());
     }
 
-    private Object toReturnValue(Method method, Http.Response response) throws IOException {
+    private Object toReturnValue(Method method, Http.Response response, String urlTemplate)
+        throws IOException {
       int status = response.getStatus();
       if (status >= 400) {
         if (status == 400) {
@@ -261,20 +444,34 @@ public final class ResourceProxyFactory {
         return new SimpleResponse(
             response.getStatus(),
             response.getAllHeaders(),
-            response.asString(),
+            response.asBuffer(),
+            response.getContentTypeCharset(),
             contentType == null ? null : contentType.getMimeType());
       }
 
-      String body = response.asString();
-      if (body == null || body.isBlank()) {
+      ByteBuffer body = response.asBuffer();
+      if (SimpleResponse.isBlank(body)) {
         return null;
       }
       if (returnType == String.class) {
-        return body;
-      }
-      return JsonSerialization.mapper.readValue(
-          body,
-          JsonSerialization.mapper.getTypeFactory().constructType(method.getGenericReturnType()));
+        return response.asString();
+      }
+      DeserializationEvent event = new DeserializationEvent();
+      event.begin();
+      ObjectReader reader =
+          context.getStrings() == null && context.getRoles() == null
+              ? readerFor(method)
+              : JsonSerialization.reader(
+                  returnType(method), context.getStrings(), context.getRoles());
+      Object value = SimpleResponse.read(reader, body, response.getContentTypeCharset());
+      event.end();
+      if (event.shouldCommit()) {
+        event.urlTemplate = urlTemplate;
+        event.type = method.getGenericReturnType().getTypeName();
+        event.length = body.remaining();
+        event.commit();
+      }
+      return value;
     }
 
     private static String buildErrorMessage(int status, String body) {
@@ -410,6 +607,10 @@ public final class ResourceProxyFactory {
       return null;
     }
 
+    private String template(String methodPath) {
+      return joinPaths(joinPaths(baseTemplate, interfacePath), methodPath);
+    }
+
     private static String pathValue(Path path) {
       if (path == null || path.value().isBlank()) {
         return "";
@@ -449,5 +650,10 @@ public final class ResourceProxyFactory {
     private final Map<String, String> queryParams = new LinkedHashMap<>();
     private final Map<String, String> formParams = new LinkedHashMap<>();
     private Object body;
+    private TimeoutProfile timeouts;
+    private Deadline deadline;
+    private String urlTemplate;
+    private Span span;
+    private int status = -1;
   }
 }
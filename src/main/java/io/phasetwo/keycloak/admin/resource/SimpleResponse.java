@@ -1,46 +1,71 @@
 package io.phasetwo.keycloak.admin.resource;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import io.phasetwo.keycloak.admin.JsonSerialization;
+import jakarta.ws.rs.core.AbstractMultivaluedMap;
 import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.GenericType;
 import jakarta.ws.rs.core.Link;
 import jakarta.ws.rs.core.MediaType;
-import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.MultivaluedMap;
 import jakarta.ws.rs.core.NewCookie;
 import jakarta.ws.rs.core.Response;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
+import java.util.TreeMap;
 import org.apache.http.Header;
 
+/**
+ * The {@link Response} returned by proxy methods declared to return one. The body is kept as the
+ * bytes received and is only decoded or parsed when it is read. The value parsed last is kept, so
+ * reading the entity as the same type again returns the same instance. {@code
+ * readEntity(InputStream.class)} reads the bytes without copying them, as does {@code
+ * readEntity(byte[].class)} unless the body was spilled to a file by {@link
+ * io.phasetwo.keycloak.admin.ResponseLimits}. The header maps are built when they are first asked
+ * for.
+ */
 final class SimpleResponse extends Response {
 
   private final int status;
   private final StatusType statusType;
-  private final String entity;
+  private final ByteBuffer entity;
+  private final Charset charset;
   private final String contentType;
-  private final MultivaluedMap<String, Object> headers;
-
-  SimpleResponse(int status, Header[] responseHeaders, String entity, String contentType) {
+  private final Header[] responseHeaders;
+  private volatile String text;
+  private volatile Parsed parsed;
+  private volatile MultivaluedMap<String, Object> headers;
+
+  /** The value last read from the entity, and the type it was read as. */
+  private record Parsed(Type type, Object value) {}
+
+  SimpleResponse(
+      int status,
+      Header[] responseHeaders,
+      ByteBuffer entity,
+      Charset charset,
+      String contentType) {
     this.status = status;
     this.statusType = toStatusType(status);
     this.entity = entity;
+    this.charset = charset == null ? StandardCharsets.UTF_8 : charset;
     this.contentType = contentType;
-    this.headers = new MultivaluedHashMap<>();
-    if (responseHeaders != null) {
-      for (Header header : responseHeaders) {
-        headers.add(header.getName(), header.getValue());
-      }
-    }
+    this.responseHeaders = responseHeaders == null ? new Header[0] : responseHeaders;
   }
 
   @Override
@@ -55,7 +80,7 @@ final class SimpleResponse extends Response {
 
   @Override
   public Object getEntity() {
-    return entity;
+    return text();
   }
 
   @Override
@@ -75,31 +100,106 @@ final class SimpleResponse extends Response {
       return null;
     }
     if (entityType == String.class) {
-      return (T) entity;
+      return (T) text();
     }
-    try {
-      return JsonSerialization.mapper.readValue(entity, entityType);
-    } catch (IOException e) {
-      throw new IllegalStateException("Failed to read response entity", e);
+    if (entityType == InputStream.class) {
+      return (T) new ByteBufferBackedInputStream(entity.duplicate());
+    }
+    if (entityType == byte[].class) {
+      return (T) bytes();
     }
+    return (T) parse(entityType);
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public <T> T readEntity(GenericType<T> entityType, Annotation[] annotations) {
-    if (entity == null) {
-      return null;
+    Class<?> rawType = entityType.getRawType();
+    if (rawType == String.class || rawType == InputStream.class || rawType == byte[].class) {
+      return (T) readEntity(rawType, annotations);
+    }
+    return entity == null ? null : (T) parse(entityType.getType());
+  }
+
+  private Object parse(Type type) {
+    Parsed last = parsed;
+    if (last != null && last.type().equals(type)) {
+      return last.value();
     }
     try {
-      return JsonSerialization.mapper.readValue(
-          entity, JsonSerialization.mapper.getTypeFactory().constructType(entityType.getType()));
+      Object value = read(JsonSerialization.reader(type), entity, charset);
+      parsed = new Parsed(type, value);
+      return value;
     } catch (IOException e) {
       throw new IllegalStateException("Failed to read response entity", e);
     }
   }
 
+  private String text() {
+    String decoded = text;
+    if (decoded == null && entity != null) {
+      decoded =
+          entity.hasArray()
+              ? new String(
+                  entity.array(),
+                  entity.arrayOffset() + entity.position(),
+                  entity.remaining(),
+                  charset)
+              : charset.decode(entity.duplicate()).toString();
+      text = decoded;
+    }
+    return decoded;
+  }
+
+  private byte[] bytes() {
+    if (entity.hasArray()
+        && entity.arrayOffset() == 0
+        && entity.position() == 0
+        && entity.remaining() == entity.array().length) {
+      return entity.array();
+    }
+    byte[] bytes = new byte[entity.remaining()];
+    entity.duplicate().get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Reads {@code body} with {@code reader}, straight from the bytes if Jackson can detect the
+   * charset itself, and after decoding them otherwise.
+   */
+  static Object read(ObjectReader reader, ByteBuffer body, Charset charset) throws IOException {
+    if (!isUnicode(charset)) {
+      return reader.readValue(charset.decode(body.duplicate()).toString());
+    }
+    if (body.hasArray()) {
+      return reader.readValue(body.array(), body.arrayOffset() + body.position(), body.remaining());
+    }
+    return reader.readValue(new ByteBufferBackedInputStream(body.duplicate()));
+  }
+
+  private static boolean isUnicode(Charset charset) {
+    return charset.equals(StandardCharsets.UTF_8)
+        || charset.name().startsWith("UTF-16")
+        || charset.name().startsWith("UTF-32");
+  }
+
+  /** Whether {@code body} is missing or holds only ASCII whitespace. */
+  static boolean isBlank(ByteBuffer body) {
+    if (body == null) {
+      return true;
+    }
+    for (int i = body.position(); i < body.limit(); i++) {
+      byte b = body.get(i);
+      if (b != ' ' && b != '\t' && b != '\n' && b != '\r') {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public boolean hasEntity() {
-    return entity != null && !entity.isBlank();
+    return !isBlank(entity);
   }
 
   @Override
@@ -125,7 +225,7 @@ final class SimpleResponse extends Response {
 
   @Override
   public int getLength() {
-    return entity == null ? -1 : entity.length();
+    return entity == null ? -1 : entity.remaining();
   }
 
   @Override
@@ -191,33 +291,52 @@ final class SimpleResponse extends Response {
     throw new UnsupportedOperationException("Link headers are not supported");
   }
 
+  /**
+   * The response headers, built on first use. Header names are case-insensitive, and changes to the
+   * map are seen by {@link #getStringHeaders()} and {@link #getHeaderString(String)}.
+   */
   @Override
   public MultivaluedMap<String, Object> getMetadata() {
-    return headers;
+    MultivaluedMap<String, Object> map = headers;
+    if (map == null) {
+      map = caseInsensitive();
+      for (Header header : responseHeaders) {
+        map.add(header.getName(), header.getValue());
+      }
+      headers = map;
+    }
+    return map;
   }
 
+  /** A copy of {@link #getMetadata()} with every value as a string. */
   @Override
   public MultivaluedMap<String, String> getStringHeaders() {
-    MultivaluedMap<String, String> stringHeaders = new MultivaluedHashMap<>();
-    for (Map.Entry<String, List<Object>> entry : headers.entrySet()) {
-      for (Object value : entry.getValue()) {
-        stringHeaders.add(entry.getKey(), value == null ? null : String.valueOf(value));
-      }
-    }
-    return stringHeaders;
+    MultivaluedMap<String, String> map = caseInsensitive();
+    getMetadata()
+        .forEach(
+            (name, values) -> {
+              for (Object value : values) {
+                map.add(name, value == null ? null : String.valueOf(value));
+              }
+            });
+    return map;
   }
 
   @Override
   public String getHeaderString(String name) {
-    List<Object> values = headers.get(name);
+    List<Object> values = getMetadata().get(name);
     if (values == null || values.isEmpty()) {
       return null;
     }
-    Map<Integer, String> ordered = new LinkedHashMap<>();
-    for (int i = 0; i < values.size(); i++) {
-      ordered.put(i, values.get(i) == null ? "" : String.valueOf(values.get(i)));
+    StringJoiner joined = new StringJoiner(",");
+    for (Object value : values) {
+      joined.add(value == null ? "" : String.valueOf(value));
     }
-    return String.join(",", ordered.values());
+    return joined.toString();
+  }
+
+  private static <V> MultivaluedMap<String, V> caseInsensitive() {
+    return new AbstractMultivaluedMap<>(new TreeMap<>(String.CASE_INSENSITIVE_ORDER)) {};
   }
 
   private static StatusType toStatusType(int status) {
@@ -0,0 +1,250 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import io.phasetwo.keycloak.admin.Http;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import org.apache.http.impl.execchain.RequestAbortedException;
+
+/**
+ * Client-side load balancer over a fixed set of Keycloak nodes. Requests are built against the
+ * primary (first) server URL and rewritten to the node chosen by the {@link NodeSelector}. Nodes
+ * that fail repeatedly (I/O errors, 502, 503 or 504) are ejected for an exponentially growing
+ * period, and idempotent requests that fail that way are retried on another node. Requests
+ * cancelled through {@link Http#abort()} are neither retried nor held against the node.
+ */
+public final class LoadBalancer {
+
+  private final List<ServerNode> nodes;
+  private final String primaryUrl;
+  private final NodeSelector selector;
+  private final int ejectionThreshold;
+  private final long ejectionNanos;
+  private final long maxEjectionNanos;
+  private final int maxAttempts;
+
+  private LoadBalancer(Builder builder) {
+    List<ServerNode> nodes = new ArrayList<>();
+    for (String url : builder.serverUrls) {
+      nodes.add(new ServerNode(normalize(url)));
+    }
+    this.nodes = List.copyOf(nodes);
+    this.primaryUrl = this.nodes.get(0).getUrl();
+    this.selector = builder.selector.bind(this.nodes);
+    this.ejectionThreshold = builder.ejectionThreshold;
+    this.ejectionNanos = builder.ejectionDuration.toNanos();
+    this.maxEjectionNanos = builder.maxEjectionDuration.toNanos();
+    this.maxAttempts = builder.maxAttempts > 0 ? builder.maxAttempts : this.nodes.size();
+  }
+
+  public static Builder builder(List<String> serverUrls) {
+    return new Builder(serverUrls);
+  }
+
+  public static LoadBalancer of(List<String> serverUrls) {
+    return builder(serverUrls).build();
+  }
+
+  /** The URL that requests are built against before being routed to a node. */
+  public String getPrimaryUrl() {
+    return primaryUrl;
+  }
+
+  public List<ServerNode> getNodes() {
+    return nodes;
+  }
+
+  public List<ServerNode.Stats> getStats() {
+    List<ServerNode.Stats> stats = new ArrayList<>(nodes.size());
+    for (ServerNode node : nodes) {
+      stats.add(node.getStats());
+    }
+    return stats;
+  }
+
+  /** A single try of a request against a concrete node URL. */
+  @FunctionalInterface
+  public interface Attempt {
+    Http.Response call(String url) throws IOException;
+  }
+
+  public Http.Response execute(String url, boolean failover, Attempt attempt) throws IOException {
+    return execute(url, null, failover, attempt);
+  }
+
+  /**
+   * Sends a request through the balancer. The returned response has already been read, so its
+   * status is known and its connection released.
+   *
+   * @param url the request URL, built against {@link #getPrimaryUrl()}
+   * @param routingKey affinity key passed to the {@link NodeSelector}, may be {@code null}
+   * @param failover whether a failed attempt may be retried on another node
+   */
+  public Http.Response execute(String url, String routingKey, boolean failover, Attempt attempt)
+      throws IOException {
+    return execute(url, routingKey, failover, new HashSet<>(), attempt);
+  }
+
+  /**
+   * Same as {@link #execute(String, String, boolean, Attempt)}, but skips the nodes already in
+   * {@code tried} and adds every node it uses to it. Concurrent copies of one request share the set
+   * so that each goes to a different node; it must then be thread-safe.
+   */
+  public Http.Response execute(
+      String url, String routingKey, boolean failover, Set<ServerNode> tried, Attempt attempt)
+      throws IOException {
+    if (!isRoutable(url)) {
+      return attempt.call(url);
+    }
+    String path = url.substring(primaryUrl.length());
+    IOException lastError = null;
+    Http.Response lastResponse = null;
+    int attempts = failover ? maxAttempts : 1;
+    for (int i = 0; i < attempts; i++) {
+      ServerNode node = select(routingKey, tried);
+      if (node == null) {
+        break;
+      }
+      tried.add(node);
+      if (lastResponse != null) {
+        lastResponse.close();
+        lastResponse = null;
+      }
+      node.begin();
+      long start = System.nanoTime();
+      try {
+        Http.Response response = attempt.call(node.getUrl() + path);
+        int status = response.getStatus();
+        if (!isNodeFailure(status)) {
+          node.onSuccess(System.nanoTime() - start);
+          return response;
+        }
+        node.onFailure(ejectionThreshold, ejectionNanos, maxEjectionNanos);
+        lastResponse = response;
+      } catch (RequestAbortedException e) {
+        // cancelled by the caller, which says nothing about the node
+        throw e;
+      } catch (IOException e) {
+        node.onFailure(ejectionThreshold, ejectionNanos, maxEjectionNanos);
+        lastError = e;
+      } finally {
+        node.end();
+      }
+    }
+    if (lastResponse != null) {
+      return lastResponse;
+    }
+    if (lastError != null) {
+      throw lastError;
+    }
+    throw new IOException("No Keycloak node available for " + url);
+  }
+
+  /**
+   * Chooses a node that has not been tried yet, preferring nodes that are not ejected. When every
+   * untried node is ejected the one closest to being readmitted is used rather than failing.
+   */
+  ServerNode select(String routingKey, Collection<ServerNode> tried) {
+    long now = System.nanoTime();
+    List<ServerNode> candidates = new ArrayList<>(nodes.size());
+    ServerNode soonest = null;
+    for (ServerNode node : nodes) {
+      if (tried.contains(node)) {
+        continue;
+      }
+      if (node.isAvailable(now)) {
+        candidates.add(node);
+      } else if (soonest == null
+          || node.getEjectedUntilNanos() - soonest.getEjectedUntilNanos() < 0) {
+        soonest = node;
+      }
+    }
+    if (candidates.isEmpty()) {
+      return soonest;
+    }
+    return selector.select(candidates, routingKey);
+  }
+
+  private boolean isRoutable(String url) {
+    if (!url.startsWith(primaryUrl)) {
+      return false;
+    }
+    if (url.length() == primaryUrl.length()) {
+      return true;
+    }
+    char next = url.charAt(primaryUrl.length());
+    return next == '/' || next == '?';
+  }
+
+  public static boolean isIdempotent(String httpMethod) {
+    return switch (httpMethod) {
+      case "GET", "HEAD", "PUT", "DELETE", "OPTIONS" -> true;
+      default -> false;
+    };
+  }
+
+  private static boolean isNodeFailure(int status) {
+    return status == 502 || status == 503 || status == 504;
+  }
+
+  private static String normalize(String url) {
+    Objects.requireNonNull(url, "serverUrl");
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  public static final class Builder {
+    private final List<String> serverUrls;
+    private NodeSelector selector = PowerOfTwoChoices.INSTANCE;
+    private int ejectionThreshold = 3;
+    private Duration ejectionDuration = Duration.ofSeconds(10);
+    private Duration maxEjectionDuration = Duration.ofMinutes(5);
+    private int maxAttempts;
+
+    private Builder(List<String> serverUrls) {
+      if (serverUrls == null || serverUrls.isEmpty()) {
+        throw new IllegalArgumentException("at least one server URL is required");
+      }
+      this.serverUrls = List.copyOf(serverUrls);
+    }
+
+    public Builder selector(NodeSelector selector) {
+      this.selector = Objects.requireNonNull(selector, "selector");
+      return this;
+    }
+
+    /** Consecutive failures after which a node is ejected. */
+    public Builder ejectionThreshold(int ejectionThreshold) {
+      if (ejectionThreshold < 1) {
+        throw new IllegalArgumentException("ejectionThreshold must be at least 1");
+      }
+      this.ejectionThreshold = ejectionThreshold;
+      return this;
+    }
+
+    /** How long a node is ejected for the first time; doubled on each further ejection. */
+    public Builder ejectionDuration(Duration ejectionDuration) {
+      this.ejectionDuration = Objects.requireNonNull(ejectionDuration, "ejectionDuration");
+      return this;
+    }
+
+    public Builder maxEjectionDuration(Duration maxEjectionDuration) {
+      this.maxEjectionDuration = Objects.requireNonNull(maxEjectionDuration, "maxEjectionDuration");
+      return this;
+    }
+
+    /** Upper bound on tries per request when failing over; defaults to the number of nodes. */
+    public Builder maxAttempts(int maxAttempts) {
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    public LoadBalancer build() {
+      return new LoadBalancer(this);
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import java.util.List;
+
+/** Strategy used by a {@link LoadBalancer} to choose the node that serves a request. */
+@FunctionalInterface
+public interface NodeSelector {
+
+  /**
+   * Chooses a node for a request.
+   *
+   * @param candidates healthy nodes that have not yet been tried for this request; never empty
+   * @param routingKey the affinity key of the request (the realm name for realm-scoped calls), or
+   *     {@code null} if the request has none
+   * @return one of {@code candidates}
+   */
+  ServerNode select(List<ServerNode> candidates, String routingKey);
+
+  /**
+   * Called once by the {@link LoadBalancer} that uses this selector with its full, fixed node list.
+   * Selectors that keep per-node state return a new instance bound to these nodes; stateless
+   * selectors return themselves.
+   */
+  default NodeSelector bind(List<ServerNode> nodes) {
+    return this;
+  }
+}
@@ -0,0 +1,33 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks two candidates at random and keeps the one with fewer requests in flight, weighted by its
+ * recent latency. This avoids both the herding of "always least loaded" and the blindness of round
+ * robin, without any shared state beyond the per-node counters.
+ */
+public final class PowerOfTwoChoices implements NodeSelector {
+
+  public static final PowerOfTwoChoices INSTANCE = new PowerOfTwoChoices();
+
+  private PowerOfTwoChoices() {}
+
+  @Override
+  public ServerNode select(List<ServerNode> candidates, String routingKey) {
+    int size = candidates.size();
+    if (size == 1) {
+      return candidates.get(0);
+    }
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int first = random.nextInt(size);
+    int second = random.nextInt(size - 1);
+    if (second >= first) {
+      second++;
+    }
+    ServerNode a = candidates.get(first);
+    ServerNode b = candidates.get(second);
+    return a.score() <= b.score() ? a : b;
+  }
+}
@@ -0,0 +1,120 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Routes every request for the same realm to the same node, so that the realm, client and user
+ * entries that Keycloak caches locally on that node are hit instead of being loaded on every node.
+ *
+ * <p>Realms are placed on a consistent hash ring with virtual nodes, so ejecting or readmitting a
+ * node only moves the realms owned by that node. Load is bounded as described in "Consistent
+ * Hashing with Bounded Loads" (Mirrokni, Thorup, Zadimoghaddam): a node whose in-flight count would
+ * exceed {@code loadFactor} times the average is skipped and the next node on the ring takes the
+ * request, so a single hot realm cannot overload its home node. Requests without a realm are
+ * delegated to {@link PowerOfTwoChoices}.
+ */
+public final class RealmAffinity implements NodeSelector {
+
+  private static final int DEFAULT_VIRTUAL_NODES = 160;
+  private static final double DEFAULT_LOAD_FACTOR = 1.25;
+
+  private final int virtualNodes;
+  private final double loadFactor;
+  private final List<ServerNode> nodes;
+  private final long[] ring;
+  private final ServerNode[] owners;
+
+  public RealmAffinity() {
+    this(DEFAULT_VIRTUAL_NODES, DEFAULT_LOAD_FACTOR);
+  }
+
+  /**
+   * @param virtualNodes ring positions per node; more positions spread realms more evenly
+   * @param loadFactor how far above the average in-flight count a node may go before requests spill
+   *     to the next node on the ring; must be greater than 1
+   */
+  public RealmAffinity(int virtualNodes, double loadFactor) {
+    this(virtualNodes, loadFactor, List.of());
+  }
+
+  private RealmAffinity(int virtualNodes, double loadFactor, List<ServerNode> nodes) {
+    if (virtualNodes < 1) {
+      throw new IllegalArgumentException("virtualNodes must be at least 1");
+    }
+    if (!(loadFactor > 1.0)) {
+      throw new IllegalArgumentException("loadFactor must be greater than 1");
+    }
+    this.virtualNodes = virtualNodes;
+    this.loadFactor = loadFactor;
+    this.nodes = nodes;
+
+    int size = nodes.size() * virtualNodes;
+    long[][] points = new long[size][2];
+    int i = 0;
+    for (int n = 0; n < nodes.size(); n++) {
+      for (int v = 0; v < virtualNodes; v++) {
+        points[i][0] = hash(nodes.get(n).getUrl() + "#" + v);
+        points[i][1] = n;
+        i++;
+      }
+    }
+    Arrays.sort(points, (a, b) -> Long.compare(a[0], b[0]));
+    this.ring = new long[size];
+    this.owners = new ServerNode[size];
+    for (int p = 0; p < size; p++) {
+      ring[p] = points[p][0];
+      owners[p] = nodes.get((int) points[p][1]);
+    }
+  }
+
+  @Override
+  public NodeSelector bind(List<ServerNode> nodes) {
+    return new RealmAffinity(virtualNodes, loadFactor, List.copyOf(nodes));
+  }
+
+  @Override
+  public ServerNode select(List<ServerNode> candidates, String routingKey) {
+    if (routingKey == null || ring.length == 0 || candidates.size() == 1) {
+      return PowerOfTwoChoices.INSTANCE.select(candidates, routingKey);
+    }
+
+    long totalInFlight = 0;
+    for (ServerNode node : nodes) {
+      totalInFlight += node.getInFlight();
+    }
+    double capacity = Math.ceil(loadFactor * (totalInFlight + 1) / candidates.size());
+
+    int start = Arrays.binarySearch(ring, hash(routingKey));
+    if (start < 0) {
+      start = -start - 1;
+    }
+    ServerNode leastLoaded = null;
+    for (int i = 0; i < ring.length; i++) {
+      ServerNode owner = owners[(start + i) % ring.length];
+      if (!candidates.contains(owner)) {
+        continue;
+      }
+      if (owner.getInFlight() + 1 <= capacity) {
+        return owner;
+      }
+      if (leastLoaded == null || owner.getInFlight() < leastLoaded.getInFlight()) {
+        leastLoaded = owner;
+      }
+    }
+    return leastLoaded != null ? leastLoaded : candidates.get(0);
+  }
+
+  /** 64-bit FNV-1a over the UTF-8 bytes, finished with the SplitMix64 mixer for dispersion. */
+  static long hash(String key) {
+    long h = 0xcbf29ce484222325L;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      h ^= b & 0xff;
+      h *= 0x100000001b3L;
+    }
+    h = (h ^ (h >>> 30)) * 0xbf58476d1ce4e5b9L;
+    h = (h ^ (h >>> 27)) * 0x94d049bb133111ebL;
+    return h ^ (h >>> 31);
+  }
+}
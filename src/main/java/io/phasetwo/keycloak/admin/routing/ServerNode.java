@@ -0,0 +1,125 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One Keycloak node behind a {@link LoadBalancer}, with the passive health and load signals used to
+ * pick between nodes: the number of requests currently in flight, an exponentially weighted moving
+ * average of response latency, and the consecutive failures that lead to ejection.
+ */
+public final class ServerNode {
+
+  private static final double EWMA_WEIGHT = 0.2;
+
+  private final String url;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicInteger consecutiveEjections = new AtomicInteger();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private final AtomicLong ejections = new AtomicLong();
+  private volatile long latencyEwmaNanos;
+  private volatile long ejectedUntilNanos;
+  // nanoTime() may be negative, so an ejectedUntilNanos of 0 cannot mean "never ejected"
+  private volatile boolean ejected;
+
+  ServerNode(String url) {
+    this.url = url;
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getLatencyEwmaNanos() {
+    return latencyEwmaNanos;
+  }
+
+  /** Whether the node is currently serving traffic, i.e. not ejected. */
+  public boolean isAvailable() {
+    return isAvailable(System.nanoTime());
+  }
+
+  boolean isAvailable(long nowNanos) {
+    return !ejected || ejectedUntilNanos - nowNanos <= 0;
+  }
+
+  long getEjectedUntilNanos() {
+    return ejectedUntilNanos;
+  }
+
+  /** Selection score: lower is better. Combines queue depth with recent latency. */
+  long score() {
+    return (inFlight.get() + 1L) * Math.max(latencyEwmaNanos, 1L);
+  }
+
+  void begin() {
+    inFlight.incrementAndGet();
+    requests.incrementAndGet();
+  }
+
+  void end() {
+    inFlight.decrementAndGet();
+  }
+
+  void onSuccess(long latencyNanos) {
+    long previous = latencyEwmaNanos;
+    latencyEwmaNanos =
+        previous == 0 ? latencyNanos : (long) (previous + EWMA_WEIGHT * (latencyNanos - previous));
+    consecutiveFailures.set(0);
+    consecutiveEjections.set(0);
+  }
+
+  /**
+   * @return {@code true} if this failure caused the node to be ejected
+   */
+  boolean onFailure(int ejectionThreshold, long baseEjectionNanos, long maxEjectionNanos) {
+    failures.incrementAndGet();
+    if (consecutiveFailures.incrementAndGet() < ejectionThreshold) {
+      return false;
+    }
+    consecutiveFailures.set(0);
+    int exponent = Math.min(consecutiveEjections.getAndIncrement(), 30);
+    long duration = Math.min(baseEjectionNanos << exponent, maxEjectionNanos);
+    if (duration <= 0) {
+      duration = maxEjectionNanos;
+    }
+    ejectedUntilNanos = System.nanoTime() + duration;
+    ejected = true;
+    ejections.incrementAndGet();
+    return true;
+  }
+
+  public Stats getStats() {
+    long now = System.nanoTime();
+    return new Stats(
+        url,
+        isAvailable(now),
+        inFlight.get(),
+        TimeUnit.NANOSECONDS.toMicros(latencyEwmaNanos),
+        requests.get(),
+        failures.get(),
+        ejections.get());
+  }
+
+  @Override
+  public String toString() {
+    return "ServerNode(" + url + ")";
+  }
+
+  /** Point-in-time view of a node's health and load. */
+  public record Stats(
+      String url,
+      boolean available,
+      int inFlight,
+      long latencyEwmaMicros,
+      long requests,
+      long failures,
+      long ejections) {}
+}
@@ -0,0 +1,107 @@
+package io.phasetwo.keycloak.admin.timeout;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A point in time by which a group of calls must complete. While a deadline is {@link #open() open}
+ * on a thread, every proxied call made from that thread, including token requests, fails fast with
+ * {@link DeadlineExceededException} once the deadline has passed, and has its timeouts capped at
+ * the time remaining.
+ *
+ * <pre>{@code
+ * UserRepresentation user =
+ *     Deadline.after(Duration.ofSeconds(2)).call(() -> users.get(id).toRepresentation());
+ * }</pre>
+ */
+public final class Deadline {
+
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+  private final Duration timeout;
+
+  private Deadline(long deadlineNanos, Duration timeout) {
+    this.deadlineNanos = deadlineNanos;
+    this.timeout = timeout;
+  }
+
+  public static Deadline after(Duration timeout) {
+    Objects.requireNonNull(timeout, "timeout");
+    return new Deadline(System.nanoTime() + timeout.toNanos(), timeout);
+  }
+
+  /**
+   * @return the deadline open on the current thread, or {@code null} if there is none
+   */
+  public static Deadline current() {
+    return CURRENT.get();
+  }
+
+  public Duration remaining() {
+    return Duration.ofNanos(deadlineNanos - System.nanoTime());
+  }
+
+  long remainingMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /** The timeout this deadline was created with. */
+  public Duration getTimeout() {
+    return timeout;
+  }
+
+  /**
+   * Makes this deadline current on the calling thread until the returned scope is closed. When a
+   * deadline is already open, the earlier of the two applies.
+   */
+  public Scope open() {
+    Deadline previous = CURRENT.get();
+    Deadline effective =
+        previous != null && previous.deadlineNanos - deadlineNanos < 0 ? previous : this;
+    CURRENT.set(effective);
+    return new Scope(previous);
+  }
+
+  /** Runs {@code call} with this deadline open. */
+  public <T> T call(Supplier<T> call) {
+    try (Scope ignored = open()) {
+      return call.get();
+    }
+  }
+
+  public void run(Runnable call) {
+    try (Scope ignored = open()) {
+      call.run();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline(" + timeout + ", remaining " + remaining() + ")";
+  }
+
+  /** Restores the previously open deadline when closed. */
+  public static final class Scope implements AutoCloseable {
+    private final Deadline previous;
+
+    private Scope(Deadline previous) {
+      this.previous = previous;
+    }
+
+    @Override
+    public void close() {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package io.phasetwo.keycloak.admin.timeout;
+
+import java.time.Duration;
+
+/** Thrown instead of sending a request when the caller's {@link Deadline} has already passed. */
+public class DeadlineExceededException extends RuntimeException {
+
+  private final Duration timeout;
+
+  public DeadlineExceededException(Deadline deadline) {
+    super("Deadline of " + deadline.getTimeout() + " exceeded");
+    this.timeout = deadline.getTimeout();
+  }
+
+  /** The timeout of the deadline that was exceeded. */
+  public Duration getTimeout() {
+    return timeout;
+  }
+}
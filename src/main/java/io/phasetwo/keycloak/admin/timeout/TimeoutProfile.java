@@ -0,0 +1,125 @@
+package io.phasetwo.keycloak.admin.timeout;
+
+import java.time.Duration;
+import java.util.Objects;
+import org.apache.http.client.config.RequestConfig;
+
+/**
+ * Socket, connect and connection request timeouts for a group of calls. The {@link RequestConfig}
+ * is built once when the profile is created, not on every request. Timeouts left unset are taken
+ * from the client-wide defaults when the profile is registered in {@link TimeoutProfiles}.
+ */
+public final class TimeoutProfile {
+
+  private final Duration socketTimeout;
+  private final Duration connectTimeout;
+  private final Duration connectionRequestTimeout;
+  private final RequestConfig requestConfig;
+
+  private TimeoutProfile(
+      Duration socketTimeout, Duration connectTimeout, Duration connectionRequestTimeout) {
+    this.socketTimeout = socketTimeout;
+    this.connectTimeout = connectTimeout;
+    this.connectionRequestTimeout = connectionRequestTimeout;
+    this.requestConfig =
+        toRequestConfig(
+            toMillis(socketTimeout), toMillis(connectTimeout), toMillis(connectionRequestTimeout));
+  }
+
+  public static TimeoutProfile of(
+      Duration socketTimeout, Duration connectTimeout, Duration connectionRequestTimeout) {
+    return new TimeoutProfile(socketTimeout, connectTimeout, connectionRequestTimeout);
+  }
+
+  /** A profile that only sets the socket (read) timeout. */
+  public static TimeoutProfile ofSocketTimeout(Duration socketTimeout) {
+    return new TimeoutProfile(Objects.requireNonNull(socketTimeout, "socketTimeout"), null, null);
+  }
+
+  public Duration getSocketTimeout() {
+    return socketTimeout;
+  }
+
+  public Duration getConnectTimeout() {
+    return connectTimeout;
+  }
+
+  public Duration getConnectionRequestTimeout() {
+    return connectionRequestTimeout;
+  }
+
+  public RequestConfig getRequestConfig() {
+    return requestConfig;
+  }
+
+  /**
+   * The request config for a call that must finish by {@code deadline}: every timeout is capped at
+   * the time remaining. Returns the precomputed config when there is no deadline.
+   *
+   * @throws DeadlineExceededException if the deadline has already passed
+   */
+  public RequestConfig getRequestConfig(Deadline deadline) {
+    if (deadline == null) {
+      return requestConfig;
+    }
+    long remaining = deadline.remainingMillis();
+    if (remaining <= 0) {
+      throw new DeadlineExceededException(deadline);
+    }
+    int socket = cap(requestConfig.getSocketTimeout(), remaining);
+    int connect = cap(requestConfig.getConnectTimeout(), remaining);
+    int connectionRequest = cap(requestConfig.getConnectionRequestTimeout(), remaining);
+    if (socket == requestConfig.getSocketTimeout()
+        && connect == requestConfig.getConnectTimeout()
+        && connectionRequest == requestConfig.getConnectionRequestTimeout()) {
+      return requestConfig;
+    }
+    return toRequestConfig(socket, connect, connectionRequest);
+  }
+
+  /** Returns a profile with the timeouts not set here taken from {@code fallback}. */
+  public TimeoutProfile withFallback(TimeoutProfile fallback) {
+    if (fallback == null
+        || (socketTimeout != null && connectTimeout != null && connectionRequestTimeout != null)) {
+      return this;
+    }
+    return new TimeoutProfile(
+        socketTimeout != null ? socketTimeout : fallback.socketTimeout,
+        connectTimeout != null ? connectTimeout : fallback.connectTimeout,
+        connectionRequestTimeout != null
+            ? connectionRequestTimeout
+            : fallback.connectionRequestTimeout);
+  }
+
+  @Override
+  public String toString() {
+    return "TimeoutProfile(socket="
+        + socketTimeout
+        + ", connect="
+        + connectTimeout
+        + ", connectionRequest="
+        + connectionRequestTimeout
+        + ")";
+  }
+
+  private static int cap(int timeoutMillis, long remainingMillis) {
+    // 0 means no timeout and -1 the client default; both are replaced by the time remaining
+    if (timeoutMillis > 0 && timeoutMillis <= remainingMillis) {
+      return timeoutMillis;
+    }
+    return (int) Math.min(remainingMillis, Integer.MAX_VALUE);
+  }
+
+  private static int toMillis(Duration timeout) {
+    return timeout == null ? -1 : (int) Math.min(timeout.toMillis(), Integer.MAX_VALUE);
+  }
+
+  private static RequestConfig toRequestConfig(
+      int socketMillis, int connectMillis, int connectionRequestMillis) {
+    return RequestConfig.custom()
+        .setSocketTimeout(socketMillis)
+        .setConnectTimeout(connectMillis)
+        .setConnectionRequestTimeout(connectionRequestMillis)
+        .build();
+  }
+}
@@ -0,0 +1,175 @@
+package io.phasetwo.keycloak.admin.timeout;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Chooses the {@link TimeoutProfile} for each proxied call, so that e.g. user lookups can time out
+ * after a second while realm exports get several minutes. Rules are matched from the most to the
+ * least specific: resource method, resource interface, URL pattern (in the order they were added),
+ * then the default profile. Method and interface matches are cached per resource method.
+ */
+public final class TimeoutProfiles {
+
+  private final TimeoutProfile defaultProfile;
+  private final Map<Class<?>, Map<String, TimeoutProfile>> methodRules;
+  private final Map<Class<?>, TimeoutProfile> resourceRules;
+  private final List<UrlRule> urlRules;
+  private final Map<Class<?>, Map<Method, Optional<TimeoutProfile>>> resolved =
+      new ConcurrentHashMap<>();
+  private final LongAdder cacheLookups = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+
+  private TimeoutProfiles(
+      TimeoutProfile defaultProfile,
+      Map<Class<?>, Map<String, TimeoutProfile>> methodRules,
+      Map<Class<?>, TimeoutProfile> resourceRules,
+      List<UrlRule> urlRules) {
+    this.defaultProfile = defaultProfile;
+    this.methodRules = methodRules;
+    this.resourceRules = resourceRules;
+    this.urlRules = urlRules;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Profiles that use {@code defaultProfile} for every call. */
+  public static TimeoutProfiles of(TimeoutProfile defaultProfile) {
+    return builder().defaultProfile(defaultProfile).build();
+  }
+
+  public TimeoutProfile getDefaultProfile() {
+    return defaultProfile;
+  }
+
+  /**
+   * Returns a copy in which every timeout that is not set by a profile is taken from {@code
+   * fallback}, normally the client-wide timeouts. The default profile becomes {@code fallback} if
+   * none was set.
+   */
+  public TimeoutProfiles withFallback(TimeoutProfile fallback) {
+    TimeoutProfile base = defaultProfile == null ? fallback : defaultProfile.withFallback(fallback);
+    Map<Class<?>, Map<String, TimeoutProfile>> methods = new LinkedHashMap<>();
+    methodRules.forEach(
+        (type, byName) -> {
+          Map<String, TimeoutProfile> merged = new LinkedHashMap<>();
+          byName.forEach((name, profile) -> merged.put(name, profile.withFallback(base)));
+          methods.put(type, Map.copyOf(merged));
+        });
+    Map<Class<?>, TimeoutProfile> resources = new LinkedHashMap<>();
+    resourceRules.forEach((type, profile) -> resources.put(type, profile.withFallback(base)));
+    List<UrlRule> urls = new ArrayList<>();
+    for (UrlRule rule : urlRules) {
+      urls.add(new UrlRule(rule.pattern(), rule.profile().withFallback(base)));
+    }
+    return new TimeoutProfiles(base, Map.copyOf(methods), Map.copyOf(resources), List.copyOf(urls));
+  }
+
+  /**
+   * @param resource the resource interface the call is made through
+   * @param method the invoked resource method
+   * @param url the request URL, matched against URL pattern rules
+   */
+  public TimeoutProfile resolve(Class<?> resource, Method method, String url) {
+    cacheLookups.increment();
+    Optional<TimeoutProfile> byType =
+        resolved
+            .computeIfAbsent(resource, k -> new ConcurrentHashMap<>())
+            .computeIfAbsent(
+                method,
+                m -> {
+                  cacheMisses.increment();
+                  return Optional.ofNullable(matchType(resource, m));
+                });
+    if (byType.isPresent()) {
+      return byType.get();
+    }
+    for (UrlRule rule : urlRules) {
+      if (rule.pattern().matcher(url).find()) {
+        return rule.profile();
+      }
+    }
+    return defaultProfile;
+  }
+
+  /** Lookups of the per-method rule cache that found an entry. */
+  public long getCacheHits() {
+    return Math.max(0, cacheLookups.sum() - cacheMisses.sum());
+  }
+
+  /** Lookups of the per-method rule cache that had to match the rules. */
+  public long getCacheMisses() {
+    return cacheMisses.sum();
+  }
+
+  private TimeoutProfile matchType(Class<?> resource, Method method) {
+    Map<String, TimeoutProfile> byName = methodRules.get(resource);
+    if (byName == null) {
+      byName = methodRules.get(method.getDeclaringClass());
+    }
+    if (byName != null && byName.containsKey(method.getName())) {
+      return byName.get(method.getName());
+    }
+    TimeoutProfile profile = resourceRules.get(resource);
+    return profile != null ? profile : resourceRules.get(method.getDeclaringClass());
+  }
+
+  private record UrlRule(Pattern pattern, TimeoutProfile profile) {}
+
+  public static final class Builder {
+    private TimeoutProfile defaultProfile;
+    private final Map<Class<?>, Map<String, TimeoutProfile>> methodRules = new LinkedHashMap<>();
+    private final Map<Class<?>, TimeoutProfile> resourceRules = new LinkedHashMap<>();
+    private final List<UrlRule> urlRules = new ArrayList<>();
+
+    private Builder() {}
+
+    /** Profile for calls that match no rule; defaults to the client-wide timeouts. */
+    public Builder defaultProfile(TimeoutProfile defaultProfile) {
+      this.defaultProfile = defaultProfile;
+      return this;
+    }
+
+    /** Applies {@code profile} to every call made through {@code resource}. */
+    public Builder resource(Class<?> resource, TimeoutProfile profile) {
+      resourceRules.put(
+          Objects.requireNonNull(resource, "resource"), Objects.requireNonNull(profile, "profile"));
+      return this;
+    }
+
+    /**
+     * Applies {@code profile} to the methods of {@code resource} with the given name, e.g. {@code
+     * method(RealmResource.class, "partialExport", exports)}.
+     */
+    public Builder method(Class<?> resource, String methodName, TimeoutProfile profile) {
+      Objects.requireNonNull(resource, "resource");
+      Objects.requireNonNull(methodName, "methodName");
+      Objects.requireNonNull(profile, "profile");
+      methodRules.computeIfAbsent(resource, k -> new LinkedHashMap<>()).put(methodName, profile);
+      return this;
+    }
+
+    /** Applies {@code profile} to calls whose URL contains a match for {@code regex}. */
+    public Builder urlPattern(String regex, TimeoutProfile profile) {
+      urlRules.add(new UrlRule(Pattern.compile(regex), Objects.requireNonNull(profile, "profile")));
+      return this;
+    }
+
+    public TimeoutProfiles build() {
+      Map<Class<?>, Map<String, TimeoutProfile>> methods = new LinkedHashMap<>();
+      methodRules.forEach((type, byName) -> methods.put(type, Map.copyOf(byName)));
+      return new TimeoutProfiles(
+          defaultProfile, Map.copyOf(methods), Map.copyOf(resourceRules), List.copyOf(urlRules));
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package io.phasetwo.keycloak.admin.tracing;
+
+import java.util.Map;
+
+/** A traced admin or token call, as returned by {@link Tracer#startSpan}. */
+public interface Span {
+
+  Span NOOP =
+      new Span() {
+        @Override
+        public Map<String, String> headers() {
+          return Map.of();
+        }
+
+        @Override
+        public void end(int status, Throwable error) {}
+      };
+
+  /**
+   * Headers to add to every request sent for this span, e.g. {@code traceparent} and {@code
+   * tracestate}. Called once per HTTP request, possibly from another thread when requests are
+   * hedged.
+   */
+  Map<String, String> headers();
+
+  /**
+   * Ends the span. Called exactly once, on the calling thread.
+   *
+   * @param status the HTTP status of the final response, or {@code -1} if there was none
+   * @param error the exception the call failed with, or {@code null} if it succeeded
+   */
+  void end(int status, Throwable error);
+}
@@ -0,0 +1,22 @@
+package io.phasetwo.keycloak.admin.tracing;
+
+import java.lang.reflect.Method;
+
+/**
+ * What is known about a call when its span starts.
+ *
+ * @param name low-cardinality span name, e.g. {@code UserResource.toRepresentation} or {@code
+ *     TokenService.grant}
+ * @param httpMethod the HTTP method
+ * @param urlTemplate the URL path with IDs left as {@code {name}} placeholders
+ * @param url the full request URL
+ * @param resource the resource interface, or {@code null} for token calls
+ * @param method the resource method, or {@code null} for token calls
+ */
+public record SpanInfo(
+    String name,
+    String httpMethod,
+    String urlTemplate,
+    String url,
+    Class<?> resource,
+    Method method) {}
@@ -0,0 +1,106 @@
+package io.phasetwo.keycloak.admin.tracing;
+
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A W3C Trace Context {@code traceparent} value: version {@code 00}, a 16 byte trace ID, an 8 byte
+ * parent (span) ID and the trace flags, e.g. {@code
+ * 00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01}.
+ *
+ * @see <a href="https://www.w3.org/TR/trace-context/">Trace Context</a>
+ */
+public record TraceParent(String traceId, String spanId, boolean sampled) {
+
+  public static final String HEADER = "traceparent";
+
+  public TraceParent {
+    if (!isHex(traceId, 32) || traceId.equals("0".repeat(32))) {
+      throw new IllegalArgumentException("traceId must be 32 lowercase hex digits, not all zero");
+    }
+    if (!isHex(spanId, 16) || spanId.equals("0".repeat(16))) {
+      throw new IllegalArgumentException("spanId must be 16 lowercase hex digits, not all zero");
+    }
+  }
+
+  /** Starts a new, sampled trace. */
+  public static TraceParent newTrace() {
+    return new TraceParent(randomHex(32), randomHex(16), true);
+  }
+
+  /** A new span in the same trace, with this span as its parent. */
+  public TraceParent child() {
+    return new TraceParent(traceId, randomHex(16), sampled);
+  }
+
+  /**
+   * Parses a {@code traceparent} header value.
+   *
+   * @return the parsed value, or {@code null} if the header is missing or malformed
+   */
+  public static TraceParent parse(String header) {
+    if (header == null) {
+      return null;
+    }
+    String value = header.trim();
+    if (value.length() < 55
+        || value.charAt(2) != '-'
+        || value.charAt(35) != '-'
+        || value.charAt(52) != '-') {
+      return null;
+    }
+    String version = value.substring(0, 2);
+    if (!isHex(version, 2)
+        || version.equals("ff")
+        || (version.equals("00") && value.length() != 55)) {
+      return null;
+    }
+    String flags = value.substring(53, 55);
+    if (!isHex(flags, 2)) {
+      return null;
+    }
+    try {
+      return new TraceParent(
+          value.substring(3, 35), value.substring(36, 52), (Integer.parseInt(flags, 16) & 1) == 1);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public String toHeader() {
+    return "00-" + traceId + "-" + spanId + (sampled ? "-01" : "-00");
+  }
+
+  @Override
+  public String toString() {
+    return toHeader();
+  }
+
+  private static boolean isHex(String value, int length) {
+    Objects.requireNonNull(value);
+    if (value.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String randomHex(int digits) {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    StringBuilder hex = new StringBuilder(digits);
+    while (hex.length() < digits) {
+      long bits = random.nextLong();
+      if (bits == 0) {
+        continue;
+      }
+      String chunk = Long.toHexString(bits);
+      hex.append("0".repeat(16 - chunk.length())).append(chunk);
+    }
+    return hex.substring(0, digits);
+  }
+}
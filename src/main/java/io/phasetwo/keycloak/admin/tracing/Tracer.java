@@ -0,0 +1,46 @@
+package io.phasetwo.keycloak.admin.tracing;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hook for distributed tracing that keeps this library free of any tracing dependency. The client
+ * calls {@link #startSpan} before each admin or token call, adds the span's {@link Span#headers()
+ * headers} to every HTTP request made for the call (including retries, failover and hedges), and
+ * {@link Span#end ends} the span when the call completes. An adapter to OpenTelemetry or another
+ * tracing library is a few lines; {@link TraceParent} helps with W3C propagation when there is
+ * none.
+ */
+@FunctionalInterface
+public interface Tracer {
+
+  /**
+   * Called on the calling thread before a call is sent, so that implementations can pick up the
+   * caller's current span as the parent.
+   *
+   * @return the span covering the call; never {@code null}, use {@link Span#NOOP} to skip a call
+   */
+  Span startSpan(SpanInfo info);
+
+  /**
+   * A tracer that records nothing itself but propagates W3C trace context: each call gets a new
+   * span ID in the caller's trace, or starts a new trace if {@code currentParent} returns {@code
+   * null}. Useful when the application tracks trace context itself, e.g. from incoming headers.
+   */
+  static Tracer w3c(Supplier<TraceParent> currentParent) {
+    return info -> {
+      TraceParent parent = currentParent.get();
+      TraceParent span = parent == null ? TraceParent.newTrace() : parent.child();
+      Map<String, String> headers = Map.of(TraceParent.HEADER, span.toHeader());
+      return new Span() {
+        @Override
+        public Map<String, String> headers() {
+          return headers;
+        }
+
+        @Override
+        public void end(int status, Throwable error) {}
+      };
+    };
+  }
+}
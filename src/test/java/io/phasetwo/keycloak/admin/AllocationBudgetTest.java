@@ -0,0 +1,114 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Fails when the bytes allocated by a proxied call grow beyond the budget checked in to {@code
+ * allocation-budgets.properties}. Only the calling thread is measured, which is where the client
+ * does its work; the stub server's threads are not counted.
+ *
+ * <p>When a change lowers allocations, lower the budget so the gain is kept: set it to 0 and the
+ * failure message gives the measured figure. When a change has to raise them, raise the budget in
+ * the same commit and say why.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+class AllocationBudgetTest {
+
+  private static final int WARMUP_CALLS = 2_000;
+  private static final int MEASURED_CALLS = 500;
+
+  private com.sun.management.ThreadMXBean threads;
+  private Properties budgets;
+  private KeycloakStub stub;
+  private Keycloak keycloak;
+  private String userId;
+
+  @BeforeAll
+  void setUp() throws IOException {
+    Assumptions.assumeTrue(
+        ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+        "per-thread allocation counters are not available on this JVM");
+    threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    budgets = new Properties();
+    try (InputStream in = getClass().getResourceAsStream("allocation-budgets.properties")) {
+      assertNotNull(in, "allocation-budgets.properties not found");
+      budgets.load(in);
+    }
+    stub = KeycloakStub.builder().users(100).roles(10).start();
+    userId = stub.getUserIds().get(0);
+    keycloak =
+        KeycloakBuilder.builder()
+            .serverUrl(stub.getUrl())
+            .realm(stub.getRealm())
+            .grantType(CLIENT_CREDENTIALS)
+            .clientId("admin-cli")
+            .clientSecret("secret")
+            .build();
+  }
+
+  @AfterAll
+  void tearDown() {
+    if (keycloak != null) {
+      keycloak.close();
+    }
+    if (stub != null) {
+      stub.close();
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"proxy", "lookup", "search", "roleMappings"})
+  void staysWithinBudget(String operation) {
+    Runnable call =
+        switch (operation) {
+          case "proxy" -> () -> keycloak.realm(stub.getRealm()).users().get(userId);
+          case "lookup" ->
+              () -> keycloak.realm(stub.getRealm()).users().get(userId).toRepresentation();
+          case "search" -> () -> keycloak.realm(stub.getRealm()).users().search("user", 0, 20);
+          case "roleMappings" ->
+              () ->
+                  keycloak
+                      .realm(stub.getRealm())
+                      .users()
+                      .get(userId)
+                      .roles()
+                      .realmLevel()
+                      .listEffective();
+          default -> throw new IllegalArgumentException(operation);
+        };
+    for (int i = 0; i < WARMUP_CALLS; i++) {
+      call.run();
+    }
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < MEASURED_CALLS; i++) {
+      call.run();
+    }
+    long perCall = (threads.getCurrentThreadAllocatedBytes() - before) / MEASURED_CALLS;
+
+    long budget = Long.parseLong(budgets.getProperty(operation));
+    double tolerance = Double.parseDouble(budgets.getProperty("tolerance"));
+    assertTrue(
+        perCall <= budget * (1 + tolerance),
+        String.format(
+            "%s allocates %,d bytes per call, over its budget of %,d bytes + %.0f%%",
+            operation, perCall, budget, tolerance * 100));
+  }
+}
@@ -0,0 +1,80 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.ClientRepresentation;
+import org.keycloak.representations.idm.ProtocolMapperRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/**
+ * Runs in a surefire execution of its own, with {@code jackson-module-blackbird} on the class path,
+ * since enabling Blackbird changes the shared mappers for the rest of the JVM.
+ */
+class JsonSerializationBlackbirdTest {
+
+  @Test
+  void readsAndWritesWithBlackbirdEnabled() throws Exception {
+    TypeReference<List<UserRepresentation>> users = new TypeReference<>() {};
+    ObjectReader before = JsonSerialization.reader(users.getType());
+    ObjectWriter writerBefore = JsonSerialization.writer(RealmRepresentation.class);
+
+    assertTrue(JsonSerialization.enableBlackbird());
+    assertTrue(JsonSerialization.isBlackbirdEnabled());
+    assertTrue(JsonSerialization.enableBlackbird());
+    String module = "com.fasterxml.jackson.module.blackbird.BlackbirdModule";
+    assertTrue(JsonSerialization.mapper.getRegisteredModuleIds().contains(module));
+    assertTrue(JsonSerialization.prettyMapper.getRegisteredModuleIds().contains(module));
+    // readers and writers built without the module are dropped
+    assertNotSame(before, JsonSerialization.reader(users.getType()));
+    assertNotSame(writerBefore, JsonSerialization.writer(RealmRepresentation.class));
+    assertSame(
+        JsonSerialization.reader(users.getType()), JsonSerialization.reader(users.getType()));
+
+    ProtocolMapperRepresentation mapper = new ProtocolMapperRepresentation();
+    mapper.setName("email");
+    mapper.setProtocol("openid-connect");
+    mapper.setProtocolMapper("oidc-usermodel-property-mapper");
+    mapper.setConfig(Map.of("claim.name", "email", "user.attribute", "email"));
+    ClientRepresentation client = new ClientRepresentation();
+    client.setClientId("app");
+    client.setEnabled(true);
+    client.setRedirectUris(List.of("https://app.example.com/*"));
+    client.setProtocolMappers(List.of(mapper));
+    RealmRepresentation realm = new RealmRepresentation();
+    realm.setRealm("test");
+    realm.setAccessTokenLifespan(300);
+    realm.setClients(List.of(client));
+
+    String json = JsonSerialization.writeValueAsString(realm);
+    RealmRepresentation read = JsonSerialization.readValue(json, RealmRepresentation.class);
+    assertEquals("test", read.getRealm());
+    assertEquals(300, read.getAccessTokenLifespan());
+    ClientRepresentation readClient = read.getClients().get(0);
+    assertEquals("app", readClient.getClientId());
+    assertEquals(List.of("https://app.example.com/*"), readClient.getRedirectUris());
+    assertEquals(mapper.getConfig(), readClient.getProtocolMappers().get(0).getConfig());
+    assertEquals(json, JsonSerialization.writeValueAsString(read));
+
+    // the deduplicating mapper, which Keycloak's user attributes go through, has it too
+    StringTable strings = StringTable.create(64);
+    List<UserRepresentation> list =
+        JsonSerialization.reader(users.getType(), strings)
+            .readValue(
+                "[{\"username\":\"a\",\"attributes\":{\"locale\":\"en\"}},"
+                    + "{\"username\":\"b\",\"attributes\":{\"locale\":[\"en\"]}}]");
+    assertEquals("b", list.get(1).getUsername());
+    assertSame(
+        list.get(0).getAttributes().get("locale").get(0),
+        list.get(1).getAttributes().get("locale").get(0));
+  }
+}
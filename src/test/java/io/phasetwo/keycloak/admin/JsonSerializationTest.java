@@ -0,0 +1,81 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class JsonSerializationTest {
+
+  @Test
+  void readersAndWritersAreBuiltOncePerType() throws Exception {
+    TypeReference<List<UserRepresentation>> users = new TypeReference<>() {};
+
+    assertSame(
+        JsonSerialization.reader(UserRepresentation.class),
+        JsonSerialization.reader(UserRepresentation.class));
+    assertSame(
+        JsonSerialization.reader(users.getType()),
+        JsonSerialization.reader(new TypeReference<List<UserRepresentation>>() {}.getType()));
+    assertSame(
+        JsonSerialization.reader(JsonSerialization.mapper.constructType(users.getType())),
+        JsonSerialization.reader(JsonSerialization.mapper.constructType(users.getType())));
+    assertSame(
+        JsonSerialization.writer(UserRepresentation.class),
+        JsonSerialization.writer(UserRepresentation.class));
+
+    UserRepresentation user = new UserRepresentation();
+    user.setUsername("alice");
+    user.setAttributes(Map.of("locale", List.of("en")));
+    String json = JsonSerialization.writeValueAsString(List.of(user));
+    // the cached writer keeps the mapper's NON_NULL inclusion
+    assertEquals("[{\"username\":\"alice\",\"attributes\":{\"locale\":[\"en\"]}}]", json);
+    List<UserRepresentation> read = JsonSerialization.readValue(json, users);
+    assertEquals("alice", read.get(0).getUsername());
+    assertEquals(List.of("en"), read.get(0).getAttributes().get("locale"));
+  }
+
+  @Test
+  void clearCachesAppliesALaterMapperConfiguration() throws Exception {
+    String json = "{\"name\":\"a\",\"unknown\":1}";
+    assertThrows(
+        UnrecognizedPropertyException.class,
+        () -> JsonSerialization.reader(Named.class).readValue(json));
+    JsonSerialization.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    try {
+      // the reader built before keeps the configuration it was built with
+      assertThrows(
+          UnrecognizedPropertyException.class,
+          () -> JsonSerialization.reader(Named.class).readValue(json));
+      JsonSerialization.clearCaches();
+      assertEquals("a", JsonSerialization.reader(Named.class).<Named>readValue(json).name);
+      assertEquals(
+          "a",
+          JsonSerialization.reader(Named.class, StringTable.create(16))
+              .<Named>readValue(json)
+              .name);
+    } finally {
+      JsonSerialization.mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, true);
+      JsonSerialization.clearCaches();
+    }
+  }
+
+  static class Named {
+    public String name;
+  }
+
+  @Test
+  void blackbirdIsOptional() {
+    // jackson-module-blackbird is not a dependency of this project
+    assertFalse(JsonSerialization.enableBlackbird());
+    assertFalse(JsonSerialization.isBlackbirdEnabled());
+  }
+}
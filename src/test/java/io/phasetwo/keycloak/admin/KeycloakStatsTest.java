@@ -0,0 +1,64 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.phasetwo.keycloak.admin.metrics.Endpoint;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.ServerInfoResource;
+
+class KeycloakStatsTest {
+
+  @Test
+  void reportsPoolAndInFlightCalls() throws Exception {
+    CountDownLatch received = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+    server.createContext(
+        "/",
+        exchange -> {
+          received.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        });
+    server.start();
+    String url = "http://127.0.0.1:" + server.getAddress().getPort();
+    try (Keycloak keycloak = Keycloak.getInstance(url, "master", "admin-cli", "token")) {
+      CompletableFuture<?> call = CompletableFuture.runAsync(() -> keycloak.serverInfo().getInfo());
+      assertTrue(received.await(5, TimeUnit.SECONDS));
+
+      KeycloakStats busy = keycloak.stats();
+      assertEquals(1, busy.pool().leased());
+      assertEquals(
+          1,
+          busy.inFlight().get(new Endpoint(ServerInfoResource.class.getSimpleName(), "getInfo")));
+      assertNull(busy.token());
+
+      release.countDown();
+      call.get(5, TimeUnit.SECONDS);
+      KeycloakStats idle = keycloak.stats();
+      assertEquals(0, idle.pool().leased());
+      assertEquals(1, idle.pool().available());
+      assertTrue(idle.inFlight().isEmpty());
+      assertEquals(1, idle.routes().size());
+      assertEquals(1, idle.caches().get("timeoutProfiles").misses());
+    } finally {
+      server.stop(0);
+    }
+  }
+}
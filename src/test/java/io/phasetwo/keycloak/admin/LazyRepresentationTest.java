@@ -0,0 +1,77 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class LazyRepresentationTest {
+
+  @Test
+  void readsOnlyTheFieldsAskedFor() throws Exception {
+    String json =
+        "{\"id\":\"1\",\"username\":\"a\",\"enabled\":true,\"requiredActions\":[\"VERIFY_EMAIL\"],"
+            + "\"attributes\":{\"locale\":[\"en\"],\"department\":\"sales\"}}";
+    LazyRepresentation<UserRepresentation> user =
+        LazyRepresentation.of(json.getBytes(StandardCharsets.UTF_8), UserRepresentation.class);
+
+    UserRepresentation username = user.get("username");
+    assertEquals("a", username.getUsername());
+    assertNull(username.getId());
+    assertNull(username.getAttributes());
+
+    // a single attribute, which Keycloak still reads into a list
+    UserRepresentation department = user.get("attributes.department", "enabled");
+    assertEquals(Map.of("department", List.of("sales")), department.getAttributes());
+    assertEquals(true, department.isEnabled());
+    assertNull(department.getRequiredActions());
+
+    assertNull(user.get("email").getEmail());
+    assertEquals(List.of("VERIFY_EMAIL"), user.get().getRequiredActions());
+    assertThrows(IllegalArgumentException.class, () -> user.get("attributes."));
+    assertThrows(IllegalArgumentException.class, () -> user.get(new String[0]));
+
+    // read as a list and written back unchanged
+    TypeReference<List<LazyRepresentation<UserRepresentation>>> type = new TypeReference<>() {};
+    List<LazyRepresentation<UserRepresentation>> read =
+        JsonSerialization.readValue("[" + json + "," + json + "]", type);
+    assertEquals("1", read.get(1).get("id").getId());
+    assertEquals(json.length(), read.get(0).size());
+    assertEquals("[" + json + "]", JsonSerialization.writeValueAsString(read.subList(0, 1)));
+  }
+
+  @Test
+  void readsListingsOfARealmLazily() throws Exception {
+    try (KeycloakStub stub = KeycloakStub.builder().users(100).attributes(3, 24).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .build()) {
+      List<LazyRepresentation<UserRepresentation>> users =
+          keycloak.lazyListings(stub.getRealm()).users(null, 0, 50);
+      assertEquals(
+          stub.getUserIds().subList(0, 50), users.stream().map(u -> u.get("id").getId()).toList());
+      UserRepresentation attribute = users.get(7).get("attributes.attribute1");
+      assertEquals(Map.of("attribute1", List.of("v".repeat(24))), attribute.getAttributes());
+      assertEquals("user7", users.get(7).get().getUsername());
+
+      List<LazyRepresentation<GroupRepresentation>> groups =
+          keycloak.lazyListings(stub.getRealm()).groups(null, 0, 10, false);
+      assertEquals(10, groups.size());
+      assertEquals("/group3", groups.get(3).get("path").getPath());
+    }
+  }
+}
@@ -0,0 +1,209 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import io.phasetwo.keycloak.admin.stub.Latency;
+import io.phasetwo.keycloak.admin.timeout.Deadline;
+import io.phasetwo.keycloak.admin.timeout.DeadlineExceededException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class ParallelTest {
+
+  private static final List<Integer> INPUTS = IntStream.range(0, 40).boxed().toList();
+
+  @Test
+  void returnsResultsInInputOrderWithinTheConcurrencyCap() throws Exception {
+    try (KeycloakStub stub =
+            KeycloakStub.builder().users(200).latency(Latency.fixed(Duration.ofMillis(2))).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .build()) {
+      AtomicInteger active = new AtomicInteger();
+      AtomicInteger peak = new AtomicInteger();
+
+      List<UserRepresentation> users =
+          keycloak
+              .parallel()
+              .concurrency(2)
+              .map(
+                  stub.getUserIds(),
+                  id -> {
+                    peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    try {
+                      return keycloak.realm(stub.getRealm()).users().get(id).toRepresentation();
+                    } finally {
+                      active.decrementAndGet();
+                    }
+                  });
+
+      assertEquals(stub.getUserIds(), users.stream().map(UserRepresentation::getId).toList());
+      assertEquals(2, peak.get());
+      assertEquals(0, active.get());
+
+      // bounded by the client's own pool, two connections per route by default
+      assertEquals(2, keycloak.parallel().getConcurrency());
+      List<List<RoleRepresentation>> roles =
+          keycloak
+              .parallel()
+              .map(
+                  stub.getUserIds().subList(0, 10),
+                  id ->
+                      keycloak
+                          .realm(stub.getRealm())
+                          .users()
+                          .get(id)
+                          .roles()
+                          .realmLevel()
+                          .listAll());
+      assertEquals(10, roles.size());
+      assertFalse(roles.get(0).isEmpty());
+    }
+  }
+
+  @Test
+  void concurrencyFollowsTheConfiguredPoolSize() throws Exception {
+    try (KeycloakStub stub = KeycloakStub.builder().users(100).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .maxConnections(32)
+                .build()) {
+      assertEquals(32, keycloak.parallel().getConcurrency());
+      List<UserRepresentation> users =
+          keycloak
+              .parallel()
+              .map(
+                  stub.getUserIds(),
+                  id -> keycloak.realm(stub.getRealm()).users().get(id).toRepresentation());
+      assertEquals(stub.getUserIds(), users.stream().map(UserRepresentation::getId).toList());
+      KeycloakStats.Pool pool = keycloak.stats().pool();
+      assertEquals(32, pool.max());
+      assertEquals(0, pool.leased());
+      assertEquals(0, pool.pending());
+    }
+  }
+
+  @Test
+  void mapFailsFastAndWaitsForCallsInProgress() {
+    IllegalStateException failure = new IllegalStateException("user 3");
+    AtomicInteger started = new AtomicInteger();
+    AtomicInteger active = new AtomicInteger();
+
+    IllegalStateException thrown =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                new Parallel()
+                    .concurrency(4)
+                    .map(
+                        INPUTS,
+                        i -> {
+                          started.incrementAndGet();
+                          active.incrementAndGet();
+                          try {
+                            if (i == 3) {
+                              throw failure;
+                            }
+                            Thread.sleep(Duration.ofSeconds(10));
+                            return i;
+                          } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                          } finally {
+                            active.decrementAndGet();
+                          }
+                        }));
+
+    assertSame(failure, thrown);
+    assertTrue(started.get() < INPUTS.size(), "started " + started.get());
+    assertEquals(0, active.get());
+  }
+
+  @Test
+  void mapAllCollectsEveryOutcome() {
+    List<Parallel.Result<Integer>> results =
+        new Parallel()
+            .mapAll(
+                INPUTS,
+                i -> {
+                  if (i % 2 == 1) {
+                    throw new IllegalArgumentException("odd " + i);
+                  }
+                  return i * 10;
+                });
+
+    assertEquals(INPUTS.size(), results.size());
+    for (int i = 0; i < results.size(); i++) {
+      Parallel.Result<Integer> result = results.get(i);
+      if (i % 2 == 0) {
+        assertTrue(result.isSuccess());
+        assertEquals(i * 10, result.get());
+      } else {
+        assertFalse(result.isSuccess());
+        assertInstanceOf(IllegalArgumentException.class, result.error());
+        assertThrows(IllegalArgumentException.class, result::get);
+      }
+    }
+  }
+
+  @Test
+  void sharedDeadlineStopsStartingCalls() {
+    AtomicInteger withDeadline = new AtomicInteger();
+    long start = System.nanoTime();
+
+    List<Parallel.Result<Integer>> results =
+        new Parallel()
+            .concurrency(1)
+            .deadline(Duration.ofMillis(100))
+            .mapAll(
+                INPUTS,
+                i -> {
+                  if (Deadline.current() != null) {
+                    withDeadline.incrementAndGet();
+                  }
+                  try {
+                    Thread.sleep(20);
+                  } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                  }
+                  return i;
+                });
+
+    assertTrue(Duration.ofNanos(System.nanoTime() - start).compareTo(Duration.ofSeconds(1)) < 0);
+    long succeeded = results.stream().filter(Parallel.Result::isSuccess).count();
+    assertTrue(succeeded > 0 && succeeded < INPUTS.size(), "succeeded " + succeeded);
+    assertEquals(succeeded, withDeadline.get());
+    Parallel.Result<Integer> last = results.get(INPUTS.size() - 1);
+    assertInstanceOf(DeadlineExceededException.class, last.error());
+    assertNotNull(results.get(0).value());
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new Parallel().concurrency(0));
+    assertThrows(IllegalArgumentException.class, () -> new Parallel().deadline(Duration.ZERO));
+    assertThrows(IllegalArgumentException.class, () -> KeycloakBuilder.builder().maxConnections(0));
+  }
+}
@@ -0,0 +1,100 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class ResponseLimitsTest {
+
+  @TempDir Path spillDirectory;
+
+  @Test
+  void spillsLargeBodiesAndRejectsOversizedOnes() throws Exception {
+    ResponseLimits limits =
+        ResponseLimits.builder()
+            .maxInMemory(16 * 1024)
+            .maxSize(64 * 1024)
+            .spillDirectory(spillDirectory)
+            .build();
+    try (KeycloakStub stub = KeycloakStub.builder().users(500).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .responseLimits(limits)
+                .build()) {
+      List<UserRepresentation> page = keycloak.realm(stub.getRealm()).users().list(0, 200);
+      assertEquals(
+          stub.getUserIds().subList(0, 200), page.stream().map(UserRepresentation::getId).toList());
+      assertEquals(1, limits.getSpills());
+      assertTrue(limits.getSpilledBytes() > 16 * 1024, "spilled " + limits.getSpilledBytes());
+      // spill files are deleted once mapped
+      try (Stream<Path> files = Files.list(spillDirectory)) {
+        assertEquals(0, files.count());
+      }
+
+      assertThrows(
+          ResponseTooLargeException.class,
+          () -> keycloak.realm(stub.getRealm()).users().list(0, 500));
+      assertEquals(1, limits.getRejected());
+
+      // small bodies are read into memory as before, on a connection that still works
+      assertEquals(10, keycloak.realm(stub.getRealm()).users().list(0, 10).size());
+      assertEquals(1, limits.getSpills());
+      assertEquals(limits, keycloak.responseLimits());
+    }
+  }
+
+  @Test
+  void countsBodiesOfUnknownLengthAsTheyAreRead() throws Exception {
+    byte[] body = new byte[100_000];
+    new Random(1).nextBytes(body);
+    ResponseLimits limits =
+        ResponseLimits.builder()
+            .maxInMemory(1000)
+            .maxSize(body.length)
+            .spillDirectory(spillDirectory)
+            .build();
+
+    ByteBuffer small = limits.read(new ByteArrayInputStream(body, 0, 1000), -1);
+    assertTrue(small.hasArray());
+    assertEquals(1000, small.remaining());
+
+    ByteBuffer spilled = limits.read(new ByteArrayInputStream(body), -1);
+    assertFalse(spilled.hasArray());
+    assertTrue(spilled.isReadOnly());
+    byte[] read = new byte[spilled.remaining()];
+    spilled.get(read);
+    assertArrayEquals(body, read);
+
+    byte[] larger = new byte[body.length + 1];
+    assertThrows(
+        ResponseTooLargeException.class, () -> limits.read(new ByteArrayInputStream(larger), -1));
+    assertEquals(1, limits.getSpills());
+    assertEquals(1, limits.getRejected());
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      assertEquals(0, files.count());
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> ResponseLimits.builder().maxSize(0));
+    assertThrows(IllegalArgumentException.class, () -> ResponseLimits.builder().maxInMemory(-1));
+  }
+}
@@ -0,0 +1,94 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.MappingsRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+
+class RoleTableTest {
+
+  @Test
+  void sharesImmutableRolesByIdWithinItsBounds() throws Exception {
+    RoleTable roles = RoleTable.create(2);
+    String json =
+        "{\"realmMappings\":[{\"id\":\"1\",\"name\":\"admin\",\"attributes\":{\"a\":[\"b\"]}}],"
+            + "\"clientMappings\":{\"app\":{\"id\":\"c\",\"client\":\"app\","
+            + "\"mappings\":[{\"id\":\"1\",\"name\":\"admin\",\"attributes\":{\"a\":[\"b\"]}},"
+            + "{\"id\":\"2\",\"name\":\"user\"}]}}}";
+    MappingsRepresentation mappings =
+        JsonSerialization.reader(MappingsRepresentation.class, null, roles).readValue(json);
+    RoleRepresentation admin = mappings.getRealmMappings().get(0);
+    assertSame(admin, mappings.getClientMappings().get("app").getMappings().get(0));
+    assertEquals(List.of("b"), admin.getAttributes().get("a"));
+    assertThrows(UnsupportedOperationException.class, () -> admin.setName("root"));
+    assertThrows(UnsupportedOperationException.class, () -> admin.getAttributes().put("c", null));
+    assertThrows(UnsupportedOperationException.class, () -> admin.getAttributes().get("a").add(""));
+    assertEquals(2, roles.size());
+    assertEquals(1, roles.getHits());
+    assertEquals(2, roles.getMisses());
+
+    // a changed role replaces the shared one
+    TypeReference<List<RoleRepresentation>> list = new TypeReference<>() {};
+    List<RoleRepresentation> changed =
+        JsonSerialization.reader(list.getType(), null, roles)
+            .readValue("[{\"id\":\"1\",\"name\":\"administrator\"},{\"id\":\"3\",\"name\":\"x\"}]");
+    assertNotSame(admin, changed.get(0));
+    assertEquals("administrator", changed.get(0).getName());
+    RoleRepresentation again = new RoleRepresentation();
+    again.setId("1");
+    again.setName("administrator");
+    assertSame(changed.get(0), roles.share(again));
+    // the table is full, so role 3 is read into an immutable copy that is not shared
+    assertEquals(2, roles.size());
+    assertThrows(UnsupportedOperationException.class, () -> changed.get(1).setName("y"));
+
+    // shared roles are written like any other
+    assertEquals(
+        "{\"id\":\"1\",\"name\":\"administrator\",\"composite\":false}",
+        JsonSerialization.writeValueAsString(changed.get(0)));
+    // the plain reader is unaffected
+    List<RoleRepresentation> plain = JsonSerialization.reader(list.getType()).readValue("[{}]");
+    plain.get(0).setName("any");
+
+    assertThrows(IllegalArgumentException.class, () -> RoleTable.create(0));
+  }
+
+  @Test
+  void sharesRolesAcrossResponsesOfAClient() throws Exception {
+    RoleTable roles = RoleTable.create(1000);
+    try (KeycloakStub stub = KeycloakStub.builder().users(20).roles(10).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .shareRoles(roles)
+                .build()) {
+      Map<RoleRepresentation, Integer> counts = new IdentityHashMap<>();
+      for (String id : stub.getUserIds()) {
+        for (RoleRepresentation role :
+            keycloak.realm(stub.getRealm()).users().get(id).roles().realmLevel().listAll()) {
+          counts.merge(role, 1, Integer::sum);
+        }
+      }
+      assertEquals(10, counts.size());
+      counts.values().forEach(count -> assertEquals(20, count));
+
+      KeycloakStats.Cache cache = keycloak.stats().caches().get("roles");
+      assertEquals(190, cache.hits());
+      assertEquals(10, cache.misses());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class StringTableTest {
+
+  @Test
+  void sharesRepeatedValuesWithinItsBounds() throws Exception {
+    StringTable strings = StringTable.create(1000, 16);
+    assertEquals(1024, strings.getSize());
+    // two slots make one set
+    assertEquals(2, StringTable.create(1).getSize());
+
+    String first = strings.canonicalize(new String("admin"));
+    assertSame(first, strings.canonicalize(new String("admin")));
+    assertSame(first, strings.canonicalize("xadminx".toCharArray(), 1, 5));
+    // longer than maxLength, so never shared
+    assertNotSame(
+        strings.canonicalize(new String("0123456789abcdefg")),
+        strings.canonicalize("0123456789abcdefg"));
+    assertEquals(2, strings.getHits());
+    assertEquals(1, strings.getMisses());
+
+    String json =
+        "[{\"username\":\"a\",\"requiredActions\":[\"VERIFY_EMAIL\"],"
+            + "\"attributes\":{\"locale\":[\"en\"]}},"
+            + "{\"username\":\"b\",\"requiredActions\":[\"VERIFY_EMAIL\"],"
+            + "\"attributes\":{\"locale\":[\"en\"]}}]";
+    TypeReference<List<UserRepresentation>> users = new TypeReference<>() {};
+    List<UserRepresentation> read =
+        JsonSerialization.reader(users.getType(), strings).readValue(json);
+    assertSame(read.get(0).getRequiredActions().get(0), read.get(1).getRequiredActions().get(0));
+    assertSame(
+        read.get(0).getAttributes().get("locale").get(0),
+        read.get(1).getAttributes().get("locale").get(0));
+    assertEquals("b", read.get(1).getUsername());
+
+    // the plain reader is unaffected
+    List<UserRepresentation> plain = JsonSerialization.reader(users.getType()).readValue(json);
+    assertNotSame(
+        plain.get(0).getRequiredActions().get(0), plain.get(1).getRequiredActions().get(0));
+
+    assertThrows(IllegalArgumentException.class, () -> StringTable.create(0));
+    assertThrows(IllegalArgumentException.class, () -> StringTable.create(16, 0));
+  }
+
+  @Test
+  void keepsRepeatedValuesAgainstAStreamOfUniqueOnes() {
+    // a single set, so that every string competes for the same two slots
+    StringTable strings = StringTable.create(2);
+    String role = strings.canonicalize(new String("offline_access"));
+    for (int i = 0; i < 1000; i++) {
+      // the unique values of one user, such as its ID, username and email
+      strings.canonicalize("id-" + i);
+      strings.canonicalize("user" + i);
+      strings.canonicalize("user" + i + "@example.com");
+      assertSame(role, strings.canonicalize(new String("offline_access")), "user " + i);
+    }
+    assertEquals(1000, strings.getHits());
+    assertEquals(3001, strings.getMisses());
+  }
+
+  @Test
+  void sharesValuesAcrossResponsesOfAClient() throws Exception {
+    StringTable strings = StringTable.create(4096);
+    try (KeycloakStub stub = KeycloakStub.builder().users(100).attributes(3, 24).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .deduplicateStrings(strings)
+                .build()) {
+      List<UserRepresentation> first = keycloak.realm(stub.getRealm()).users().list(0, 50);
+      List<UserRepresentation> second = keycloak.realm(stub.getRealm()).users().list(50, 50);
+
+      String value = first.get(0).getAttributes().get("attribute0").get(0);
+      assertEquals("v".repeat(24), value);
+      assertSame(value, first.get(49).getAttributes().get("attribute2").get(0));
+      assertSame(value, second.get(49).getAttributes().get("attribute1").get(0));
+
+      KeycloakStats.Cache cache = keycloak.stats().caches().get("strings");
+      assertEquals(strings.getHits(), cache.hits());
+      assertEquals(strings.getMisses(), cache.misses());
+      // 3 attribute values per user, all the same; IDs and usernames are unique misses
+      assertTrue(cache.hits() >= 250, "hits " + cache.hits());
+    }
+  }
+}
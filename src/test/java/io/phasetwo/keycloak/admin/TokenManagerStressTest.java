@@ -0,0 +1,281 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+import static org.keycloak.OAuth2Constants.REFRESH_TOKEN;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Config;
+import org.keycloak.representations.AccessTokenResponse;
+
+/**
+ * Many-thread stress tests of {@link TokenManager} against a fake token endpoint that records every
+ * misuse it sees: a refresh or logout with a refresh token that is no longer current, or a grant
+ * that nobody needed. Each test starts its threads together behind a latch and runs long enough for
+ * the interleavings that matter to occur many times. The throughput of the valid-token path, which
+ * every proxied call takes, is measured by {@code TokenManagerBenchmark} in {@code benchmarks}.
+ */
+class TokenManagerStressTest {
+
+  private static final int THREADS = 16;
+
+  private static Config config() {
+    return new Config(
+        "http://localhost", "test", null, null, "admin-cli", "secret", CLIENT_CREDENTIALS, null);
+  }
+
+  @Test
+  void concurrentFirstUseGrantsOnce() throws Exception {
+    FakeTokenService service = new FakeTokenService(3600);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    Set<String> seen = ConcurrentHashMap.newKeySet();
+
+    run(THREADS, 1, () -> seen.add(tokenManager.getAccessTokenString()));
+
+    assertEquals(1, service.grants.get());
+    assertEquals(Set.of("access-1"), seen);
+    assertEquals(List.of(), List.copyOf(service.violations));
+  }
+
+  @Test
+  void invalidatedTokenIsNeverHandedOutAgain() throws Exception {
+    FakeTokenService service = new FakeTokenService(3600);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    Queue<String> stale = new ConcurrentLinkedQueue<>();
+
+    run(
+        THREADS,
+        500,
+        () -> {
+          String token = tokenManager.getAccessTokenString();
+          if (ThreadLocalRandom.current().nextInt(4) == 0) {
+            tokenManager.invalidate(token);
+            String next = tokenManager.getAccessTokenString();
+            if (next.equals(token)) {
+              stale.add(token);
+            }
+          }
+        });
+
+    assertEquals(List.of(), List.copyOf(stale));
+    assertEquals(1, service.grants.get());
+    assertTrue(service.refreshes.get() > 0);
+    assertEquals(List.of(), List.copyOf(service.violations));
+  }
+
+  @Test
+  void expiredTokenIsRefreshedOncePerExpiry() throws Exception {
+    // expires within the minimum validity, so every call finds it expired and refreshes
+    FakeTokenService service = new FakeTokenService(0);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    LongAdder calls = new LongAdder();
+
+    run(
+        THREADS,
+        200,
+        () -> {
+          assertNotNull(tokenManager.getAccessTokenString());
+          calls.increment();
+        });
+
+    assertEquals(1, service.grants.get());
+    assertEquals(calls.sum() - 1, service.refreshes.get());
+    assertEquals(List.of(), List.copyOf(service.violations));
+  }
+
+  @Test
+  void logoutRacesWithRefresh() throws Exception {
+    FakeTokenService service = new FakeTokenService(3600);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    AtomicInteger nulls = new AtomicInteger();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread loggingOut =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  while (!done.get()) {
+                    tokenManager.logout();
+                    LockSupport.parkNanos(200_000);
+                  }
+                });
+
+    try {
+      run(
+          THREADS,
+          500,
+          () -> {
+            String token = tokenManager.getAccessTokenString();
+            if (token == null) {
+              nulls.incrementAndGet();
+            } else if (ThreadLocalRandom.current().nextBoolean()) {
+              tokenManager.invalidate(token);
+            }
+          });
+    } finally {
+      done.set(true);
+      loggingOut.join();
+    }
+
+    assertEquals(0, nulls.get());
+    assertTrue(service.logouts.get() > 0);
+    assertEquals(List.of(), List.copyOf(service.violations));
+  }
+
+  @Test
+  void grantReturnsTheTokenItObtained() throws Exception {
+    FakeTokenService service = new FakeTokenService(3600);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    AtomicInteger nulls = new AtomicInteger();
+    AtomicBoolean done = new AtomicBoolean();
+    Thread loggingOut =
+        Thread.ofPlatform()
+            .start(
+                () -> {
+                  while (!done.get()) {
+                    tokenManager.logout();
+                  }
+                });
+
+    try {
+      run(
+          THREADS,
+          200,
+          () -> {
+            if (tokenManager.grantToken() == null) {
+              nulls.incrementAndGet();
+            }
+          });
+    } finally {
+      done.set(true);
+      loggingOut.join();
+    }
+
+    assertEquals(0, nulls.get());
+    assertEquals(List.of(), List.copyOf(service.violations));
+  }
+
+  @Test
+  void contendedValidTokenIsNeverRequestedAgain() throws Exception {
+    FakeTokenService service = new FakeTokenService(3600);
+    TokenManager tokenManager = new TokenManager(config(), service);
+    tokenManager.getAccessTokenString();
+    LongAdder calls = new LongAdder();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+    run(
+        THREADS,
+        1,
+        () -> {
+          while (System.nanoTime() < deadline) {
+            tokenManager.getAccessTokenString();
+            calls.increment();
+          }
+        });
+    assertTrue(calls.sum() > THREADS, "calls " + calls.sum());
+    assertEquals(1, service.grants.get());
+    assertEquals(0, service.refreshes.get());
+  }
+
+  /** Runs {@code task} {@code iterations} times on each of {@code threads} threads at once. */
+  private static void run(int threads, int iterations, Runnable task) throws Exception {
+    CountDownLatch start = new CountDownLatch(1);
+    Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    List<Thread> workers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      workers.add(
+          Thread.ofPlatform()
+              .start(
+                  () -> {
+                    try {
+                      start.await();
+                      for (int i = 0; i < iterations; i++) {
+                        task.run();
+                      }
+                    } catch (Throwable e) {
+                      errors.add(e);
+                    }
+                  }));
+    }
+    start.countDown();
+    for (Thread worker : workers) {
+      assertTrue(worker.join(Duration.ofSeconds(60)), "worker did not finish");
+    }
+    if (!errors.isEmpty()) {
+      throw new AssertionError("worker failed", errors.peek());
+    }
+  }
+
+  /**
+   * Token endpoint that issues numbered tokens and takes a little time per request, to widen race
+   * windows. Only the most recently issued refresh token is valid.
+   */
+  private static final class FakeTokenService extends TokenService {
+    private final long expiresIn;
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final AtomicInteger grants = new AtomicInteger();
+    private final AtomicInteger refreshes = new AtomicInteger();
+    private final AtomicInteger logouts = new AtomicInteger();
+    private final Queue<String> violations = new ConcurrentLinkedQueue<>();
+    private volatile String validRefreshToken;
+
+    FakeTokenService(long expiresIn) {
+      super(config(), null, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1));
+      this.expiresIn = expiresIn;
+    }
+
+    @Override
+    public AccessTokenResponse grantToken(String realm, Map<String, String> formParams) {
+      grants.incrementAndGet();
+      return issue();
+    }
+
+    @Override
+    public AccessTokenResponse refreshToken(String realm, Map<String, String> formParams) {
+      refreshes.incrementAndGet();
+      String presented = formParams.get(REFRESH_TOKEN);
+      if (!presented.equals(validRefreshToken)) {
+        violations.add("refresh with " + presented + ", current is " + validRefreshToken);
+      }
+      return issue();
+    }
+
+    @Override
+    public void logout(String realm, Map<String, String> formParams) {
+      logouts.incrementAndGet();
+      String presented = formParams.get(REFRESH_TOKEN);
+      LockSupport.parkNanos(20_000);
+      if (!presented.equals(validRefreshToken)) {
+        violations.add("logout with " + presented + ", current is " + validRefreshToken);
+      }
+      validRefreshToken = null;
+    }
+
+    private AccessTokenResponse issue() {
+      LockSupport.parkNanos(20_000);
+      int n = sequence.incrementAndGet();
+      AccessTokenResponse response = new AccessTokenResponse();
+      response.setToken("access-" + n);
+      response.setRefreshToken("refresh-" + n);
+      response.setExpiresIn(expiresIn);
+      response.setRefreshExpiresIn(7200);
+      validRefreshToken = response.getRefreshToken();
+      return response;
+    }
+  }
+}
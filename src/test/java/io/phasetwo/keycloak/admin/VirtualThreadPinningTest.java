@@ -0,0 +1,180 @@
+package io.phasetwo.keycloak.admin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import io.phasetwo.keycloak.admin.stub.Latency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.Config;
+import org.keycloak.representations.AccessTokenResponse;
+
+/**
+ * Runs thousands of virtual threads through code paths that block while holding a lock, and fails
+ * if the JVM reports any {@code jdk.VirtualThreadPinned} event, which is the event behind {@code
+ * -Djdk.tracePinnedThreads}. A virtual thread is pinned when it parks inside a {@code synchronized}
+ * block, so a slow token request made under a monitor would hold one carrier per waiting thread.
+ */
+class VirtualThreadPinningTest {
+
+  private static final int THREADS = 2000;
+
+  @Test
+  void tokenRequestsDoNotPinCarriers() throws Exception {
+    Config config =
+        new Config(
+            "http://localhost",
+            "test",
+            null,
+            null,
+            "admin-cli",
+            "secret",
+            CLIENT_CREDENTIALS,
+            null);
+    AtomicInteger requests = new AtomicInteger();
+    TokenService slow =
+        new TokenService(
+            config, null, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1)) {
+          @Override
+          public AccessTokenResponse grantToken(String realm, Map<String, String> formParams) {
+            return issue();
+          }
+
+          @Override
+          public AccessTokenResponse refreshToken(String realm, Map<String, String> formParams) {
+            return issue();
+          }
+
+          private AccessTokenResponse issue() {
+            try {
+              Thread.sleep(1);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            int n = requests.incrementAndGet();
+            AccessTokenResponse response = new AccessTokenResponse();
+            response.setToken("access-" + n);
+            response.setRefreshToken("refresh-" + n);
+            // within the minimum validity, so every call refreshes under the lock
+            response.setExpiresIn(0);
+            response.setRefreshExpiresIn(3600);
+            return response;
+          }
+        };
+    TokenManager tokenManager = new TokenManager(config, slow);
+
+    List<RecordedEvent> pinned = recordPinning(tokenManager::getAccessTokenString);
+
+    assertEquals(List.of(), describe(pinned));
+    assertEquals(THREADS, requests.get());
+  }
+
+  @Test
+  void clientCallsDoNotPinCarriers() throws Exception {
+    try (KeycloakStub stub =
+        KeycloakStub.builder()
+            .users(50)
+            // shorter than the minimum validity, so every call also refreshes the token
+            .tokenLifespan(Duration.ofSeconds(1))
+            .latency(Latency.fixed(Duration.ofMillis(1)))
+            .tokenLatency(Latency.fixed(Duration.ofMillis(1)))
+            .start()) {
+      // the client's own pool, which HttpClient 4.5 would lease from inside a synchronized block
+      try (Keycloak keycloak =
+          KeycloakBuilder.builder()
+              .serverUrl(stub.getUrl())
+              .realm(stub.getRealm())
+              .grantType(CLIENT_CREDENTIALS)
+              .clientId("admin-cli")
+              .clientSecret("secret")
+              .build()) {
+        List<String> ids = stub.getUserIds();
+        AtomicInteger next = new AtomicInteger();
+        Runnable call =
+            () -> {
+              String id = ids.get(next.getAndIncrement() % ids.size());
+              keycloak.realm(stub.getRealm()).users().get(id).toRepresentation();
+            };
+
+        assertEquals(List.of(), describe(recordPinning(call)));
+        // again once the pooled connections have been idle long enough to be checked for staleness
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(GatedConnectionManager.STALE_CHECK_AFTER_NANOS));
+        assertEquals(List.of(), describe(recordPinning(call)));
+        assertEquals(2 * THREADS, stub.getRequestCount("GET /users/{id}"));
+      }
+    }
+  }
+
+  /** Runs {@code task} once on each of {@link #THREADS} virtual threads, recording pinning. */
+  private static List<RecordedEvent> recordPinning(Runnable task) throws Exception {
+    Path dump = Files.createTempFile("pinning", ".jfr");
+    Queue<Throwable> errors = new ConcurrentLinkedQueue<>();
+    try (Recording recording = new Recording()) {
+      recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+      recording.start();
+      ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+      try {
+        for (int i = 0; i < THREADS; i++) {
+          executor.execute(
+              () -> {
+                try {
+                  task.run();
+                } catch (Throwable e) {
+                  errors.add(e);
+                }
+              });
+        }
+        executor.shutdown();
+        // pinned carriers can deadlock, e.g. when a pinned thread waits for a pooled connection
+        // that only an unmounted thread can release
+        assertTrue(
+            executor.awaitTermination(1, TimeUnit.MINUTES),
+            "tasks did not finish; carrier threads may be pinned");
+      } finally {
+        executor.shutdownNow();
+      }
+      recording.stop();
+      recording.dump(dump);
+      if (!errors.isEmpty()) {
+        throw new AssertionError(errors.size() + " tasks failed", errors.peek());
+      }
+      return RecordingFile.readAllEvents(dump).stream()
+          .filter(e -> e.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+          .toList();
+    } finally {
+      Files.deleteIfExists(dump);
+    }
+  }
+
+  private static List<String> describe(List<RecordedEvent> events) {
+    return events.stream()
+        .map(
+            e ->
+                e.getStackTrace() == null
+                    ? "pinned"
+                    : e.getStackTrace().getFrames().stream()
+                        .limit(40)
+                        .map(RecordedFrame::getMethod)
+                        .map(m -> m.getType().getName() + "." + m.getName())
+                        .collect(Collectors.joining(" < ")))
+        .distinct()
+        .toList();
+  }
+}
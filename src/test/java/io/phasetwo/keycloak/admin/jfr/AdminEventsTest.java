@@ -0,0 +1,152 @@
+package io.phasetwo.keycloak.admin.jfr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.phasetwo.keycloak.admin.TokenManager;
+import io.phasetwo.keycloak.admin.TokenService;
+import io.phasetwo.keycloak.admin.resource.ProxyContext;
+import io.phasetwo.keycloak.admin.resource.ResourceProxyFactory;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.PathParam;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+import org.keycloak.OAuth2Constants;
+import org.keycloak.admin.client.Config;
+import org.keycloak.representations.AccessTokenResponse;
+
+class AdminEventsTest {
+
+  @jakarta.ws.rs.Path("/admin/realms")
+  public interface Realms {
+    @jakarta.ws.rs.Path("{realm}/users")
+    Users users(@PathParam("realm") String realm);
+  }
+
+  public interface Users {
+    @GET
+    @jakarta.ws.rs.Path("{id}")
+    Map<String, Object> get(@PathParam("id") String id);
+  }
+
+  @Test
+  void recordsTemplatedRequestAndDeserializationEvents() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    byte[] body = "{\"id\":\"8d1c\"}".getBytes(StandardCharsets.UTF_8);
+    server.createContext(
+        "/",
+        exchange -> {
+          exchange.getResponseHeaders().add("Content-Type", "application/json");
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        });
+    server.start();
+    Path dump = Files.createTempFile("admin-events", ".jfr");
+    try (CloseableHttpClient client = HttpClients.createDefault();
+        Recording recording = new Recording()) {
+      recording.enable(HttpRequestEvent.class);
+      recording.enable(DeserializationEvent.class);
+      recording.start();
+      Realms realms =
+          ResourceProxyFactory.create(
+              Realms.class,
+              "http://127.0.0.1:" + server.getAddress().getPort(),
+              ProxyContext.builder(client).build());
+      assertEquals("8d1c", realms.users("test").get("8d1c").get("id"));
+      recording.stop();
+      recording.dump(dump);
+
+      List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+      RecordedEvent request = single(events, "io.phasetwo.keycloak.admin.HttpRequest");
+      assertEquals("GET", request.getString("method"));
+      assertEquals("/admin/realms/{realm}/users/{id}", request.getString("urlTemplate"));
+      assertEquals(200, request.getInt("status"));
+      assertEquals(body.length, request.getLong("bytesReceived"));
+
+      RecordedEvent json = single(events, "io.phasetwo.keycloak.admin.Deserialization");
+      assertEquals("/admin/realms/{realm}/users/{id}", json.getString("urlTemplate"));
+      assertTrue(json.getString("type").startsWith("java.util.Map"));
+    } finally {
+      server.stop(0);
+      Files.deleteIfExists(dump);
+    }
+  }
+
+  @Test
+  void recordsTokenRefreshesThatFailWithoutAResponse() throws Exception {
+    Config config =
+        new Config(
+            "http://localhost",
+            "test",
+            null,
+            null,
+            "admin-cli",
+            "secret",
+            OAuth2Constants.CLIENT_CREDENTIALS,
+            null);
+    Duration timeout = Duration.ofSeconds(1);
+    TokenService service =
+        new TokenService(config, null, timeout, timeout, timeout) {
+          @Override
+          public AccessTokenResponse grantToken(String realm, Map<String, String> formParams) {
+            AccessTokenResponse response = new AccessTokenResponse();
+            response.setToken("access");
+            response.setRefreshToken("refresh");
+            // within the minimum validity, so the next call refreshes
+            response.setExpiresIn(0);
+            response.setRefreshExpiresIn(3600);
+            return response;
+          }
+
+          @Override
+          public AccessTokenResponse refreshToken(String realm, Map<String, String> formParams) {
+            throw new IllegalStateException(
+                "Failed to call token endpoint", new IOException("Connection refused"));
+          }
+        };
+    TokenManager tokenManager = new TokenManager(config, service);
+    Path dump = Files.createTempFile("token-events", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(TokenEvent.class);
+      recording.start();
+      tokenManager.getAccessToken();
+      assertThrows(IllegalStateException.class, tokenManager::getAccessToken);
+      recording.stop();
+      recording.dump(dump);
+
+      assertEquals(1, tokenManager.getStats().grants());
+      assertEquals(1, tokenManager.getStats().failures());
+      List<RecordedEvent> events =
+          RecordingFile.readAllEvents(dump).stream()
+              .filter(e -> e.getString("operation").equals("refresh"))
+              .toList();
+      assertEquals(1, events.size());
+      assertFalse(events.get(0).getBoolean("success"));
+    } finally {
+      Files.deleteIfExists(dump);
+    }
+  }
+
+  private static RecordedEvent single(List<RecordedEvent> events, String name) {
+    List<RecordedEvent> matching =
+        events.stream().filter(e -> e.getEventType().getName().equals(name)).toList();
+    assertEquals(1, matching.size(), name);
+    return matching.get(0);
+  }
+}
@@ -0,0 +1,265 @@
+package io.phasetwo.keycloak.admin.load;
+
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.Keycloak;
+import io.phasetwo.keycloak.admin.KeycloakBuilder;
+import io.phasetwo.keycloak.admin.metrics.LatencyHistogram;
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Drives a {@link Workload} through a {@link Keycloak} client against a {@link KeycloakStub} at a
+ * series of concurrency levels, and reports throughput and latency percentiles for each. Since the
+ * stub answers in a fixed or known time, the level at which throughput stops growing shows where
+ * the client itself saturates.
+ *
+ * <p>Each level uses a fresh client, warms up, and then measures for a fixed time. Unless a client
+ * factory is set, the client's connection pool is sized to the number of threads, so that the pool
+ * is not what is being measured.
+ */
+public final class LoadHarness {
+
+  /** The kind of threads that make the calls. */
+  public enum ThreadKind {
+    PLATFORM,
+    VIRTUAL
+  }
+
+  private final KeycloakStub stub;
+  private final List<Integer> threads;
+  private final List<ThreadKind> threadKinds;
+  private final Duration warmup;
+  private final Duration duration;
+  private final Workload workload;
+  private final IntFunction<Keycloak> clientFactory;
+
+  private LoadHarness(Builder builder) {
+    this.stub = builder.stub;
+    this.threads = List.copyOf(builder.threads);
+    this.threadKinds = List.copyOf(builder.threadKinds);
+    this.warmup = builder.warmup;
+    this.duration = builder.duration;
+    this.workload = builder.workload;
+    this.clientFactory = builder.clientFactory;
+  }
+
+  public static Builder builder(KeycloakStub stub) {
+    return new Builder(stub);
+  }
+
+  public LoadReport run() throws IOException, InterruptedException {
+    List<LoadReport.Row> rows = new ArrayList<>();
+    for (ThreadKind kind : threadKinds) {
+      for (int count : threads) {
+        rows.addAll(runLevel(count, kind));
+      }
+    }
+    return new LoadReport(rows);
+  }
+
+  private List<LoadReport.Row> runLevel(int count, ThreadKind kind)
+      throws IOException, InterruptedException {
+    if (clientFactory != null) {
+      try (Keycloak keycloak = clientFactory.apply(count)) {
+        return measure(keycloak, count, kind);
+      }
+    }
+    PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+    pool.setMaxTotal(count);
+    pool.setDefaultMaxPerRoute(count);
+    try (CloseableHttpClient http = HttpClients.custom().setConnectionManager(pool).build();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("load")
+                .clientSecret("secret")
+                .httpClient(http)
+                .build()) {
+      return measure(keycloak, count, kind);
+    }
+  }
+
+  private List<LoadReport.Row> measure(Keycloak keycloak, int count, ThreadKind kind)
+      throws InterruptedException {
+    Level level = new Level(keycloak);
+    List<Thread> workers = new ArrayList<>(count);
+    Thread.Builder builder =
+        kind == ThreadKind.VIRTUAL
+            ? Thread.ofVirtual().name("load-", 0)
+            : Thread.ofPlatform().name("load-", 0).daemon(true);
+    for (int i = 0; i < count; i++) {
+      workers.add(builder.start(level::work));
+    }
+    Thread.sleep(warmup.toMillis());
+    level.startMeasuring();
+    Thread.sleep(duration.toMillis());
+    long elapsed = level.stop();
+    for (Thread worker : workers) {
+      worker.join();
+    }
+    return level.rows(count, kind.name().toLowerCase(), elapsed);
+  }
+
+  /** State of one concurrency level, shared by its worker threads. */
+  private final class Level {
+    private final Keycloak keycloak;
+    private final List<String> userIds = stub.getUserIds();
+    private final Map<String, LatencyHistogram> latencies = new LinkedHashMap<>();
+    private final Map<String, LongAdder> errors = new LinkedHashMap<>();
+    private final LatencyHistogram all = new LatencyHistogram();
+    private final LongAdder allErrors = new LongAdder();
+    private volatile boolean measuring;
+    private volatile boolean stopped;
+    private long measureStart;
+
+    Level(Keycloak keycloak) {
+      this.keycloak = keycloak;
+      for (Workload.Operation operation : workload.getOperations()) {
+        latencies.put(operation.name(), new LatencyHistogram());
+        errors.put(operation.name(), new LongAdder());
+      }
+    }
+
+    void work() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (!stopped) {
+        Workload.Operation operation = workload.next(random);
+        boolean failed = false;
+        long start = System.nanoTime();
+        try {
+          operation.action().run(keycloak, stub.getRealm(), userIds, random);
+        } catch (RuntimeException e) {
+          failed = true;
+        }
+        long nanos = System.nanoTime() - start;
+        if (measuring && !stopped) {
+          if (failed) {
+            errors.get(operation.name()).increment();
+            allErrors.increment();
+          } else {
+            latencies.get(operation.name()).record(nanos);
+            all.record(nanos);
+          }
+        }
+      }
+    }
+
+    void startMeasuring() {
+      measureStart = System.nanoTime();
+      measuring = true;
+    }
+
+    long stop() {
+      stopped = true;
+      return System.nanoTime() - measureStart;
+    }
+
+    List<LoadReport.Row> rows(int count, String kind, long elapsedNanos) {
+      List<LoadReport.Row> rows = new ArrayList<>();
+      rows.add(row(count, kind, "all", all, allErrors, elapsedNanos));
+      latencies.forEach(
+          (name, histogram) ->
+              rows.add(row(count, kind, name, histogram, errors.get(name), elapsedNanos)));
+      return rows;
+    }
+
+    private LoadReport.Row row(
+        int count,
+        String kind,
+        String name,
+        LatencyHistogram histogram,
+        LongAdder failures,
+        long elapsedNanos) {
+      LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+      return new LoadReport.Row(
+          count,
+          kind,
+          name,
+          snapshot.getCount(),
+          failures.sum(),
+          snapshot.getCount() / (elapsedNanos / 1e9),
+          millis(snapshot.getPercentileNanos(0.50)),
+          millis(snapshot.getPercentileNanos(0.99)),
+          millis(snapshot.getPercentileNanos(0.999)),
+          millis(snapshot.getMaxNanos()));
+    }
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1e6;
+  }
+
+  public static final class Builder {
+    private final KeycloakStub stub;
+    private List<Integer> threads = List.of(1, 4, 16, 64);
+    private List<ThreadKind> threadKinds = List.of(ThreadKind.PLATFORM);
+    private Duration warmup = Duration.ofSeconds(2);
+    private Duration duration = Duration.ofSeconds(10);
+    private Workload workload = Workload.typical();
+    private IntFunction<Keycloak> clientFactory;
+
+    private Builder(KeycloakStub stub) {
+      this.stub = Objects.requireNonNull(stub, "stub");
+    }
+
+    /** Concurrency levels to run, in order. */
+    public Builder threads(Integer... threads) {
+      for (int count : threads) {
+        if (count < 1) {
+          throw new IllegalArgumentException("thread counts must be at least 1");
+        }
+      }
+      this.threads = List.of(threads);
+      return this;
+    }
+
+    /** Thread kinds to run every concurrency level with; defaults to platform threads. */
+    public Builder threadKinds(ThreadKind... threadKinds) {
+      this.threadKinds = List.of(threadKinds);
+      return this;
+    }
+
+    public Builder warmup(Duration warmup) {
+      this.warmup = Objects.requireNonNull(warmup, "warmup");
+      return this;
+    }
+
+    public Builder duration(Duration duration) {
+      this.duration = Objects.requireNonNull(duration, "duration");
+      return this;
+    }
+
+    public Builder workload(Workload workload) {
+      this.workload = Objects.requireNonNull(workload, "workload");
+      return this;
+    }
+
+    /**
+     * Creates the client for each concurrency level, e.g. to measure a specific pool size or
+     * feature set. The harness closes the returned client after the level.
+     */
+    public Builder clientFactory(IntFunction<Keycloak> clientFactory) {
+      this.clientFactory = clientFactory;
+      return this;
+    }
+
+    public LoadHarness build() {
+      return new LoadHarness(this);
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package io.phasetwo.keycloak.admin.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import io.phasetwo.keycloak.admin.stub.Latency;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class LoadHarnessTest {
+
+  @Test
+  void reportsEveryLevelAndOperation() throws Exception {
+    try (KeycloakStub stub =
+        KeycloakStub.builder().users(50).latency(Latency.fixed(Duration.ofMillis(1))).start()) {
+      LoadReport report =
+          LoadHarness.builder(stub)
+              .threads(1, 4)
+              .threadKinds(LoadHarness.ThreadKind.PLATFORM, LoadHarness.ThreadKind.VIRTUAL)
+              .warmup(Duration.ofMillis(500))
+              .duration(Duration.ofMillis(500))
+              .build()
+              .run();
+
+      // 2 kinds x 2 levels x (all + 4 operations)
+      assertEquals(20, report.rows().size());
+      List<LoadReport.Row> totals =
+          report.rows().stream().filter(row -> row.operation().equals("all")).toList();
+      for (LoadReport.Row row : totals) {
+        assertTrue(row.calls() > 0, row.toString());
+        assertEquals(0, row.errors(), row.toString());
+        assertTrue(row.p50Ms() >= 1, row.toString());
+        assertTrue(row.p99Ms() >= row.p50Ms(), row.toString());
+      }
+      String csv = report.toCsv();
+      assertTrue(csv.startsWith(LoadReport.CSV_HEADER + "\n"));
+      assertEquals(21, csv.lines().count());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package io.phasetwo.keycloak.admin.load;
+
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Results of a {@link LoadHarness} run: one row per concurrency level, thread kind and operation,
+ * plus an {@code "all"} row per level.
+ */
+public record LoadReport(List<Row> rows) {
+
+  static final String CSV_HEADER =
+      "threads,threadKind,operation,calls,errors,throughputPerSecond,p50Ms,p99Ms,p999Ms,maxMs";
+
+  /**
+   * @param threads number of threads making calls
+   * @param threadKind {@code platform} or {@code virtual}
+   * @param operation workload operation name, or {@code all}
+   * @param calls calls completed during the measurement
+   * @param errors calls that threw
+   * @param throughputPerSecond completed calls per second
+   * @param p50Ms median call latency in milliseconds
+   * @param p99Ms 99th percentile call latency in milliseconds
+   * @param p999Ms 99.9th percentile call latency in milliseconds
+   * @param maxMs slowest call in milliseconds
+   */
+  public record Row(
+      int threads,
+      String threadKind,
+      String operation,
+      long calls,
+      long errors,
+      double throughputPerSecond,
+      double p50Ms,
+      double p99Ms,
+      double p999Ms,
+      double maxMs) {
+
+    String toCsv() {
+      return String.format(
+          Locale.ROOT,
+          "%d,%s,%s,%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f",
+          threads,
+          threadKind,
+          operation,
+          calls,
+          errors,
+          throughputPerSecond,
+          p50Ms,
+          p99Ms,
+          p999Ms,
+          maxMs);
+    }
+  }
+
+  public String toCsv() {
+    StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+    for (Row row : rows) {
+      csv.append(row.toCsv()).append('\n');
+    }
+    return csv.toString();
+  }
+
+  public void writeCsv(Path file) throws IOException {
+    Files.writeString(file, toCsv(), StandardCharsets.UTF_8);
+  }
+
+  public void writeJson(Path file) throws IOException {
+    Files.writeString(
+        file, JsonSerialization.writeValueAsPrettyString(this), StandardCharsets.UTF_8);
+  }
+}
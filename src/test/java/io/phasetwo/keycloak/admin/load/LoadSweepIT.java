@@ -0,0 +1,58 @@
+package io.phasetwo.keycloak.admin.load;
+
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import io.phasetwo.keycloak.admin.stub.Latency;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Full thread-count sweep of the load harness against the stub, writing {@code
+ * target/load/report.csv} and {@code report.json}. Run explicitly; it takes several minutes:
+ *
+ * <pre>
+ * mvn -Dtest=LoadSweepIT test
+ * mvn -Dtest=LoadSweepIT -Dload.threads=1,64,512 -Dload.kinds=VIRTUAL -Dload.duration=PT30S test
+ * </pre>
+ */
+class LoadSweepIT {
+
+  @Test
+  void sweep() throws Exception {
+    Integer[] threads =
+        Arrays.stream(
+                System.getProperty("load.threads", "1,2,4,8,16,32,64,128,256,512,1024").split(","))
+            .map(String::trim)
+            .map(Integer::valueOf)
+            .toArray(Integer[]::new);
+    LoadHarness.ThreadKind[] kinds =
+        Arrays.stream(System.getProperty("load.kinds", "PLATFORM,VIRTUAL").split(","))
+            .map(String::trim)
+            .map(LoadHarness.ThreadKind::valueOf)
+            .toArray(LoadHarness.ThreadKind[]::new);
+    Duration duration = Duration.parse(System.getProperty("load.duration", "PT10S"));
+    Duration median = Duration.parse(System.getProperty("load.latency.median", "PT0.005S"));
+    Duration p99 = Duration.parse(System.getProperty("load.latency.p99", "PT0.05S"));
+
+    try (KeycloakStub stub =
+        KeycloakStub.builder()
+            .users(Integer.getInteger("load.users", 10_000))
+            .latency(Latency.logNormal(median, p99))
+            .start()) {
+      LoadReport report =
+          LoadHarness.builder(stub)
+              .threads(threads)
+              .threadKinds(kinds)
+              .warmup(Duration.ofSeconds(2))
+              .duration(duration)
+              .build()
+              .run();
+      Path dir = Files.createDirectories(Path.of("target", "load"));
+      report.writeCsv(dir.resolve("report.csv"));
+      report.writeJson(dir.resolve("report.json"));
+      System.out.print(report.toCsv());
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package io.phasetwo.keycloak.admin.load;
+
+import io.phasetwo.keycloak.admin.Keycloak;
+import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/** A weighted mix of admin operations that the {@link LoadHarness} draws from for every call. */
+public final class Workload {
+
+  /** One kind of call made by the workload. */
+  @FunctionalInterface
+  public interface Action {
+    /**
+     * @param keycloak the client under test
+     * @param realm the stub's realm
+     * @param userIds IDs of the users the stub started with
+     * @param random the calling thread's random source
+     */
+    void run(Keycloak keycloak, String realm, List<String> userIds, ThreadLocalRandom random);
+  }
+
+  /**
+   * @param name name used in reports
+   * @param weight relative frequency of the operation
+   */
+  public record Operation(String name, int weight, Action action) {
+    public Operation {
+      Objects.requireNonNull(name, "name");
+      Objects.requireNonNull(action, "action");
+      if (weight < 1) {
+        throw new IllegalArgumentException("weight must be at least 1");
+      }
+    }
+  }
+
+  private final List<Operation> operations;
+  private final int[] cumulative;
+
+  private Workload(List<Operation> operations) {
+    if (operations.isEmpty()) {
+      throw new IllegalArgumentException("a workload needs at least one operation");
+    }
+    this.operations = List.copyOf(operations);
+    this.cumulative = new int[operations.size()];
+    int total = 0;
+    for (int i = 0; i < operations.size(); i++) {
+      total += operations.get(i).weight();
+      cumulative[i] = total;
+    }
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * The mix of a typical provisioning or sync service: mostly user lookups, some searches and role
+   * mapping reads, and a few creates.
+   */
+  public static Workload typical() {
+    return builder()
+        .add("lookup", 60, Workload::lookup)
+        .add("search", 20, Workload::search)
+        .add("roleMappings", 15, Workload::roleMappings)
+        .add("create", 5, Workload::create)
+        .build();
+  }
+
+  public List<Operation> getOperations() {
+    return operations;
+  }
+
+  Operation next(ThreadLocalRandom random) {
+    int pick = random.nextInt(cumulative[cumulative.length - 1]);
+    for (int i = 0; i < cumulative.length; i++) {
+      if (pick < cumulative[i]) {
+        return operations.get(i);
+      }
+    }
+    throw new IllegalStateException();
+  }
+
+  static void lookup(Keycloak keycloak, String realm, List<String> ids, ThreadLocalRandom random) {
+    keycloak.realm(realm).users().get(ids.get(random.nextInt(ids.size()))).toRepresentation();
+  }
+
+  static void search(Keycloak keycloak, String realm, List<String> ids, ThreadLocalRandom random) {
+    keycloak.realm(realm).users().search("user" + random.nextInt(10), 0, 20);
+  }
+
+  static void roleMappings(
+      Keycloak keycloak, String realm, List<String> ids, ThreadLocalRandom random) {
+    keycloak
+        .realm(realm)
+        .users()
+        .get(ids.get(random.nextInt(ids.size())))
+        .roles()
+        .realmLevel()
+        .listEffective();
+  }
+
+  static void create(Keycloak keycloak, String realm, List<String> ids, ThreadLocalRandom random) {
+    UserRepresentation user = new UserRepresentation();
+    user.setUsername("load-" + UUID.randomUUID());
+    user.setEnabled(true);
+    try (Response response = keycloak.realm(realm).users().create(user)) {
+      if (response.getStatus() != 201) {
+        throw new IllegalStateException("create failed with status " + response.getStatus());
+      }
+    }
+  }
+
+  public static final class Builder {
+    private final List<Operation> operations = new ArrayList<>();
+
+    private Builder() {}
+
+    public Builder add(String name, int weight, Action action) {
+      operations.add(new Operation(name, weight, action));
+      return this;
+    }
+
+    public Workload build() {
+      return new Workload(operations);
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void bucketsAreContiguousAndCoverTheRange() {
+    for (long micros = 0; micros < 1_000_000; micros++) {
+      int index = LatencyHistogram.index(micros);
+      assertTrue(LatencyHistogram.upperBoundMicros(index) >= micros);
+      assertTrue(index == 0 || LatencyHistogram.upperBoundMicros(index - 1) < micros);
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.index(Long.MAX_VALUE / 1000));
+  }
+
+  @Test
+  void percentilesAreWithinBucketResolution() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int ms = 1; ms <= 1000; ms++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(TimeUnit.SECONDS.toNanos(1), snapshot.getMaxNanos());
+    assertWithin(TimeUnit.MILLISECONDS.toNanos(500), snapshot.getPercentileNanos(50));
+    assertWithin(TimeUnit.MILLISECONDS.toNanos(990), snapshot.getPercentileNanos(99));
+    assertEquals(TimeUnit.SECONDS.toNanos(1), snapshot.getPercentileNanos(100));
+    long atOrBelowHalf = snapshot.getCountAtOrBelow(TimeUnit.MILLISECONDS.toNanos(500));
+    assertTrue(atOrBelowHalf >= 485 && atOrBelowHalf <= 500, "was " + atOrBelowHalf);
+  }
+
+  @Test
+  void rendersPrometheusText() {
+    InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+    Endpoint endpoint = new Endpoint("UserResource", "toRepresentation");
+    registry.record(
+        endpoint,
+        new CallMetrics(200, false, TimeUnit.MILLISECONDS.toNanos(3), 0, 512, -1, -1, 1000));
+    registry.record(endpoint, new CallMetrics(-1, true, 1000, 0, 0, -1, -1, -1));
+
+    String text = registry.toPrometheus();
+    assertTrue(
+        text.contains(
+            "keycloak_admin_requests_total{resource=\"UserResource\",method=\"toRepresentation\","
+                + "status=\"2xx\"} 1\n"),
+        text);
+    assertTrue(
+        text.contains(
+            "keycloak_admin_errors_total{resource=\"UserResource\",method=\"toRepresentation\","
+                + "status=\"error\"} 1\n"),
+        text);
+    assertTrue(
+        text.contains(
+            "keycloak_admin_request_duration_seconds_bucket{resource=\"UserResource\","
+                + "method=\"toRepresentation\",status=\"2xx\",le=\"0.005\"} 1\n"),
+        text);
+    assertTrue(!text.contains("keycloak_admin_connection_lease_seconds_bucket"), text);
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(
+        Math.abs(actual - expected) <= expected * 0.035,
+        "expected ~" + expected + " was " + actual);
+  }
+}
@@ -0,0 +1,49 @@
+package io.phasetwo.keycloak.admin.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.phasetwo.keycloak.admin.Http;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+
+class RequestTimingsTest {
+
+  @Test
+  void measuresServerTimeAndBytes() throws Exception {
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    byte[] body = "{\"id\":\"1\"}".getBytes(StandardCharsets.UTF_8);
+    server.createContext(
+        "/",
+        exchange -> {
+          try {
+            Thread.sleep(20);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+          exchange.close();
+        });
+    server.start();
+    try (CloseableHttpClient client = RequestTimings.instrument(HttpClients.custom()).build()) {
+      String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/users";
+      try (Http.Response response = Http.doPost(url, client).json(Map.of()).asResponse()) {
+        assertEquals(200, response.getStatus());
+        assertEquals(body.length, response.getBytesReceived());
+        assertEquals(2, response.getBytesSent());
+        assertTrue(
+            RequestTimings.serverNanos(response.getContext()) >= TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(RequestTimings.leaseNanos(response.getContext()) >= 0);
+      }
+    } finally {
+      server.stop(0);
+    }
+  }
+}
@@ -0,0 +1,227 @@
+package io.phasetwo.keycloak.admin.paging;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.Keycloak;
+import io.phasetwo.keycloak.admin.KeycloakBuilder;
+import io.phasetwo.keycloak.admin.stub.KeycloakStub;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class PagedPublisherTest {
+
+  @Test
+  void streamsAllUsersInPages() throws Exception {
+    try (KeycloakStub stub = KeycloakStub.builder().users(250).start();
+        Keycloak keycloak =
+            KeycloakBuilder.builder()
+                .serverUrl(stub.getUrl())
+                .realm(stub.getRealm())
+                .grantType(CLIENT_CREDENTIALS)
+                .clientId("admin-cli")
+                .clientSecret("secret")
+                .build()) {
+      Recorder<UserRepresentation> recorder = new Recorder<>(Long.MAX_VALUE);
+
+      PagedPublisher.users(keycloak.realm(stub.getRealm()).users())
+          .pageSize(100)
+          .build()
+          .subscribe(recorder);
+
+      assertTrue(recorder.done.await(10, TimeUnit.SECONDS));
+      assertNull(recorder.error);
+      assertEquals(
+          stub.getUserIds(), recorder.items.stream().map(UserRepresentation::getId).toList());
+      assertEquals(3, stub.getRequestCount("GET /users"));
+    }
+  }
+
+  @Test
+  void fetchesPagesOnlyAsRequested() {
+    CountingFetcher fetcher = new CountingFetcher(1000);
+    Recorder<Integer> recorder = new Recorder<>(5);
+
+    // a direct executor runs each page request inside request(), so the counts are exact
+    PagedPublisher.builder(fetcher)
+        .pageSize(10)
+        .executor(Runnable::run)
+        .build()
+        .subscribe(recorder);
+
+    assertEquals(List.of(0, 1, 2, 3, 4), List.copyOf(recorder.items));
+    // the page that served the demand, and one read ahead
+    assertEquals(2, fetcher.calls.get());
+
+    recorder.subscription.request(10);
+    assertEquals(15, recorder.items.size());
+    // 5 items were left, under one page, so one more page was read ahead: 15 buffered with no
+    // demand, fewer than readAhead + 1 pages
+    assertEquals(3, fetcher.calls.get());
+    assertFalse(recorder.completed);
+  }
+
+  @Test
+  void withoutReadAheadFetchesOnlyForDemand() {
+    CountingFetcher fetcher = new CountingFetcher(1000);
+    Recorder<Integer> recorder = new Recorder<>(5);
+
+    PagedPublisher.builder(fetcher)
+        .pageSize(10)
+        .readAhead(0)
+        .executor(Runnable::run)
+        .build()
+        .subscribe(recorder);
+
+    assertEquals(5, recorder.items.size());
+    assertEquals(1, fetcher.calls.get());
+    recorder.subscription.request(5);
+    assertEquals(10, recorder.items.size());
+    assertEquals(1, fetcher.calls.get());
+  }
+
+  @Test
+  void completesAfterAShortPageAndStopsWhenCancelled() {
+    CountingFetcher fetcher = new CountingFetcher(25);
+    Recorder<Integer> all = new Recorder<>(Long.MAX_VALUE);
+    PagedPublisher<Integer> publisher =
+        PagedPublisher.builder(fetcher).pageSize(10).executor(Runnable::run).build();
+
+    publisher.subscribe(all);
+    assertEquals(25, all.items.size());
+    assertTrue(all.completed);
+    assertEquals(3, fetcher.calls.get());
+
+    Recorder<Integer> cancelled = new Recorder<>(3);
+    publisher.subscribe(cancelled);
+    cancelled.subscription.cancel();
+    cancelled.subscription.request(100);
+    assertEquals(3, cancelled.items.size());
+    assertFalse(cancelled.completed);
+    assertEquals(5, fetcher.calls.get());
+  }
+
+  @Test
+  void signalsFetchFailuresAndInvalidRequests() {
+    IllegalStateException failure = new IllegalStateException("page 2");
+    Recorder<Integer> recorder = new Recorder<>(Long.MAX_VALUE);
+    PagedPublisher.<Integer>builder(
+            (first, max) -> {
+              if (first > 0) {
+                throw failure;
+              }
+              return IntStream.range(0, max).boxed().toList();
+            })
+        .pageSize(10)
+        .executor(Runnable::run)
+        .build()
+        .subscribe(recorder);
+
+    assertEquals(10, recorder.items.size());
+    assertEquals(failure, recorder.error);
+
+    Recorder<Integer> invalid = new Recorder<>(0);
+    PagedPublisher.builder(new CountingFetcher(10))
+        .executor(Runnable::run)
+        .build()
+        .subscribe(invalid);
+    invalid.subscription.request(0);
+    assertInstanceOf(IllegalArgumentException.class, invalid.error);
+  }
+
+  @Test
+  void signalsAnInvalidRequestWhileAPageIsBeingFetched() throws Exception {
+    CountDownLatch fetching = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Recorder<Integer> recorder = new Recorder<>(5);
+    PagedPublisher.<Integer>builder(
+            (first, max) -> {
+              fetching.countDown();
+              try {
+                release.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+              return IntStream.range(first, first + max).boxed().toList();
+            })
+        .pageSize(10)
+        .build()
+        .subscribe(recorder);
+
+    assertTrue(fetching.await(5, TimeUnit.SECONDS));
+    recorder.subscription.request(0);
+    release.countDown();
+
+    assertTrue(recorder.done.await(5, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalArgumentException.class, recorder.error);
+    assertEquals(List.of(), List.copyOf(recorder.items));
+    assertFalse(recorder.completed);
+  }
+
+  /** Serves the integers from 0 up to {@code total}. */
+  private static final class CountingFetcher implements PagedPublisher.Fetcher<Integer> {
+    private final int total;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    CountingFetcher(int total) {
+      this.total = total;
+    }
+
+    @Override
+    public List<Integer> fetch(int first, int max) {
+      calls.incrementAndGet();
+      return IntStream.range(first, Math.min(first + max, total)).boxed().toList();
+    }
+  }
+
+  /** Requests {@code initial} items on subscription and records every signal. */
+  private static final class Recorder<T> implements Flow.Subscriber<T> {
+    private final long initial;
+    private final Queue<T> items = new ConcurrentLinkedQueue<>();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Flow.Subscription subscription;
+    private volatile boolean completed;
+    private volatile Throwable error;
+
+    Recorder(long initial) {
+      this.initial = initial;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      if (initial > 0) {
+        subscription.request(initial);
+      }
+    }
+
+    @Override
+    public void onNext(T item) {
+      items.add(item);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      done.countDown();
+    }
+  }
+}
@@ -0,0 +1,113 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private final AtomicLong clock = new AtomicLong();
+
+  private final CircuitBreakerConfig config =
+      CircuitBreakerConfig.builder()
+          .slidingWindowSize(10)
+          .minimumNumberOfCalls(4)
+          .failureRateThreshold(50)
+          .slowCallRateThreshold(50)
+          .slowCallDurationThreshold(Duration.ofSeconds(1))
+          .waitDurationInOpenState(Duration.ofSeconds(5))
+          .permittedCallsInHalfOpenState(2)
+          .build();
+
+  private final CircuitBreaker breaker = new CircuitBreaker("test", config, clock::get);
+
+  @Test
+  void opensOnceFailureRateCrossesThreshold() {
+    call(200);
+    call(500);
+    call(200);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    call(503);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    CircuitBreakerOpenException e =
+        assertThrows(CircuitBreakerOpenException.class, breaker::acquirePermission);
+    assertEquals(Duration.ofSeconds(5), e.getRetryAfter());
+    assertEquals(1, breaker.getMetrics().notPermittedCalls());
+  }
+
+  @Test
+  void opensOnSlowCalls() {
+    for (int i = 0; i < 4; i++) {
+      breaker.acquirePermission();
+      breaker.onSuccess(Duration.ofSeconds(2).toNanos());
+    }
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  void clientErrorsDoNotCount() {
+    for (int i = 0; i < 10; i++) {
+      call(404);
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  void halfOpenTrialCallsCloseOrReopen() {
+    List<String> transitions = new ArrayList<>();
+    breaker.addStateTransitionListener((cb, from, to) -> transitions.add(from + "->" + to));
+    for (int i = 0; i < 4; i++) {
+      call(500);
+    }
+    clock.addAndGet(Duration.ofSeconds(5).toNanos());
+
+    breaker.acquirePermission();
+    breaker.acquirePermission();
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertThrows(CircuitBreakerOpenException.class, breaker::acquirePermission);
+    breaker.onResult(500, 0);
+    breaker.onResult(500, 0);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    clock.addAndGet(Duration.ofSeconds(5).toNanos());
+    call(200);
+    call(200);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    assertEquals(
+        List.of(
+            "CLOSED->OPEN",
+            "OPEN->HALF_OPEN",
+            "HALF_OPEN->OPEN",
+            "OPEN->HALF_OPEN",
+            "HALF_OPEN->CLOSED"),
+        transitions);
+    CircuitBreaker.Metrics metrics = breaker.getMetrics();
+    assertEquals(2, metrics.transitions(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN));
+    assertEquals(0, metrics.bufferedCalls());
+  }
+
+  @Test
+  void registrySharesBreakersByKey() throws Exception {
+    CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(config);
+    var get = Object.class.getMethod("toString");
+    var otherGet = Object.class.getMethod("hashCode");
+    var delete = Object.class.getMethod("notify");
+    assertEquals(
+        registry.circuitBreaker(String.class, get, "GET"),
+        registry.circuitBreaker(String.class, otherGet, "GET"));
+    registry.circuitBreaker(String.class, delete, "DELETE");
+    assertEquals(2, registry.getMetrics().size());
+  }
+
+  private void call(int status) {
+    breaker.acquirePermission();
+    breaker.onResult(status, 0);
+  }
+}
@@ -0,0 +1,125 @@
+package io.phasetwo.keycloak.admin.resilience;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.phasetwo.keycloak.admin.Http;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+class HedgerTest {
+
+  @Test
+  void fastCallsAreNotHedged() throws IOException {
+    try (Hedger hedger = new Hedger(HedgingPolicy.builder().delay(Duration.ofSeconds(5)).build())) {
+      for (int i = 0; i < 10; i++) {
+        assertEquals(200, hedger.execute("key", attempt -> response(200)).getStatus());
+      }
+      assertEquals(new Hedger.Stats(10, 0, 0, 0), hedger.getStats());
+    }
+  }
+
+  @Test
+  void slowCallIsHedgedAndLoserAborted() throws IOException {
+    AtomicBoolean primaryAborted = new AtomicBoolean();
+    try (Hedger hedger = new Hedger(HedgingPolicy.builder().delay(Duration.ofMillis(20)).build())) {
+      Http.Response response =
+          hedger.execute(
+              "key",
+              attempt -> {
+                if (attempt.isHedge()) {
+                  return response(204);
+                }
+                Http request = Http.doGet("http://kc1:8080/admin/realms", null);
+                attempt.register(request);
+                awaitAbort(request);
+                primaryAborted.set(true);
+                throw new RequestAbortedException("Request aborted");
+              });
+      assertEquals(204, response.getStatus());
+      assertTrue(primaryAborted.get());
+      assertEquals(new Hedger.Stats(1, 1, 1, 0), hedger.getStats());
+    }
+  }
+
+  @Test
+  void failedHedgeFallsBackToPrimary() throws IOException {
+    try (Hedger hedger = new Hedger(HedgingPolicy.builder().delay(Duration.ofMillis(10)).build())) {
+      Http.Response response =
+          hedger.execute(
+              "key",
+              attempt -> {
+                if (attempt.isHedge()) {
+                  throw new IOException("refused");
+                }
+                sleep(100);
+                return response(200);
+              });
+      assertEquals(200, response.getStatus());
+      assertEquals(new Hedger.Stats(1, 1, 0, 0), hedger.getStats());
+    }
+  }
+
+  @Test
+  void hedgeRateIsCapped() throws IOException {
+    HedgingPolicy policy =
+        HedgingPolicy.builder()
+            .delay(Duration.ofMillis(1))
+            .maxHedgeRatio(0.1)
+            .maxHedgeBurst(1)
+            .build();
+    try (Hedger hedger = new Hedger(policy)) {
+      for (int i = 0; i < 3; i++) {
+        hedger.execute(
+            "key",
+            attempt -> {
+              if (!attempt.isHedge()) {
+                sleep(30);
+              }
+              return response(200);
+            });
+      }
+      Hedger.Stats stats = hedger.getStats();
+      assertEquals(1, stats.hedges());
+      assertEquals(2, stats.throttled());
+    }
+  }
+
+  @Test
+  void percentileDelayTracksObservedLatency() {
+    LatencyWindow window = new LatencyWindow(100);
+    assertEquals(-1, window.percentile(95, 10));
+    for (int i = 1; i <= 100; i++) {
+      window.record(i);
+    }
+    assertEquals(95, window.percentile(95, 10));
+    assertEquals(50, window.percentile(50, 10));
+  }
+
+  private static void awaitAbort(Http request) throws IOException {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!request.isAborted()) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new IOException("not aborted");
+      }
+      sleep(1);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Http.Response response(int status) {
+    return new Http.Response(new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null));
+  }
+}
@@ -0,0 +1,52 @@
+package io.phasetwo.keycloak.admin.resource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import jakarta.ws.rs.core.GenericType;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class ResourceProxyFactoryTest {
+
+  @Test
+  void extractsRealmFromAdminAndProtocolUrls() {
+    assertEquals("acme", ResourceProxyFactory.realmOf("http://kc/admin/realms/acme/users/1"));
+    assertEquals("acme", ResourceProxyFactory.realmOf("http://kc/admin/realms/acme"));
+    assertEquals("acme", ResourceProxyFactory.realmOf("http://kc/admin/realms/acme?x=1"));
+    assertEquals(
+        "master", ResourceProxyFactory.realmOf("http://kc/realms/master/protocol/openid-connect"));
+    assertNull(ResourceProxyFactory.realmOf("http://kc/admin/realms"));
+    assertNull(ResourceProxyFactory.realmOf("http://kc/admin/serverinfo"));
+  }
+
+  @Test
+  void readsReturnValuesWithOneReaderPerMethod() throws Exception {
+    Method list = UsersResource.class.getMethod("list", Integer.class, Integer.class);
+    Method search = UsersResource.class.getMethod("search", String.class);
+
+    assertSame(ResourceProxyFactory.readerFor(list), ResourceProxyFactory.readerFor(list));
+    // methods with the same return type share the reader
+    assertSame(ResourceProxyFactory.readerFor(list), ResourceProxyFactory.readerFor(search));
+    List<UserRepresentation> users =
+        ResourceProxyFactory.readerFor(list).readValue("[{\"username\":\"alice\"}]");
+    assertEquals("alice", users.get(0).getUsername());
+
+    SimpleResponse response =
+        new SimpleResponse(
+            200,
+            null,
+            ByteBuffer.wrap("[{\"username\":\"bob\"}]".getBytes(StandardCharsets.UTF_8)),
+            null,
+            null);
+    assertEquals(
+        "bob",
+        response.readEntity(new GenericType<List<UserRepresentation>>() {}).get(0).getUsername());
+  }
+}
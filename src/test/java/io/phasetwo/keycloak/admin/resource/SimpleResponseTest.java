@@ -0,0 +1,87 @@
+package io.phasetwo.keycloak.admin.resource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import jakarta.ws.rs.core.GenericType;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.jupiter.api.Test;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class SimpleResponseTest {
+
+  private static final String USERS = "[{\"username\":\"zoë\"}]";
+
+  @Test
+  void readsTheEntityLazilyAndKeepsTheLastValue() throws Exception {
+    byte[] body = USERS.getBytes(StandardCharsets.UTF_8);
+    SimpleResponse response =
+        new SimpleResponse(200, null, ByteBuffer.wrap(body), StandardCharsets.UTF_8, null);
+
+    GenericType<List<UserRepresentation>> users = new GenericType<>() {};
+    List<UserRepresentation> first = response.readEntity(users);
+    assertEquals("zoë", first.get(0).getUsername());
+    assertSame(first, response.readEntity(new GenericType<List<UserRepresentation>>() {}));
+    UserRepresentation[] array = response.readEntity(UserRepresentation[].class);
+    assertEquals("zoë", array[0].getUsername());
+    assertNotSame(first, response.readEntity(users));
+
+    assertEquals(USERS, response.readEntity(String.class));
+    assertSame(body, response.readEntity(byte[].class));
+    try (InputStream in = response.readEntity(InputStream.class)) {
+      assertArrayEquals(body, in.readAllBytes());
+    }
+    assertEquals(body.length, response.getLength());
+    assertTrue(response.hasEntity());
+
+    // decoded before parsing when Jackson cannot detect the charset from the bytes
+    SimpleResponse latin1 =
+        new SimpleResponse(
+            200,
+            null,
+            ByteBuffer.wrap(USERS.getBytes(StandardCharsets.ISO_8859_1)),
+            StandardCharsets.ISO_8859_1,
+            null);
+    assertEquals("zoë", latin1.readEntity(users).get(0).getUsername());
+
+    SimpleResponse blank =
+        new SimpleResponse(204, null, ByteBuffer.wrap(" \n".getBytes()), null, null);
+    assertFalse(blank.hasEntity());
+    assertNull(new SimpleResponse(204, null, null, null, null).readEntity(String.class));
+  }
+
+  @Test
+  void buildsHeaderViewsOnDemand() {
+    Header[] headers = {
+      new BasicHeader("Location", "http://kc/admin/realms/test/users/1"),
+      new BasicHeader("Allow", "GET"),
+      new BasicHeader("allow", "PUT")
+    };
+    SimpleResponse response = new SimpleResponse(201, headers, null, null, "application/json");
+
+    assertEquals("GET,PUT", response.getHeaderString("Allow"));
+    assertNull(response.getHeaderString("ETag"));
+    assertEquals("/admin/realms/test/users/1", response.getLocation().getPath());
+    assertSame(response.getMetadata(), response.getMetadata());
+    assertEquals(List.of("GET", "PUT"), response.getStringHeaders().get("allow"));
+    assertEquals(3, response.getMetadata().values().stream().mapToInt(List::size).sum());
+
+    // string headers are a copy, while changes to the metadata are seen by every view
+    response.getStringHeaders().putSingle("Allow", "DELETE");
+    assertEquals("GET,PUT", response.getHeaderString("allow"));
+    response.getMetadata().add("ETag", "\"1\"");
+    assertEquals("\"1\"", response.getHeaderString("ETag"));
+    assertEquals(List.of("\"1\""), response.getStringHeaders().get("etag"));
+    assertNotSame(response.getStringHeaders(), response.getStringHeaders());
+  }
+}
@@ -0,0 +1,151 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.Http;
+import io.phasetwo.keycloak.admin.Keycloak;
+import io.phasetwo.keycloak.admin.KeycloakBuilder;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.Test;
+
+class LoadBalancerTest {
+
+  private static final List<String> URLS = List.of("http://kc1:8080/", "http://kc2:8080");
+
+  @Test
+  void rewritesRequestsToTheChosenNode() throws IOException {
+    LoadBalancer lb = LoadBalancer.of(URLS);
+    List<String> seen = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      lb.execute(
+          "http://kc1:8080/admin/realms/test",
+          true,
+          url -> {
+            seen.add(url);
+            return response(200);
+          });
+    }
+    assertTrue(seen.contains("http://kc1:8080/admin/realms/test"));
+    assertTrue(seen.contains("http://kc2:8080/admin/realms/test"));
+  }
+
+  @Test
+  void eachClientBuiltFromABuilderGetsItsOwnNodes() {
+    KeycloakBuilder builder =
+        KeycloakBuilder.builder()
+            .realm("test")
+            .grantType(CLIENT_CREDENTIALS)
+            .clientId("admin-cli")
+            .clientSecret("secret")
+            .serverUrls(URLS);
+    try (Keycloak first = builder.build();
+        Keycloak second =
+            builder.serverUrls(List.of("http://kc3:8080", "http://kc4:8080")).build();
+        Keycloak single = builder.serverUrls(List.of("http://kc5:8080")).build()) {
+      assertNotSame(first.loadBalancer(), second.loadBalancer());
+      assertEquals(
+          List.of("http://kc1:8080", "http://kc2:8080"),
+          first.loadBalancer().getNodes().stream().map(ServerNode::getUrl).toList());
+      assertEquals(
+          List.of("http://kc3:8080", "http://kc4:8080"),
+          second.loadBalancer().getNodes().stream().map(ServerNode::getUrl).toList());
+      assertNull(single.loadBalancer());
+    }
+
+    assertThrows(IllegalStateException.class, () -> builder.serverUrl("http://kc1:8080").build());
+    assertThrows(
+        IllegalStateException.class,
+        () -> builder.serverUrl(null).loadBalancer(LoadBalancer.of(URLS)).build());
+  }
+
+  @Test
+  void leavesForeignUrlsAlone() throws IOException {
+    LoadBalancer lb = LoadBalancer.of(URLS);
+    List<String> seen = new ArrayList<>();
+    lb.execute(
+        "http://kc1:80801/admin",
+        true,
+        url -> {
+          seen.add(url);
+          return response(200);
+        });
+    assertEquals(List.of("http://kc1:80801/admin"), seen);
+  }
+
+  @Test
+  void failsOverIdempotentCallsAndEjectsFailingNode() throws IOException {
+    LoadBalancer lb =
+        LoadBalancer.builder(URLS)
+            .ejectionThreshold(1)
+            .ejectionDuration(Duration.ofMinutes(1))
+            .build();
+    for (int i = 0; i < 10; i++) {
+      Http.Response response =
+          lb.execute(
+              "http://kc1:8080/admin/realms",
+              true,
+              url -> {
+                if (url.startsWith("http://kc2")) {
+                  throw new ConnectException("refused");
+                }
+                return response(200);
+              });
+      assertEquals(200, response.getStatus());
+    }
+    ServerNode kc2 = lb.getNodes().get(1);
+    assertFalse(kc2.isAvailable());
+    assertEquals(1, kc2.getStats().ejections());
+  }
+
+  @Test
+  void newNodesAreAvailableWhateverTheClockOrigin() {
+    // System.nanoTime() has an arbitrary origin and may be negative
+    ServerNode node = LoadBalancer.of(URLS).getNodes().get(0);
+    assertTrue(node.isAvailable(Long.MIN_VALUE / 2));
+    assertTrue(node.isAvailable(-1));
+    assertTrue(node.isAvailable(0));
+  }
+
+  @Test
+  void doesNotFailOverNonIdempotentCalls() {
+    LoadBalancer lb = LoadBalancer.of(URLS);
+    List<String> seen = new ArrayList<>();
+    assertThrows(
+        ConnectException.class,
+        () ->
+            lb.execute(
+                "http://kc1:8080/admin/realms",
+                LoadBalancer.isIdempotent("POST"),
+                url -> {
+                  seen.add(url);
+                  throw new ConnectException("refused");
+                }));
+    assertEquals(1, seen.size());
+  }
+
+  @Test
+  void returnsLastGatewayErrorWhenAllNodesFail() throws IOException {
+    LoadBalancer lb = LoadBalancer.of(URLS);
+    Http.Response response = lb.execute("http://kc1:8080/admin", true, url -> response(503));
+    assertEquals(503, response.getStatus());
+    for (ServerNode node : lb.getNodes()) {
+      assertEquals(1, node.getStats().failures());
+    }
+  }
+
+  static Http.Response response(int status) {
+    return new Http.Response(new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null));
+  }
+}
@@ -0,0 +1,80 @@
+package io.phasetwo.keycloak.admin.routing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class RealmAffinityTest {
+
+  private final LoadBalancer lb =
+      LoadBalancer.builder(List.of("http://kc1", "http://kc2", "http://kc3"))
+          .selector(new RealmAffinity())
+          .build();
+  private final List<ServerNode> nodes = lb.getNodes();
+  private final NodeSelector selector = new RealmAffinity().bind(nodes);
+
+  @Test
+  void sameRealmAlwaysGoesToTheSameNode() {
+    ServerNode home = selector.select(nodes, "acme");
+    for (int i = 0; i < 100; i++) {
+      assertEquals(home, selector.select(nodes, "acme"));
+    }
+  }
+
+  @Test
+  void realmsAreSpreadOverAllNodes() {
+    Map<ServerNode, Integer> counts = new HashMap<>();
+    for (int i = 0; i < 3000; i++) {
+      counts.merge(selector.select(nodes, "realm-" + i), 1, Integer::sum);
+    }
+    assertEquals(3, counts.size());
+    counts.values().forEach(c -> assertTrue(c > 700, "unbalanced ring: " + counts));
+  }
+
+  @Test
+  void removingANodeOnlyMovesItsOwnRealms() {
+    ServerNode removed = nodes.get(1);
+    List<ServerNode> remaining = new ArrayList<>(nodes);
+    remaining.remove(removed);
+    for (int i = 0; i < 1000; i++) {
+      String realm = "realm-" + i;
+      ServerNode before = selector.select(nodes, realm);
+      ServerNode after = selector.select(remaining, realm);
+      if (before != removed) {
+        assertEquals(before, after);
+      } else {
+        assertNotEquals(removed, after);
+      }
+    }
+  }
+
+  @Test
+  void hotNodeSpillsToTheNextNodeOnTheRing() {
+    ServerNode home = selector.select(nodes, "acme");
+    for (int i = 0; i < 10; i++) {
+      home.begin();
+    }
+    ServerNode overflow = selector.select(nodes, "acme");
+    assertNotEquals(home, overflow);
+    for (int i = 0; i < 10; i++) {
+      home.end();
+    }
+    assertEquals(home, selector.select(nodes, "acme"));
+  }
+
+  @Test
+  void requestsWithoutRealmAreBalanced() {
+    HashSet<ServerNode> seen = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      seen.add(selector.select(nodes, null));
+    }
+    assertEquals(3, seen.size());
+  }
+}
@@ -0,0 +1,521 @@
+package io.phasetwo.keycloak.admin.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.phasetwo.keycloak.admin.JsonSerialization;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.keycloak.representations.AccessTokenResponse;
+import org.keycloak.representations.idm.GroupRepresentation;
+import org.keycloak.representations.idm.RealmRepresentation;
+import org.keycloak.representations.idm.RoleRepresentation;
+import org.keycloak.representations.idm.UserRepresentation;
+
+/**
+ * In-process stand-in for a Keycloak server, for load, latency and timeout tests that must run
+ * offline and give the same results on every run. It serves the token endpoint and a representative
+ * part of the admin API for a single realm:
+ *
+ * <ul>
+ *   <li>{@code POST /realms/{realm}/protocol/openid-connect/token} and {@code .../logout}
+ *   <li>{@code GET /admin/realms/{realm}}
+ *   <li>{@code GET|POST /admin/realms/{realm}/users}, with {@code search}, {@code username}, {@code
+ *       first} and {@code max}
+ *   <li>{@code GET|PUT|DELETE /admin/realms/{realm}/users/{id}}
+ *   <li>{@code GET /admin/realms/{realm}/users/{id}/role-mappings/realm[/composite]}
+ *   <li>{@code GET /admin/realms/{realm}/roles} and {@code GET /admin/realms/{realm}/groups}
+ * </ul>
+ *
+ * <p>Admin endpoints answer 401 without a bearer token. Every request is delayed by the configured
+ * {@link Latency} and then checked against the {@linkplain Builder#fault fault rules}. Requests are
+ * handled on an unbounded pool of platform threads, so delays do not limit concurrency, and client
+ * virtual threads that pin their carrier cannot starve the stub.
+ *
+ * <p>The JDK server only disables Nagle's algorithm when {@code sun.net.httpserver.nodelay} is set
+ * before its first use. Without it, small responses can wait for a delayed ACK of 40 ms or more, so
+ * the stub sets it unless it has been set already; the test build also sets it for every test.
+ */
+public final class KeycloakStub implements AutoCloseable {
+
+  private static final Pattern TOKEN =
+      Pattern.compile("/realms/([^/]+)/protocol/openid-connect/(token|logout)");
+  private static final Pattern ADMIN = Pattern.compile("/admin/realms/([^/]+)(/.*)?");
+  private static final Pattern USER = Pattern.compile("/users/([^/]+)");
+  private static final Pattern USER_ROLES =
+      Pattern.compile("/users/([^/]+)/role-mappings/realm(/composite)?");
+
+  static {
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+
+  private final String realm;
+  private final Duration tokenLifespan;
+  private final Latency latency;
+  private final Latency tokenLatency;
+  private final List<Fault> faults;
+  private final NavigableMap<String, UserRepresentation> users = new ConcurrentSkipListMap<>();
+  private final Map<String, String> usernames = new ConcurrentHashMap<>();
+  private final byte[] realmJson;
+  private final byte[] rolesJson;
+  private final byte[] groupsJson;
+  private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+  private final AtomicLong tokens = new AtomicLong();
+  private final ExecutorService executor =
+      Executors.newCachedThreadPool(
+          runnable -> {
+            Thread thread = new Thread(runnable, "keycloak-stub");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private final HttpServer server;
+
+  private KeycloakStub(Builder builder) throws IOException {
+    this.realm = builder.realm;
+    this.tokenLifespan = builder.tokenLifespan;
+    this.latency = builder.latency;
+    this.tokenLatency = builder.tokenLatency;
+    this.faults = List.copyOf(builder.faults);
+    for (int i = 0; i < builder.users; i++) {
+      UserRepresentation user = user(i, builder.attributes, builder.attributeSize);
+      users.put(user.getId(), user);
+      usernames.put(user.getUsername(), user.getId());
+    }
+    RealmRepresentation representation = new RealmRepresentation();
+    representation.setId(realm);
+    representation.setRealm(realm);
+    representation.setEnabled(true);
+    this.realmJson = JsonSerialization.writeValueAsBytes(representation);
+    this.rolesJson = JsonSerialization.writeValueAsBytes(roles(builder.roles));
+    this.groupsJson = JsonSerialization.writeValueAsBytes(groups(builder.groups));
+
+    this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", builder.port), 1024);
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+    server.start();
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** The server URL to pass to {@code KeycloakBuilder.serverUrl}. */
+  public String getUrl() {
+    return "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  public String getRealm() {
+    return realm;
+  }
+
+  /** IDs of the users currently in the realm, in the order they are listed. */
+  public List<String> getUserIds() {
+    return List.copyOf(users.keySet());
+  }
+
+  /** Access tokens issued so far. */
+  public long getTokensIssued() {
+    return tokens.get();
+  }
+
+  /**
+   * Requests answered for a route, e.g. {@code "GET /users/{id}"} or {@code "POST token"},
+   * including those that failed through a fault rule.
+   */
+  public long getRequestCount(String route) {
+    LongAdder count = counts.get(route);
+    return count == null ? 0 : count.sum();
+  }
+
+  /** Requests answered over all routes. */
+  public long getRequestCount() {
+    long total = 0;
+    for (LongAdder count : counts.values()) {
+      total += count.sum();
+    }
+    return total;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String method = exchange.getRequestMethod();
+      String path = exchange.getRequestURI().getRawPath();
+      byte[] body = exchange.getRequestBody().readAllBytes();
+      Reply reply;
+      String route;
+      Matcher token = TOKEN.matcher(path);
+      Matcher admin = ADMIN.matcher(path);
+      if (token.matches() && "POST".equals(method) && realm.equals(token.group(1))) {
+        route = "POST " + token.group(2);
+        delay(tokenLatency);
+        reply = "token".equals(token.group(2)) ? token() : Reply.empty(204);
+      } else if (admin.matches() && realm.equals(admin.group(1))) {
+        String subPath = admin.group(2) == null ? "" : admin.group(2);
+        route = method + " " + route(subPath);
+        delay(latency);
+        reply =
+            hasBearerToken(exchange)
+                ? admin(method, subPath, exchange.getRequestURI().getRawQuery(), body)
+                : Reply.empty(401);
+      } else {
+        route = method + " " + path;
+        reply = Reply.empty(404);
+      }
+      counts.computeIfAbsent(route, k -> new LongAdder()).increment();
+      for (Fault fault : faults) {
+        if (fault.matches(route)) {
+          reply = Reply.empty(fault.status());
+          break;
+        }
+      }
+      send(exchange, reply);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String route(String subPath) {
+    Matcher roles = USER_ROLES.matcher(subPath);
+    if (roles.matches()) {
+      return "/users/{id}/role-mappings/realm" + (roles.group(2) == null ? "" : "/composite");
+    }
+    return USER.matcher(subPath).matches() ? "/users/{id}" : subPath;
+  }
+
+  private Reply admin(String method, String subPath, String query, byte[] body) throws IOException {
+    try {
+      return dispatch(method, subPath, query, body);
+    } catch (RuntimeException e) {
+      // the JDK server drops the connection without a response if a handler throws
+      return Reply.empty(500);
+    }
+  }
+
+  private Reply dispatch(String method, String subPath, String query, byte[] body)
+      throws IOException {
+    Matcher user = USER.matcher(subPath);
+    Matcher roles = USER_ROLES.matcher(subPath);
+    switch (method + " " + route(subPath)) {
+      case "GET ":
+        return Reply.json(realmJson);
+      case "GET /roles",
+          "GET /users/{id}/role-mappings/realm",
+          "GET /users/{id}/role-mappings/realm/composite":
+        if (roles.matches() && !users.containsKey(roles.group(1))) {
+          return Reply.empty(404);
+        }
+        return Reply.json(rolesJson);
+      case "GET /groups":
+        return Reply.json(groupsJson);
+      case "GET /users":
+        return Reply.json(JsonSerialization.writeValueAsBytes(search(parse(query))));
+      case "POST /users":
+        return create(JsonSerialization.readValue(body, UserRepresentation.class));
+      case "GET /users/{id}":
+        {
+          user.matches();
+          UserRepresentation found = users.get(user.group(1));
+          return found == null
+              ? Reply.empty(404)
+              : Reply.json(JsonSerialization.writeValueAsBytes(found));
+        }
+      case "PUT /users/{id}":
+        {
+          user.matches();
+          UserRepresentation update = JsonSerialization.readValue(body, UserRepresentation.class);
+          update.setId(user.group(1));
+          return users.replace(user.group(1), update) == null ? Reply.empty(404) : Reply.empty(204);
+        }
+      case "DELETE /users/{id}":
+        {
+          user.matches();
+          UserRepresentation removed = users.remove(user.group(1));
+          if (removed == null) {
+            return Reply.empty(404);
+          }
+          usernames.remove(removed.getUsername());
+          return Reply.empty(204);
+        }
+      default:
+        return Reply.empty(404);
+    }
+  }
+
+  private List<UserRepresentation> search(Map<String, String> query) {
+    String search = lower(query.get("search"));
+    String username = lower(query.get("username"));
+    int first = Integer.parseInt(query.getOrDefault("first", "0"));
+    int max = Integer.parseInt(query.getOrDefault("max", "100"));
+    List<UserRepresentation> page = new ArrayList<>();
+    int skipped = 0;
+    for (UserRepresentation user : users.values()) {
+      if (page.size() >= max) {
+        break;
+      }
+      if (username != null && !user.getUsername().contains(username)) {
+        continue;
+      }
+      if (search != null
+          && !user.getUsername().contains(search)
+          && (user.getEmail() == null || !lower(user.getEmail()).contains(search))) {
+        continue;
+      }
+      if (skipped++ >= first) {
+        page.add(user);
+      }
+    }
+    return page;
+  }
+
+  private Reply create(UserRepresentation user) {
+    String username = lower(user.getUsername());
+    if (username == null) {
+      return Reply.empty(400);
+    }
+    String id = UUID.randomUUID().toString();
+    if (usernames.putIfAbsent(username, id) != null) {
+      return Reply.empty(409);
+    }
+    user.setId(id);
+    user.setUsername(username);
+    user.setCreatedTimestamp(System.currentTimeMillis());
+    users.put(id, user);
+    return new Reply(
+        201, null, Map.of("Location", getUrl() + "/admin/realms/" + realm + "/users/" + id));
+  }
+
+  private Reply token() throws IOException {
+    AccessTokenResponse response = new AccessTokenResponse();
+    response.setToken("stub-access-" + tokens.incrementAndGet());
+    response.setRefreshToken("stub-refresh-" + tokens.get());
+    response.setTokenType("Bearer");
+    response.setExpiresIn(tokenLifespan.toSeconds());
+    response.setRefreshExpiresIn(tokenLifespan.toSeconds() * 2);
+    return Reply.json(JsonSerialization.writeValueAsBytes(response));
+  }
+
+  private static boolean hasBearerToken(HttpExchange exchange) {
+    String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+    return authorization != null && authorization.startsWith("Bearer ");
+  }
+
+  private static void delay(Latency latency) throws InterruptedException {
+    long nanos = latency.nextNanos();
+    if (nanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(nanos);
+    }
+  }
+
+  private static void send(HttpExchange exchange, Reply reply) throws IOException {
+    reply.headers().forEach((name, value) -> exchange.getResponseHeaders().add(name, value));
+    if (reply.body() == null) {
+      exchange.sendResponseHeaders(reply.status(), -1);
+      return;
+    }
+    exchange.getResponseHeaders().add("Content-Type", "application/json");
+    exchange.sendResponseHeaders(reply.status(), reply.body().length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(reply.body());
+    }
+  }
+
+  private static Map<String, String> parse(String query) {
+    Map<String, String> params = new HashMap<>();
+    if (query == null) {
+      return params;
+    }
+    for (String pair : query.split("&")) {
+      int eq = pair.indexOf('=');
+      String name = eq < 0 ? pair : pair.substring(0, eq);
+      String value = eq < 0 ? "" : pair.substring(eq + 1);
+      params.put(
+          URLDecoder.decode(name, StandardCharsets.UTF_8),
+          URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+    return params;
+  }
+
+  private static String lower(String value) {
+    return value == null ? null : value.toLowerCase(Locale.ROOT);
+  }
+
+  private static UserRepresentation user(int i, int attributes, int attributeSize) {
+    UserRepresentation user = new UserRepresentation();
+    user.setId(String.format("00000000-0000-4000-8000-%012d", i));
+    user.setUsername("user" + i);
+    user.setEmail("user" + i + "@example.com");
+    user.setFirstName("First" + i);
+    user.setLastName("Last" + i);
+    user.setEnabled(true);
+    user.setEmailVerified(true);
+    user.setCreatedTimestamp(1_700_000_000_000L + i);
+    if (attributes > 0) {
+      Map<String, List<String>> values = new HashMap<>();
+      String value = "v".repeat(attributeSize);
+      for (int a = 0; a < attributes; a++) {
+        values.put("attribute" + a, List.of(value));
+      }
+      user.setAttributes(values);
+    }
+    return user;
+  }
+
+  private static List<RoleRepresentation> roles(int count) {
+    List<RoleRepresentation> roles = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      RoleRepresentation role = new RoleRepresentation("role" + i, "Role " + i, false);
+      role.setId(String.format("00000000-0000-4000-9000-%012d", i));
+      roles.add(role);
+    }
+    return roles;
+  }
+
+  private static List<GroupRepresentation> groups(int count) {
+    List<GroupRepresentation> groups = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      GroupRepresentation group = new GroupRepresentation();
+      group.setId(String.format("00000000-0000-4000-a000-%012d", i));
+      group.setName("group" + i);
+      group.setPath("/group" + i);
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  private record Reply(int status, byte[] body, Map<String, String> headers) {
+    static Reply json(byte[] body) {
+      return new Reply(200, body, Map.of());
+    }
+
+    static Reply empty(int status) {
+      return new Reply(status, null, Map.of());
+    }
+  }
+
+  /**
+   * Fails a share of the requests to a route with the given status.
+   *
+   * @param route a route as reported by {@link #getRequestCount(String)}, or {@code "*"} for all
+   * @param status the status of the failed responses, e.g. 503
+   * @param rate the share of requests that fail, from 0 to 1
+   */
+  public record Fault(String route, int status, double rate) {
+    public Fault {
+      Objects.requireNonNull(route, "route");
+      if (rate < 0 || rate > 1) {
+        throw new IllegalArgumentException("rate must be between 0 and 1");
+      }
+    }
+
+    boolean matches(String requestRoute) {
+      return ("*".equals(route) || route.equals(requestRoute))
+          && ThreadLocalRandom.current().nextDouble() < rate;
+    }
+  }
+
+  public static final class Builder {
+    private String realm = "test";
+    private int port;
+    private int users = 100;
+    private int attributes;
+    private int attributeSize = 16;
+    private int roles = 10;
+    private int groups = 10;
+    private Duration tokenLifespan = Duration.ofMinutes(5);
+    private Latency latency = Latency.NONE;
+    private Latency tokenLatency = Latency.NONE;
+    private final List<Fault> faults = new ArrayList<>();
+
+    private Builder() {}
+
+    public Builder realm(String realm) {
+      this.realm = Objects.requireNonNull(realm, "realm");
+      return this;
+    }
+
+    /** Port to listen on; defaults to an ephemeral port. */
+    public Builder port(int port) {
+      this.port = port;
+      return this;
+    }
+
+    /** Number of users the realm starts with. */
+    public Builder users(int users) {
+      this.users = users;
+      return this;
+    }
+
+    /** Gives every user {@code count} attributes of {@code size} characters, to grow payloads. */
+    public Builder attributes(int count, int size) {
+      this.attributes = count;
+      this.attributeSize = size;
+      return this;
+    }
+
+    public Builder roles(int roles) {
+      this.roles = roles;
+      return this;
+    }
+
+    public Builder groups(int groups) {
+      this.groups = groups;
+      return this;
+    }
+
+    public Builder tokenLifespan(Duration tokenLifespan) {
+      this.tokenLifespan = Objects.requireNonNull(tokenLifespan, "tokenLifespan");
+      return this;
+    }
+
+    /** Delay added to admin requests. */
+    public Builder latency(Latency latency) {
+      this.latency = Objects.requireNonNull(latency, "latency");
+      return this;
+    }
+
+    /** Delay added to token and logout requests. */
+    public Builder tokenLatency(Latency tokenLatency) {
+      this.tokenLatency = Objects.requireNonNull(tokenLatency, "tokenLatency");
+      return this;
+    }
+
+    /** Adds a fault rule; the first rule that fires decides the status. */
+    public Builder fault(String route, int status, double rate) {
+      faults.add(new Fault(route, status, rate));
+      return this;
+    }
+
+    public KeycloakStub start() throws IOException {
+      return new KeycloakStub(this);
+    }
+  }
+}
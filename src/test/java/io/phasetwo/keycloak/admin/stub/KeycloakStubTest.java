@@ -0,0 +1,84 @@
+package io.phasetwo.keycloak.admin.stub;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.keycloak.OAuth2Constants.CLIENT_CREDENTIALS;
+
+import io.phasetwo.keycloak.admin.Keycloak;
+import io.phasetwo.keycloak.admin.KeycloakBuilder;
+import jakarta.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.keycloak.admin.client.resource.UsersResource;
+import org.keycloak.representations.idm.UserRepresentation;
+
+class KeycloakStubTest {
+
+  private static Keycloak client(KeycloakStub stub) {
+    return KeycloakBuilder.builder()
+        .serverUrl(stub.getUrl())
+        .realm(stub.getRealm())
+        .grantType(CLIENT_CREDENTIALS)
+        .clientId("admin-cli")
+        .clientSecret("secret")
+        .build();
+  }
+
+  @Test
+  void servesUsersThroughTheClient() throws Exception {
+    try (KeycloakStub stub = KeycloakStub.builder().users(25).attributes(2, 8).start();
+        Keycloak keycloak = client(stub)) {
+      UsersResource users = keycloak.realm(stub.getRealm()).users();
+      String id = stub.getUserIds().get(3);
+      assertEquals("user3", users.get(id).toRepresentation().getUsername());
+      assertEquals(10, users.search("user", 0, 10).size());
+      assertEquals(5, users.search("user", 20, 10).size());
+      assertEquals(10, users.get(id).roles().realmLevel().listAll().size());
+
+      UserRepresentation created = new UserRepresentation();
+      created.setUsername("new-user");
+      try (Response response = users.create(created)) {
+        assertEquals(201, response.getStatus());
+      }
+      List<UserRepresentation> found = users.search("new-user", 0, 10);
+      assertEquals(1, found.size());
+
+      assertEquals(1, stub.getTokensIssued());
+      assertEquals(1, stub.getRequestCount("GET /users/{id}"));
+      assertEquals(3, stub.getRequestCount("GET /users"));
+    }
+  }
+
+  @Test
+  void injectsFaults() throws Exception {
+    try (KeycloakStub stub = KeycloakStub.builder().fault("GET /users/{id}", 503, 1.0).start();
+        Keycloak keycloak = client(stub)) {
+      UsersResource users = keycloak.realm(stub.getRealm()).users();
+      String id = stub.getUserIds().get(0);
+      assertThrows(RuntimeException.class, () -> users.get(id).toRepresentation());
+      assertEquals(1, users.search("user1", 0, 1).size());
+      assertEquals(1, stub.getRequestCount("GET /users/{id}"));
+    }
+  }
+
+  @Test
+  void drawsLatenciesFromTheDistribution() {
+    Latency latency = Latency.logNormal(Duration.ofMillis(10), Duration.ofMillis(100));
+    int n = 20_000;
+    int belowMedian = 0;
+    int aboveP99 = 0;
+    for (int i = 0; i < n; i++) {
+      long nanos = latency.nextNanos();
+      if (nanos < 10_000_000) {
+        belowMedian++;
+      }
+      if (nanos > 100_000_000) {
+        aboveP99++;
+      }
+    }
+    assertEquals(0.5, (double) belowMedian / n, 0.03);
+    assertTrue(aboveP99 > n * 0.003 && aboveP99 < n * 0.02, "p99 tail: " + aboveP99);
+  }
+}
@@ -0,0 +1,43 @@
+package io.phasetwo.keycloak.admin.stub;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Server-side delay that {@link KeycloakStub} adds before answering a request. */
+@FunctionalInterface
+public interface Latency {
+
+  Latency NONE = () -> 0;
+
+  /** Returns the delay for the next request, in nanoseconds. */
+  long nextNanos();
+
+  static Latency fixed(Duration delay) {
+    long nanos = delay.toNanos();
+    return () -> nanos;
+  }
+
+  /** Delays drawn uniformly between {@code min} and {@code max}. */
+  static Latency uniform(Duration min, Duration max) {
+    long low = min.toNanos();
+    long high = max.toNanos();
+    if (high < low) {
+      throw new IllegalArgumentException("max must not be less than min");
+    }
+    return () -> low == high ? low : ThreadLocalRandom.current().nextLong(low, high + 1);
+  }
+
+  /**
+   * Log-normal delays with the given median and 99th percentile. Real server latencies are close to
+   * log-normal: most requests are fast, with a long tail of slow ones.
+   */
+  static Latency logNormal(Duration median, Duration p99) {
+    if (p99.compareTo(median) < 0) {
+      throw new IllegalArgumentException("p99 must not be less than the median");
+    }
+    double mu = Math.log(median.toNanos());
+    // 2.326 is the 99th percentile of the standard normal distribution
+    double sigma = Math.log((double) p99.toNanos() / median.toNanos()) / 2.326;
+    return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+  }
+}
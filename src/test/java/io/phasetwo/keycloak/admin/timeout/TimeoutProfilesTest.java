@@ -0,0 +1,101 @@
+package io.phasetwo.keycloak.admin.timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import org.apache.http.client.config.RequestConfig;
+import org.junit.jupiter.api.Test;
+
+class TimeoutProfilesTest {
+
+  interface Users {
+    String toRepresentation();
+
+    String count();
+  }
+
+  interface Realm {
+    String partialExport();
+  }
+
+  private static final TimeoutProfile DEFAULTS =
+      TimeoutProfile.of(Duration.ofSeconds(30), Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+  @Test
+  void resolvesMostSpecificRuleFirst() throws NoSuchMethodException {
+    TimeoutProfiles profiles =
+        TimeoutProfiles.builder()
+            .resource(Users.class, TimeoutProfile.ofSocketTimeout(Duration.ofSeconds(3)))
+            .method(
+                Users.class,
+                "toRepresentation",
+                TimeoutProfile.ofSocketTimeout(Duration.ofSeconds(1)))
+            .urlPattern("/partial-export", TimeoutProfile.ofSocketTimeout(Duration.ofMinutes(5)))
+            .build()
+            .withFallback(DEFAULTS);
+
+    assertEquals(1000, socketMillis(profiles, Users.class, "toRepresentation", "/users/1"));
+    assertEquals(3000, socketMillis(profiles, Users.class, "count", "/users/count"));
+    assertEquals(
+        300_000, socketMillis(profiles, Realm.class, "partialExport", "/realms/a/partial-export"));
+    assertEquals(30_000, socketMillis(profiles, Realm.class, "partialExport", "/realms/a"));
+  }
+
+  @Test
+  void unsetTimeoutsFallBackToDefaults() throws NoSuchMethodException {
+    TimeoutProfiles profiles =
+        TimeoutProfiles.builder()
+            .resource(Users.class, TimeoutProfile.ofSocketTimeout(Duration.ofSeconds(1)))
+            .build()
+            .withFallback(DEFAULTS);
+    RequestConfig config =
+        profiles
+            .resolve(Users.class, Users.class.getMethod("count"), "/users/count")
+            .getRequestConfig();
+    assertEquals(1000, config.getSocketTimeout());
+    assertEquals(5000, config.getConnectTimeout());
+    assertEquals(10_000, config.getConnectionRequestTimeout());
+  }
+
+  @Test
+  void deadlineCapsTimeouts() {
+    RequestConfig config = DEFAULTS.getRequestConfig(Deadline.after(Duration.ofSeconds(2)));
+    assertTrue(config.getSocketTimeout() <= 2000 && config.getSocketTimeout() > 1000);
+    assertTrue(config.getConnectTimeout() <= 2000);
+    assertSame(DEFAULTS.getRequestConfig(), DEFAULTS.getRequestConfig(null));
+    assertSame(
+        DEFAULTS.getRequestConfig(),
+        DEFAULTS.getRequestConfig(Deadline.after(Duration.ofMinutes(5))));
+  }
+
+  @Test
+  void expiredDeadlineFailsFast() {
+    Deadline deadline = Deadline.after(Duration.ZERO);
+    assertThrows(DeadlineExceededException.class, () -> DEFAULTS.getRequestConfig(deadline));
+  }
+
+  @Test
+  void nestedDeadlinesKeepTheEarlierOne() {
+    Deadline outer = Deadline.after(Duration.ofSeconds(1));
+    Deadline inner = Deadline.after(Duration.ofMinutes(1));
+    outer.run(
+        () -> {
+          assertSame(outer, Deadline.current());
+          inner.run(() -> assertSame(outer, Deadline.current()));
+          assertSame(outer, Deadline.current());
+        });
+    assertNull(Deadline.current());
+  }
+
+  private static int socketMillis(
+      TimeoutProfiles profiles, Class<?> resource, String method, String url)
+      throws NoSuchMethodException {
+    Method m = resource.getMethod(method);
+    return profiles.resolve(resource, m, url).getRequestConfig().getSocketTimeout();
+  }
+}
@@ -0,0 +1,115 @@
+package io.phasetwo.keycloak.admin.tracing;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import io.phasetwo.keycloak.admin.resource.ProxyContext;
+import io.phasetwo.keycloak.admin.resource.ResourceProxyFactory;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.Test;
+
+class TracerTest {
+
+  @Path("/admin/realms/{realm}/users")
+  public interface Users {
+    @GET
+    @Path("{id}")
+    String get(@PathParam("realm") String realm, @PathParam("id") String id);
+  }
+
+  @Test
+  void parsesAndFormatsTraceParent() {
+    String header = "00-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01";
+    TraceParent parent = TraceParent.parse(header);
+    assertEquals("4bf92f3577b34da6a3ce929d0e0e4736", parent.traceId());
+    assertEquals("00f067aa0ba902b7", parent.spanId());
+    assertTrue(parent.sampled());
+    assertEquals(header, parent.toHeader());
+
+    TraceParent child = parent.child();
+    assertEquals(parent.traceId(), child.traceId());
+    assertNotEquals(parent.spanId(), child.spanId());
+
+    assertNull(TraceParent.parse("00-4bf92f3577b34da6a3ce929d0e0e4736-0000000000000000-01"));
+    assertNull(TraceParent.parse("ff-4bf92f3577b34da6a3ce929d0e0e4736-00f067aa0ba902b7-01"));
+    assertNull(TraceParent.parse("garbage"));
+    assertFalse(TraceParent.parse(header.replace("-01", "-00")).sampled());
+  }
+
+  @Test
+  void injectsHeadersAndEndsSpans() throws Exception {
+    List<String> received = new ArrayList<>();
+    HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/",
+        exchange -> {
+          received.add(exchange.getRequestHeaders().getFirst(TraceParent.HEADER));
+          int status = exchange.getRequestURI().getPath().endsWith("/missing") ? 404 : 200;
+          exchange.sendResponseHeaders(status, -1);
+          exchange.close();
+        });
+    server.start();
+
+    TraceParent parent = TraceParent.newTrace();
+    List<String> ended = new ArrayList<>();
+    Tracer w3c = Tracer.w3c(() -> parent);
+    Tracer tracer =
+        info -> {
+          Span span = w3c.startSpan(info);
+          return new Span() {
+            @Override
+            public Map<String, String> headers() {
+              return span.headers();
+            }
+
+            @Override
+            public void end(int status, Throwable error) {
+              ended.add(
+                  info.name()
+                      + " "
+                      + info.urlTemplate()
+                      + " "
+                      + status
+                      + (error == null ? "" : " failed"));
+            }
+          };
+        };
+
+    try (CloseableHttpClient client = HttpClients.createDefault()) {
+      Users users =
+          ResourceProxyFactory.create(
+              Users.class,
+              "http://127.0.0.1:" + server.getAddress().getPort(),
+              ProxyContext.builder(client).tracer(tracer).build());
+      users.get("test", "1");
+      assertThrows(RuntimeException.class, () -> users.get("test", "missing"));
+    } finally {
+      server.stop(0);
+    }
+
+    assertEquals(
+        List.of(
+            "Users.get /admin/realms/{realm}/users/{id} 200",
+            "Users.get /admin/realms/{realm}/users/{id} 404 failed"),
+        ended);
+    assertEquals(2, received.size());
+    for (String header : received) {
+      TraceParent sent = TraceParent.parse(header);
+      assertEquals(parent.traceId(), sent.traceId());
+      assertNotEquals(parent.spanId(), sent.spanId());
+    }
+  }
+}